@@ -16,86 +16,156 @@
 
 package io.cdap.wrangler.api.parser;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
 /**
- * Class for parsing and representing byte sizes with units (KB, MB, GB, TB).
+ * Class for parsing and representing byte sizes with units (B, KB, MB, GB, TB, PB).
+ *
+ * <p>As a {@link Token} of type {@link TokenType#BYTE_SIZE} it carries the exact byte count, so a
+ * directive taking a size argument never has to parse the literal again.</p>
  */
-public class ByteSize {
-  private final double bytes;
+public class ByteSize implements Token {
+  private final long bytes;
   private final String originalValue;
 
-  private ByteSize(double bytes, String originalValue) {
+  private ByteSize(long bytes, String originalValue) {
     this.bytes = bytes;
     this.originalValue = originalValue;
   }
 
   /**
    * Parse a string representation of a byte size.
-   * Supports units: KB, MB, GB, TB (case insensitive)
+   * Supports the units of {@link UnitRegistry#BYTES}: B, KB to PB and KiB to PiB, all powers of
+   * 1024 and case insensitive
    *
    * @param value String representation (e.g., "1.5KB", "2MB")
    * @return ByteSize object
    * @throws IllegalArgumentException if the format is invalid
    */
   public static ByteSize parse(String value) {
-    if (value == null || value.trim().isEmpty()) {
+    if (value == null) {
       throw new IllegalArgumentException("Value cannot be null or empty");
     }
+    return new ByteSize(parseBytes(value, 0, value.length()), value);
+  }
 
-    String trimmed = value.trim();
-    if (trimmed.startsWith("-")) {
-      throw new IllegalArgumentException("Negative values are not allowed");
-    }
-
-    // Find the position where the number ends and unit begins
-    int i = 0;
-    while (i < trimmed.length() && (Character.isDigit(trimmed.charAt(i)) || trimmed.charAt(i) == '.')) {
-      i++;
-    }
+  /**
+   * Creates a byte size from a decoded value and a literal known to denote it.
+   */
+  static ByteSize of(long bytes, String text) {
+    return new ByteSize(bytes, text);
+  }
 
-    if (i == 0 || i == trimmed.length()) {
-      throw new IllegalArgumentException("Invalid format: " + value);
+  /**
+   * Parse a byte size directly out of a character range without allocating.
+   * Accepts exactly the inputs {@link #parse(String)} accepts; fractional results are
+   * truncated toward zero, so the value equals {@code parse(value).toBytes()}.
+   *
+   * @param value characters holding the byte size (e.g., "1.5KB")
+   * @param offset index of the first character to parse
+   * @param length number of characters to parse
+   * @return number of bytes
+   * @throws IllegalArgumentException if the format is invalid
+   */
+  public static long parseBytes(CharSequence value, int offset, int length) {
+    long bytes = tryParseBytes(value, offset, length);
+    if (bytes < 0) {
+      throw ParseStatus.toException(bytes, value, offset, length);
     }
+    return bytes;
+  }
 
-    String numberPart = trimmed.substring(0, i);
-    String unit = trimmed.substring(i).toUpperCase();
+  /**
+   * Parse a byte size with the units of {@link UnitRegistry#BYTES} directly out of a character
+   * range without allocating or throwing.
+   * Invalid input costs the same as valid input: instead of an exception the method returns
+   * one of the negative codes defined in {@link ParseStatus}.
+   *
+   * @param value characters holding the byte size (e.g., "1.5KB"), may be null
+   * @param offset index of the first character to parse
+   * @param length number of characters to parse
+   * @return number of bytes, or a negative {@link ParseStatus} code if the value is invalid
+   */
+  public static long tryParseBytes(CharSequence value, int offset, int length) {
+    return tryParseBytes(value, offset, length, UnitRegistry.BYTES);
+  }
 
-    double number;
-    try {
-      number = Double.parseDouble(numberPart);
-    } catch (NumberFormatException e) {
-      throw new IllegalArgumentException("Invalid number format: " + numberPart);
+  /**
+   * Non-throwing variant that resolves units through the given registry, e.g.
+   * {@link UnitRegistry#SI_BYTES} or one with custom units.
+   *
+   * @param value characters holding the byte size, may be null
+   * @param offset index of the first character to parse
+   * @param length number of characters to parse
+   * @param units registry of unit multipliers in bytes
+   * @return number of bytes, or a negative {@link ParseStatus} code if the value is invalid
+   */
+  public static long tryParseBytes(CharSequence value, int offset, int length, UnitRegistry units) {
+    if (value == null) {
+      return ParseStatus.EMPTY;
+    }
+    FixedPoint.checkBounds(value, offset, length);
+    int start = FixedPoint.trimStart(value, offset, offset + length);
+    int end = FixedPoint.trimEnd(value, start, offset + length);
+    if (start == end) {
+      return ParseStatus.EMPTY;
+    }
+    if (value.charAt(start) == '-') {
+      return ParseStatus.NEGATIVE;
     }
 
-    double bytes;
-    switch (unit) {
-      case "KB":
-        bytes = number * 1024;
-        break;
-      case "MB":
-        bytes = number * 1024 * 1024;
-        break;
-      case "GB":
-        bytes = number * 1024 * 1024 * 1024;
-        break;
-      case "TB":
-        bytes = number * 1024 * 1024 * 1024 * 1024;
-        break;
-      default:
-        throw new IllegalArgumentException("Invalid unit: " + unit);
+    // Find the position where the number ends and unit begins
+    int i = FixedPoint.scanNumber(value, start, end);
+    if (i == start || i == end) {
+      return ParseStatus.INVALID_FORMAT;
     }
 
-    return new ByteSize(bytes, value);
+    long multiplier = units.multiplier(value, i, end);
+    if (multiplier < 0) {
+      return multiplier;
+    }
+    return FixedPoint.multiply(value, start, i, multiplier);
   }
 
   /**
    * Get the size in bytes.
    *
-   * @return number of bytes
+   * @return exact number of bytes, with any fraction of a byte truncated
    */
-  public double toBytes() {
+  public long toBytes() {
     return bytes;
   }
 
+  /**
+   * @return exact number of bytes, with any fraction of a byte truncated
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * @return the exact number of bytes as a {@link Long}
+   */
+  @Override
+  public Long value() {
+    return bytes;
+  }
+
+  @Override
+  public TokenType type() {
+    return TokenType.BYTE_SIZE;
+  }
+
+  @Override
+  public JsonElement toJson() {
+    JsonObject object = new JsonObject();
+    object.addProperty("type", TokenType.BYTE_SIZE.name());
+    object.addProperty("value", originalValue);
+    object.addProperty("bytes", bytes);
+    return object;
+  }
+
   @Override
   public String toString() {
     return originalValue;
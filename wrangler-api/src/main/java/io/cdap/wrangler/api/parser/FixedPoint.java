@@ -0,0 +1,129 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.api.parser;
+
+/**
+ * Allocation-free helpers shared by the unit parsers for scanning decimal numbers
+ * directly out of a {@link CharSequence}.
+ */
+final class FixedPoint {
+
+  private FixedPoint() {
+  }
+
+  /**
+   * Returns the index of the first non-whitespace character in {@code [start, end)},
+   * using the same definition of whitespace as {@link String#trim()}.
+   */
+  static int trimStart(CharSequence value, int start, int end) {
+    while (start < end && value.charAt(start) <= ' ') {
+      start++;
+    }
+    return start;
+  }
+
+  /**
+   * Returns the index just past the last non-whitespace character in {@code [start, end)},
+   * using the same definition of whitespace as {@link String#trim()}.
+   */
+  static int trimEnd(CharSequence value, int start, int end) {
+    while (end > start && value.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    return end;
+  }
+
+  /**
+   * Returns the index of the first character at or after {@code start} that is neither
+   * an ASCII digit nor a decimal point.
+   */
+  static int scanNumber(CharSequence value, int start, int end) {
+    while (start < end) {
+      char c = value.charAt(start);
+      if ((c < '0' || c > '9') && c != '.') {
+        break;
+      }
+      start++;
+    }
+    return start;
+  }
+
+  /**
+   * Multiplies the decimal number in {@code [start, end)} by {@code multiplier} and truncates the
+   * result toward zero. The computation is exact: the integer part is multiplied directly and
+   * the fractional digits are folded in from least to most significant, dividing by ten at each
+   * step, which yields the floor of the exact product without any intermediate overflow.
+   *
+   * @param value characters holding the number, e.g. "1.5"
+   * @param start index of the first digit or decimal point
+   * @param end index just past the last digit
+   * @param multiplier positive scale to apply, at most {@link UnitRegistry#MAX_MULTIPLIER}, so that
+   *   a fractional digit times the multiplier plus the carried fraction, below the multiplier, fits
+   * @return the truncated product, or a negative {@link ParseStatus} code
+   */
+  static long multiply(CharSequence value, int start, int end, long multiplier) {
+    long whole = 0;
+    int dot = -1;
+    boolean digits = false;
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (c == '.') {
+        if (dot >= 0) {
+          return ParseStatus.INVALID_NUMBER;
+        }
+        dot = i;
+        continue;
+      }
+      digits = true;
+      if (dot < 0) {
+        int digit = c - '0';
+        if (whole > (Long.MAX_VALUE - digit) / 10) {
+          return ParseStatus.OUT_OF_RANGE;
+        }
+        whole = whole * 10 + digit;
+      }
+    }
+    if (!digits) {
+      return ParseStatus.INVALID_NUMBER;
+    }
+    if (whole > Long.MAX_VALUE / multiplier) {
+      return ParseStatus.OUT_OF_RANGE;
+    }
+
+    long fraction = 0;
+    if (dot >= 0) {
+      for (int i = end - 1; i > dot; i--) {
+        fraction = (fraction + (value.charAt(i) - '0') * multiplier) / 10;
+      }
+    }
+    long product = whole * multiplier;
+    if (product > Long.MAX_VALUE - fraction) {
+      return ParseStatus.OUT_OF_RANGE;
+    }
+    return product + fraction;
+  }
+
+  /**
+   * Validates that {@code [offset, offset + length)} lies within the non-null {@code value}.
+   */
+  static void checkBounds(CharSequence value, int offset, int length) {
+    if (offset < 0 || length < 0 || offset > value.length() - length) {
+      throw new IndexOutOfBoundsException(
+        String.format("Range [%d, %d) out of bounds for length %d", offset, offset + length, value.length()));
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.api.parser;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe memo of raw unit literals to their parsed primitive value.
+ *
+ * <p>Size and duration columns usually have very low cardinality, so remembering the result for
+ * "4KB" or "250ms" avoids re-parsing it for every row. The cache is a power-of-two table of
+ * immutable entries indexed by the hash of the characters: a lookup hashes and compares the
+ * characters in place, so a hit allocates nothing and takes no lock. Invalid values are cached
+ * as well, together with their {@link ParseStatus} code.</p>
+ *
+ * <p>When two literals hash to the same slot the {@link EvictionPolicy} decides which one
+ * stays. Entries are published through final fields, so concurrent readers either see a complete
+ * entry or none at all; a lost race only costs a re-parse.</p>
+ */
+public final class ParseCache implements RangeParser {
+
+  /**
+   * What to do when a newly parsed literal maps to a slot that is already occupied.
+   */
+  public enum EvictionPolicy {
+    /** The new literal replaces the resident one, so the cache follows a shifting working set. */
+    REPLACE,
+    /** The resident literal is kept, so a burst of unique values cannot flush the cache. */
+    RETAIN
+  }
+
+  private final RangeParser parser;
+  private final EvictionPolicy policy;
+  private final Entry[] table;
+  private final int mask;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * @param parser parser to memoize
+   * @param maxEntries upper bound on the number of cached literals, rounded down to a power of two
+   * @param policy what to do when two literals compete for the same slot
+   */
+  public ParseCache(RangeParser parser, int maxEntries, EvictionPolicy policy) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("Cache size must be positive, got " + maxEntries);
+    }
+    this.parser = parser;
+    this.policy = policy;
+    this.table = new Entry[Integer.highestOneBit(maxEntries)];
+    this.mask = table.length - 1;
+  }
+
+  /**
+   * @return a cache of {@link ByteSize#tryParseBytes(CharSequence, int, int)} results
+   */
+  public static ParseCache forBytes(int maxEntries) {
+    return new ParseCache(ByteSize::tryParseBytes, maxEntries, EvictionPolicy.REPLACE);
+  }
+
+  /**
+   * @return a cache of {@link TimeDuration#tryParseNanos(CharSequence, int, int)} results
+   */
+  public static ParseCache forNanos(int maxEntries) {
+    return new ParseCache(TimeDuration::tryParseNanos, maxEntries, EvictionPolicy.REPLACE);
+  }
+
+  @Override
+  public long parse(CharSequence value, int offset, int length) {
+    if (value == null) {
+      return parser.parse(null, offset, length);
+    }
+    FixedPoint.checkBounds(value, offset, length);
+    int hash = hash(value, offset, length);
+    int slot = hash & mask;
+    Entry entry = table[slot];
+    if (entry != null && entry.matches(hash, value, offset, length)) {
+      hits.increment();
+      return entry.value;
+    }
+
+    misses.increment();
+    long result = parser.parse(value, offset, length);
+    if (entry == null || policy == EvictionPolicy.REPLACE) {
+      if (entry != null) {
+        evictions.increment();
+      }
+      table[slot] = new Entry(value.subSequence(offset, offset + length).toString(), hash, result);
+    }
+    return result;
+  }
+
+  /**
+   * @return maximum number of literals the cache can hold
+   */
+  public int capacity() {
+    return table.length;
+  }
+
+  /**
+   * @return number of lookups answered from the cache
+   */
+  public long hits() {
+    return hits.sum();
+  }
+
+  /**
+   * @return number of lookups that had to parse the value
+   */
+  public long misses() {
+    return misses.sum();
+  }
+
+  /**
+   * @return number of cached literals replaced by another literal
+   */
+  public long evictions() {
+    return evictions.sum();
+  }
+
+  /**
+   * @return fraction of lookups answered from the cache, or 0 if there were none
+   */
+  public double hitRate() {
+    long h = hits.sum();
+    long total = h + misses.sum();
+    return total == 0 ? 0 : (double) h / total;
+  }
+
+  private static int hash(CharSequence value, int offset, int length) {
+    int h = 0;
+    for (int i = offset; i < offset + length; i++) {
+      h = 31 * h + value.charAt(i);
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private static final class Entry {
+    private final String key;
+    private final int hash;
+    private final long value;
+
+    private Entry(String key, int hash, long value) {
+      this.key = key;
+      this.hash = hash;
+      this.value = value;
+    }
+
+    private boolean matches(int hash, CharSequence value, int offset, int length) {
+      if (this.hash != hash || key.length() != length) {
+        return false;
+      }
+      for (int i = 0; i < length; i++) {
+        if (key.charAt(i) != value.charAt(offset + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.api.parser;
+
+/**
+ * Status codes returned by the non-throwing unit parsers such as
+ * {@link ByteSize#tryParseBytes(CharSequence, int, int)}.
+ *
+ * <p>Parsed values are never negative, so every code is a negative {@code long} and a caller
+ * can tell a value from a failure with a single comparison, without an exception being built.</p>
+ */
+public final class ParseStatus {
+  /** The value was null, empty or only whitespace. */
+  public static final long EMPTY = -1L;
+  /** The value started with a minus sign. */
+  public static final long NEGATIVE = -2L;
+  /** The value had no number, no unit, or a number that did not end in a unit. */
+  public static final long INVALID_FORMAT = -3L;
+  /** The number had no digits or more than one decimal point. */
+  public static final long INVALID_NUMBER = -4L;
+  /** The unit was not recognised. */
+  public static final long INVALID_UNIT = -5L;
+  /** The value does not fit in a {@code long}. */
+  public static final long OUT_OF_RANGE = -6L;
+
+  private ParseStatus() {
+  }
+
+  /**
+   * @param result value returned by a non-throwing parser
+   * @return true if {@code result} is a status code rather than a parsed value
+   */
+  public static boolean isError(long result) {
+    return result < 0;
+  }
+
+  /**
+   * @param status one of the status codes defined by this class
+   * @return a human readable description of the status
+   */
+  public static String describe(long status) {
+    if (status == EMPTY) {
+      return "Value cannot be null or empty";
+    } else if (status == NEGATIVE) {
+      return "Negative values are not allowed";
+    } else if (status == INVALID_FORMAT) {
+      return "Invalid format";
+    } else if (status == INVALID_NUMBER) {
+      return "Invalid number format";
+    } else if (status == INVALID_UNIT) {
+      return "Invalid unit";
+    } else if (status == OUT_OF_RANGE) {
+      return "Value out of range";
+    }
+    return "Unknown status " + status;
+  }
+
+  /**
+   * Builds the exception thrown by the throwing parsers for a failed parse.
+   */
+  static IllegalArgumentException toException(long status, CharSequence value, int offset, int length) {
+    if (status == EMPTY || status == NEGATIVE) {
+      return new IllegalArgumentException(describe(status));
+    }
+    return new IllegalArgumentException(describe(status) + ": " + value.subSequence(offset, offset + length));
+  }
+}
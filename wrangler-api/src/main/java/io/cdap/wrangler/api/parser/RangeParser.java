@@ -0,0 +1,33 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.api.parser;
+
+/**
+ * A non-throwing parser of a character range into a primitive value, such as
+ * {@link ByteSize#tryParseBytes(CharSequence, int, int)}.
+ */
+@FunctionalInterface
+public interface RangeParser {
+
+  /**
+   * @param value characters to parse, may be null
+   * @param offset index of the first character to parse
+   * @param length number of characters to parse
+   * @return the parsed value, or a negative {@link ParseStatus} code if the value is invalid
+   */
+  long parse(CharSequence value, int offset, int length);
+}
@@ -16,21 +16,32 @@
 
 package io.cdap.wrangler.api.parser;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
 /**
- * Class for parsing and representing time durations with units (s, m, h, d).
+ * Class for parsing and representing time durations with units (ns, ms, s, m, h, d).
+ *
+ * <p>As a {@link Token} of type {@link TokenType#TIME_DURATION} it carries the exact duration in
+ * nanoseconds, so a directive taking a duration argument never has to parse the literal again.</p>
  */
-public class TimeDuration {
+public class TimeDuration implements Token {
+  private static final long NANOS_PER_MILLI = 1_000_000L;
+
   private final long millis;
+  private final long nanos;
   private final String originalValue;
 
-  private TimeDuration(long millis, String originalValue) {
+  private TimeDuration(long millis, long nanos, String originalValue) {
     this.millis = millis;
+    this.nanos = nanos;
     this.originalValue = originalValue;
   }
 
   /**
    * Parse a string representation of a time duration.
-   * Supports units: s (seconds), m (minutes), h (hours), d (days) - case insensitive
+   * Supports the units of {@link UnitRegistry#DURATIONS}: ns, us, ms, s (seconds), m (minutes),
+   * h (hours), d (days) - case insensitive
    * Also supports compound durations like "1h1m" or "1h1m1s"
    *
    * @param value String representation (e.g., "1.5s", "2h", "1h30m")
@@ -38,64 +49,173 @@ public class TimeDuration {
    * @throws IllegalArgumentException if the format is invalid
    */
   public static TimeDuration parse(String value) {
-    if (value == null || value.trim().isEmpty()) {
+    if (value == null) {
       throw new IllegalArgumentException("Value cannot be null or empty");
     }
+    long nanos = tryParseNanos(value, 0, value.length());
+    if (nanos >= 0) {
+      return new TimeDuration(nanos / NANOS_PER_MILLI, nanos, value);
+    }
+    // Beyond about 292 years only milliseconds can hold the duration
+    return new TimeDuration(parseMillis(value, 0, value.length()), nanos, value);
+  }
+
+  /**
+   * Creates a duration from decoded values and a literal known to denote them.
+   *
+   * @param nanos the duration in nanoseconds, or {@link ParseStatus#OUT_OF_RANGE} if too long
+   */
+  static TimeDuration of(long millis, long nanos, String text) {
+    return new TimeDuration(millis, nanos, text);
+  }
+
+  /**
+   * Parse a time duration directly out of a character range without allocating.
+   * Accepts exactly the inputs {@link #parse(String)} accepts and returns the same value
+   * as {@link #toMillis()}.
+   *
+   * @param value characters holding the duration (e.g., "1.5s", "1h30m")
+   * @param offset index of the first character to parse
+   * @param length number of characters to parse
+   * @return duration in milliseconds
+   * @throws IllegalArgumentException if the format is invalid
+   */
+  public static long parseMillis(CharSequence value, int offset, int length) {
+    return check(tryParseMillis(value, offset, length), value, offset, length);
+  }
 
-    String trimmed = value.trim();
-    if (trimmed.startsWith("-")) {
-      throw new IllegalArgumentException("Negative values are not allowed");
+  /**
+   * Parse a time duration directly out of a character range without allocating.
+   * Accepts exactly the inputs {@link #parse(String)} accepts, including compound durations.
+   * Each component is converted with exact integer arithmetic, so no precision is lost
+   * below the millisecond. The representable range is roughly 292 years.
+   *
+   * @param value characters holding the duration (e.g., "1.5s", "1h30m")
+   * @param offset index of the first character to parse
+   * @param length number of characters to parse
+   * @return duration in nanoseconds
+   * @throws IllegalArgumentException if the format is invalid
+   */
+  public static long parseNanos(CharSequence value, int offset, int length) {
+    return check(tryParseNanos(value, offset, length), value, offset, length);
+  }
+
+  /**
+   * Non-throwing variant of {@link #parseMillis(CharSequence, int, int)}. The duration is parsed in
+   * nanoseconds and truncated, so fractions of a millisecond add up across compound components;
+   * only a duration too long for nanoseconds is summed in milliseconds.
+   *
+   * @param value characters holding the duration, may be null
+   * @param offset index of the first character to parse
+   * @param length number of characters to parse
+   * @return duration in milliseconds, or a negative {@link ParseStatus} code if the value is invalid
+   */
+  public static long tryParseMillis(CharSequence value, int offset, int length) {
+    long nanos = tryParseNanos(value, offset, length);
+    if (nanos >= 0) {
+      return nanos / NANOS_PER_MILLI;
+    }
+    if (nanos != ParseStatus.OUT_OF_RANGE) {
+      return nanos;
     }
+    return tryParse(value, offset, length, NANOS_PER_MILLI, UnitRegistry.DURATIONS);
+  }
 
-    long totalMillis = 0;
-    int start = 0;
-    int i = 0;
+  /**
+   * Non-throwing variant of {@link #parseNanos(CharSequence, int, int)}. Invalid input costs the
+   * same as valid input: instead of an exception the method returns a {@link ParseStatus} code.
+   *
+   * @param value characters holding the duration, may be null
+   * @param offset index of the first character to parse
+   * @param length number of characters to parse
+   * @return duration in nanoseconds, or a negative {@link ParseStatus} code if the value is invalid
+   */
+  public static long tryParseNanos(CharSequence value, int offset, int length) {
+    return tryParse(value, offset, length, 1L, UnitRegistry.DURATIONS);
+  }
 
-    while (i < trimmed.length()) {
-      // Find where the number ends
-      while (i < trimmed.length() && (Character.isDigit(trimmed.charAt(i)) || trimmed.charAt(i) == '.')) {
-        i++;
-      }
+  /**
+   * Non-throwing variant that resolves units through the given registry, for durations with
+   * custom units.
+   *
+   * @param value characters holding the duration, may be null
+   * @param offset index of the first character to parse
+   * @param length number of characters to parse
+   * @param units registry of unit multipliers in nanoseconds
+   * @return duration in nanoseconds, or a negative {@link ParseStatus} code if the value is invalid
+   */
+  public static long tryParseNanos(CharSequence value, int offset, int length, UnitRegistry units) {
+    return tryParse(value, offset, length, 1L, units);
+  }
 
-      if (i == start || i == trimmed.length()) {
-        throw new IllegalArgumentException("Invalid format: " + value);
-      }
+  private static long check(long result, CharSequence value, int offset, int length) {
+    if (result < 0) {
+      throw ParseStatus.toException(result, value, offset, length);
+    }
+    return result;
+  }
 
-      // Parse the number part
-      String numberPart = trimmed.substring(start, i);
-      double number;
-      try {
-        number = Double.parseDouble(numberPart);
-      } catch (NumberFormatException e) {
-        throw new IllegalArgumentException("Invalid number format: " + numberPart);
-      }
+  private static long tryParse(CharSequence value, int offset, int length, long nanosPerResultUnit,
+                               UnitRegistry units) {
+    if (value == null) {
+      return ParseStatus.EMPTY;
+    }
+    FixedPoint.checkBounds(value, offset, length);
+    int start = FixedPoint.trimStart(value, offset, offset + length);
+    int end = FixedPoint.trimEnd(value, start, offset + length);
+    if (start == end) {
+      return ParseStatus.EMPTY;
+    }
+    if (value.charAt(start) == '-') {
+      return ParseStatus.NEGATIVE;
+    }
 
-      // Get the unit
-      char unit = Character.toLowerCase(trimmed.charAt(i));
-      long unitMillis;
-      switch (unit) {
-        case 's':
-          unitMillis = 1000;
-          break;
-        case 'm':
-          unitMillis = 60 * 1000;
-          break;
-        case 'h':
-          unitMillis = 60 * 60 * 1000;
-          break;
-        case 'd':
-          unitMillis = 24 * 60 * 60 * 1000;
-          break;
-        default:
-          throw new IllegalArgumentException("Invalid unit: " + unit);
+    long total = 0;
+    // Components in units that are not whole result units are summed in nanoseconds and divided once
+    long fineNanos = 0;
+    int i = start;
+    while (i < end) {
+      // Find where the number ends and the unit letters that follow it
+      int numberEnd = FixedPoint.scanNumber(value, i, end);
+      if (numberEnd == i || numberEnd == end) {
+        return ParseStatus.INVALID_FORMAT;
+      }
+      int unitEnd = numberEnd;
+      while (unitEnd < end && Character.isLetter(value.charAt(unitEnd))) {
+        unitEnd++;
       }
 
-      totalMillis += number * unitMillis;
-      i++;
-      start = i;
+      long unit = units.multiplier(value, numberEnd, unitEnd);
+      if (unit < 0) {
+        return unit;
+      }
+      if (unit % nanosPerResultUnit != 0) {
+        long component = FixedPoint.multiply(value, i, numberEnd, unit);
+        if (component < 0) {
+          return component;
+        }
+        if (fineNanos > Long.MAX_VALUE - component) {
+          return ParseStatus.OUT_OF_RANGE;
+        }
+        fineNanos += component;
+      } else {
+        long component = FixedPoint.multiply(value, i, numberEnd, unit / nanosPerResultUnit);
+        if (component < 0) {
+          return component;
+        }
+        if (total > Long.MAX_VALUE - component) {
+          return ParseStatus.OUT_OF_RANGE;
+        }
+        total += component;
+      }
+      i = unitEnd;
     }
 
-    return new TimeDuration(totalMillis, value);
+    long fine = fineNanos / nanosPerResultUnit;
+    if (total > Long.MAX_VALUE - fine) {
+      return ParseStatus.OUT_OF_RANGE;
+    }
+    return total + fine;
   }
 
   /**
@@ -107,6 +227,45 @@ public class TimeDuration {
     return millis;
   }
 
+  /**
+   * Get the exact duration in nanoseconds.
+   *
+   * @return duration in nanoseconds
+   * @throws ArithmeticException if the duration is longer than about 292 years
+   */
+  public long getNanos() {
+    if (nanos < 0) {
+      throw new ArithmeticException("Duration " + originalValue + " does not fit in nanoseconds");
+    }
+    return nanos;
+  }
+
+  /**
+   * @return the exact duration in nanoseconds as a {@link Long}
+   * @throws ArithmeticException if the duration is longer than about 292 years
+   */
+  @Override
+  public Long value() {
+    return getNanos();
+  }
+
+  @Override
+  public TokenType type() {
+    return TokenType.TIME_DURATION;
+  }
+
+  @Override
+  public JsonElement toJson() {
+    JsonObject object = new JsonObject();
+    object.addProperty("type", TokenType.TIME_DURATION.name());
+    object.addProperty("value", originalValue);
+    object.addProperty("millis", millis);
+    if (nanos >= 0) {
+      object.addProperty("nanos", nanos);
+    }
+    return object;
+  }
+
   @Override
   public String toString() {
     return originalValue;
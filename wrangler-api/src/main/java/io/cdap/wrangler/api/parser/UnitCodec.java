@@ -0,0 +1,340 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.api.parser;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary encoding of byte sizes, durations and whole columns of them, for shuffles and
+ * spilled or persisted state.
+ *
+ * <p>Values are written as zigzag varints: seven bits per byte, so a value below 64 takes one byte
+ * and no value more than {@value #MAX_VARINT_BYTES}. A {@link ByteSize} or {@link TimeDuration} is
+ * written as a unit hint byte followed by its value as a whole number of that unit, so {@code 2MB}
+ * takes two bytes. The hint names the unit of the literal if it divides the value, else the largest
+ * unit that does, and the decoded token's text is the value in that unit: {@code 2MB} comes back as
+ * {@code 2MB} and {@code 1.5MB} as {@code 1536KB}. Durations too long for nanoseconds are written in
+ * milliseconds under a flagged hint. The value itself always round-trips exactly.</p>
+ *
+ * <p>A column is written as its length, its first value and then the difference between each value
+ * and the one before, all as zigzag varints, so sorted or slowly changing columns such as
+ * timestamps shrink to a byte or two per value. Differences wrap around on overflow, which decodes
+ * back exactly, so any {@code long} values, including {@link ParseStatus} codes, can be encoded.</p>
+ *
+ * <p>Every method has a {@link ByteBuffer} and a stream form that produce the same bytes. Malformed
+ * input raises {@link IllegalArgumentException}; input that ends early raises
+ * {@link java.nio.BufferUnderflowException} or {@link EOFException}.</p>
+ */
+public final class UnitCodec {
+  /** Largest number of bytes a varint takes. */
+  public static final int MAX_VARINT_BYTES = 10;
+  /** Longest column that can be decoded. */
+  public static final int MAX_COLUMN_LENGTH = Integer.MAX_VALUE - 8;
+
+  private static final String[] BYTE_UNITS = {"B", "KB", "MB", "GB", "TB", "PB"};
+  private static final String[] DURATION_UNITS = {"ns", "us", "ms", "s", "m", "h", "d"};
+  private static final long[] BYTE_MULTIPLIERS = multipliers(BYTE_UNITS, UnitRegistry.BYTES);
+  private static final long[] DURATION_MULTIPLIERS = multipliers(DURATION_UNITS, UnitRegistry.DURATIONS);
+  private static final long NANOS_PER_MILLI = 1_000_000L;
+  // Index of "ms", the smallest unit a duration in milliseconds can be written in
+  private static final int FIRST_MILLIS_UNIT = 2;
+  // Set in the hint of a duration written in milliseconds
+  private static final int MILLIS_FLAG = 0x40;
+
+  private UnitCodec() {
+  }
+
+  /**
+   * @return the number of bytes {@link #writeVarLong(ByteBuffer, long)} takes for the value
+   */
+  public static int varLongSize(long value) {
+    return (64 - Long.numberOfLeadingZeros(zigZag(value) | 1) + 6) / 7;
+  }
+
+  public static void writeVarLong(ByteBuffer buffer, long value) {
+    long bits = zigZag(value);
+    while ((bits & ~0x7FL) != 0) {
+      buffer.put((byte) ((bits & 0x7F) | 0x80));
+      bits >>>= 7;
+    }
+    buffer.put((byte) bits);
+  }
+
+  public static void writeVarLong(OutputStream out, long value) throws IOException {
+    long bits = zigZag(value);
+    while ((bits & ~0x7FL) != 0) {
+      out.write((int) ((bits & 0x7F) | 0x80));
+      bits >>>= 7;
+    }
+    out.write((int) bits);
+  }
+
+  public static long readVarLong(ByteBuffer buffer) {
+    long bits = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = buffer.get();
+      bits |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return unZigZag(bits);
+      }
+    }
+    throw new IllegalArgumentException("Malformed varint longer than " + MAX_VARINT_BYTES + " bytes");
+  }
+
+  public static long readVarLong(InputStream in) throws IOException {
+    long bits = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      int b = in.read();
+      if (b < 0) {
+        throw new EOFException("Stream ended inside a varint");
+      }
+      bits |= (long) (b & 0x7F) << shift;
+      if (b < 0x80) {
+        return unZigZag(bits);
+      }
+    }
+    throw new IllegalArgumentException("Malformed varint longer than " + MAX_VARINT_BYTES + " bytes");
+  }
+
+  public static void writeByteSize(ByteBuffer buffer, ByteSize size) {
+    int hint = hint(size.getBytes(), size.toString(), BYTE_MULTIPLIERS, 0, UnitRegistry.BYTES);
+    buffer.put((byte) hint);
+    writeVarLong(buffer, size.getBytes() / BYTE_MULTIPLIERS[hint]);
+  }
+
+  public static void writeByteSize(OutputStream out, ByteSize size) throws IOException {
+    int hint = hint(size.getBytes(), size.toString(), BYTE_MULTIPLIERS, 0, UnitRegistry.BYTES);
+    out.write(hint);
+    writeVarLong(out, size.getBytes() / BYTE_MULTIPLIERS[hint]);
+  }
+
+  public static ByteSize readByteSize(ByteBuffer buffer) {
+    int hint = buffer.get();
+    return byteSize(hint, readVarLong(buffer));
+  }
+
+  public static ByteSize readByteSize(InputStream in) throws IOException {
+    int hint = readHint(in);
+    return byteSize(hint, readVarLong(in));
+  }
+
+  public static void writeTimeDuration(ByteBuffer buffer, TimeDuration duration) {
+    long nanos = nanos(duration);
+    int hint = durationHint(duration, nanos);
+    buffer.put((byte) hint);
+    writeVarLong(buffer, durationUnits(duration, nanos, hint));
+  }
+
+  public static void writeTimeDuration(OutputStream out, TimeDuration duration) throws IOException {
+    long nanos = nanos(duration);
+    int hint = durationHint(duration, nanos);
+    out.write(hint);
+    writeVarLong(out, durationUnits(duration, nanos, hint));
+  }
+
+  public static TimeDuration readTimeDuration(ByteBuffer buffer) {
+    int hint = buffer.get();
+    return timeDuration(hint, readVarLong(buffer));
+  }
+
+  public static TimeDuration readTimeDuration(InputStream in) throws IOException {
+    int hint = readHint(in);
+    return timeDuration(hint, readVarLong(in));
+  }
+
+  /**
+   * @return the number of bytes {@link #writeColumn(ByteBuffer, long[], int, int)} takes
+   */
+  public static int columnSize(long[] values, int offset, int length) {
+    checkBounds(values, offset, length);
+    long size = varLongSize(length);
+    long previous = 0;
+    for (int i = offset; i < offset + length; i++) {
+      size += varLongSize(values[i] - previous);
+      previous = values[i];
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Encoded column of " + size + " bytes does not fit in an array");
+    }
+    return (int) size;
+  }
+
+  public static void writeColumn(ByteBuffer buffer, long[] values, int offset, int length) {
+    checkBounds(values, offset, length);
+    writeVarLong(buffer, length);
+    long previous = 0;
+    for (int i = offset; i < offset + length; i++) {
+      writeVarLong(buffer, values[i] - previous);
+      previous = values[i];
+    }
+  }
+
+  public static void writeColumn(OutputStream out, long[] values, int offset, int length) throws IOException {
+    checkBounds(values, offset, length);
+    writeVarLong(out, length);
+    long previous = 0;
+    for (int i = offset; i < offset + length; i++) {
+      writeVarLong(out, values[i] - previous);
+      previous = values[i];
+    }
+  }
+
+  public static long[] readColumn(ByteBuffer buffer) {
+    long length = readVarLong(buffer);
+    // Every value takes at least one byte, which bounds the allocation for corrupt input
+    if (length < 0 || length > buffer.remaining()) {
+      throw new IllegalArgumentException(
+        String.format("Column of %d values does not fit in the %d remaining bytes", length, buffer.remaining()));
+    }
+    long[] values = new long[(int) length];
+    long previous = 0;
+    for (int i = 0; i < values.length; i++) {
+      previous += readVarLong(buffer);
+      values[i] = previous;
+    }
+    return values;
+  }
+
+  public static long[] readColumn(InputStream in) throws IOException {
+    long length = readVarLong(in);
+    if (length < 0 || length > MAX_COLUMN_LENGTH) {
+      throw new IllegalArgumentException("Invalid column length " + length);
+    }
+    long[] values = new long[(int) length];
+    long previous = 0;
+    for (int i = 0; i < values.length; i++) {
+      previous += readVarLong(in);
+      values[i] = previous;
+    }
+    return values;
+  }
+
+  private static long zigZag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unZigZag(long bits) {
+    return (bits >>> 1) ^ -(bits & 1);
+  }
+
+  /**
+   * Picks the unit of the literal if it divides the value, else the largest unit that does.
+   */
+  private static int hint(long value, String text, long[] multipliers, int first, UnitRegistry units) {
+    int end = text.length();
+    int start = end;
+    while (start > 0 && Character.isLetter(text.charAt(start - 1))) {
+      start--;
+    }
+    long literal = units.multiplier(text, start, end);
+    for (int i = multipliers.length - 1; i >= first; i--) {
+      if (multipliers[i] == literal && value % scale(multipliers[i], first) == 0) {
+        return i;
+      }
+    }
+    for (int i = multipliers.length - 1; i > first; i--) {
+      if (value % scale(multipliers[i], first) == 0) {
+        return i;
+      }
+    }
+    return first;
+  }
+
+  private static long scale(long multiplier, int first) {
+    return first == FIRST_MILLIS_UNIT ? multiplier / NANOS_PER_MILLI : multiplier;
+  }
+
+  /**
+   * @return the duration in nanoseconds, or -1 if it is too long for them
+   */
+  private static long nanos(TimeDuration duration) {
+    try {
+      return duration.getNanos();
+    } catch (ArithmeticException e) {
+      return -1;
+    }
+  }
+
+  private static int durationHint(TimeDuration duration, long nanos) {
+    String text = duration.toString();
+    return nanos >= 0
+      ? hint(nanos, text, DURATION_MULTIPLIERS, 0, UnitRegistry.DURATIONS)
+      : MILLIS_FLAG | hint(duration.toMillis(), text, DURATION_MULTIPLIERS, FIRST_MILLIS_UNIT, UnitRegistry.DURATIONS);
+  }
+
+  /**
+   * @return the duration as a whole number of the hinted unit
+   */
+  private static long durationUnits(TimeDuration duration, long nanos, int hint) {
+    return nanos >= 0
+      ? nanos / DURATION_MULTIPLIERS[hint]
+      : duration.toMillis() / scale(DURATION_MULTIPLIERS[hint & ~MILLIS_FLAG], FIRST_MILLIS_UNIT);
+  }
+
+  private static int readHint(InputStream in) throws IOException {
+    int hint = in.read();
+    if (hint < 0) {
+      throw new EOFException("Stream ended before a unit hint");
+    }
+    return (byte) hint;
+  }
+
+  private static ByteSize byteSize(int hint, long units) {
+    if (hint < 0 || hint >= BYTE_UNITS.length || units < 0 || units > Long.MAX_VALUE / BYTE_MULTIPLIERS[hint]) {
+      throw new IllegalArgumentException(String.format("Invalid byte size encoding: hint %d, value %d", hint, units));
+    }
+    return ByteSize.of(units * BYTE_MULTIPLIERS[hint], units + BYTE_UNITS[hint]);
+  }
+
+  private static TimeDuration timeDuration(int hint, long units) {
+    boolean millis = (hint & MILLIS_FLAG) != 0;
+    int unit = hint & ~MILLIS_FLAG;
+    if (hint < 0 || unit >= DURATION_UNITS.length || (millis && unit < FIRST_MILLIS_UNIT) || units < 0) {
+      throw new IllegalArgumentException(String.format("Invalid duration encoding: hint %d, value %d", hint, units));
+    }
+    long multiplier = scale(DURATION_MULTIPLIERS[unit], millis ? FIRST_MILLIS_UNIT : 0);
+    if (units > Long.MAX_VALUE / multiplier) {
+      throw new IllegalArgumentException(String.format("Invalid duration encoding: hint %d, value %d", hint, units));
+    }
+    String text = units + DURATION_UNITS[unit];
+    long value = units * multiplier;
+    if (millis) {
+      return TimeDuration.of(value, ParseStatus.OUT_OF_RANGE, text);
+    }
+    return TimeDuration.of(value / NANOS_PER_MILLI, value, text);
+  }
+
+  private static long[] multipliers(String[] names, UnitRegistry units) {
+    long[] multipliers = new long[names.length];
+    for (int i = 0; i < names.length; i++) {
+      multipliers[i] = units.multiplier(names[i], 0, names[i].length());
+    }
+    return multipliers;
+  }
+
+  private static void checkBounds(long[] values, int offset, int length) {
+    if (offset < 0 || length < 0 || offset > values.length - length) {
+      throw new IndexOutOfBoundsException(
+        String.format("Range [%d, %d) out of bounds for length %d", offset, offset + length, values.length));
+    }
+  }
+}
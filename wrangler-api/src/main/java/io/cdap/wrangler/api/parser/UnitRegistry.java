@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.api.parser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable table from unit names to exact {@code long} multipliers, used by {@link ByteSize}
+ * and {@link TimeDuration} to resolve the unit of a literal.
+ *
+ * <p>Unit names are case insensitive and at most eight Latin-1 characters, so a name is packed
+ * into a single {@code long} and found in a small open-addressing table with one or two probes;
+ * resolving a unit allocates nothing, whether it is built in or custom. Multipliers are limited to
+ * {@code Long.MAX_VALUE / 10} so that scaling any decimal literal can detect overflow exactly.</p>
+ *
+ * <p>Three registries are predefined: {@link #BYTES} with binary {@code KB}..{@code PB} as
+ * before, {@link #SI_BYTES} with decimal {@code KB}..{@code PB}, both with explicit binary
+ * {@code KiB}..{@code PiB}, and {@link #DURATIONS} in nanoseconds. Custom units are added with
+ * {@link #toBuilder()}, e.g. {@code UnitRegistry.BYTES.toBuilder().add("blk", 4096).build()}.</p>
+ */
+public final class UnitRegistry {
+  /**
+   * Largest multiplier for which scaling a decimal literal is still checked for overflow exactly:
+   * folding in a fractional digit sums up to ten times the multiplier less one.
+   */
+  public static final long MAX_MULTIPLIER = Long.MAX_VALUE / 10;
+  private static final int MAX_NAME_LENGTH = 8;
+
+  /** B, binary KB to PB as in earlier releases, and KiB to PiB. */
+  public static final UnitRegistry BYTES = binaryPrefixes(builder().add("B", 1))
+    .add("KB", 1L << 10).add("MB", 1L << 20).add("GB", 1L << 30).add("TB", 1L << 40).add("PB", 1L << 50)
+    .build();
+
+  /** B, decimal KB to PB (powers of 1000), and KiB to PiB. */
+  public static final UnitRegistry SI_BYTES = binaryPrefixes(builder().add("B", 1))
+    .add("KB", 1_000L).add("MB", 1_000_000L).add("GB", 1_000_000_000L).add("TB", 1_000_000_000_000L)
+    .add("PB", 1_000_000_000_000_000L)
+    .build();
+
+  /** ns, us (also µs), ms, s, m, h and d, in nanoseconds. */
+  public static final UnitRegistry DURATIONS = builder()
+    .add("ns", 1L).add("us", 1_000L).add("µs", 1_000L).add("ms", 1_000_000L)
+    .add("s", 1_000_000_000L).add("m", 60_000_000_000L).add("h", 3_600_000_000_000L).add("d", 86_400_000_000_000L)
+    .build();
+
+  private final Map<String, Long> units;
+  private final long[] keys;
+  private final long[] multipliers;
+  private final int mask;
+
+  private UnitRegistry(Map<String, Long> units) {
+    this.units = units;
+    int capacity = Integer.highestOneBit(Math.max(4, units.size() * 4 - 1));
+    this.keys = new long[capacity];
+    this.multipliers = new long[capacity];
+    this.mask = capacity - 1;
+    for (Map.Entry<String, Long> unit : units.entrySet()) {
+      long key = pack(unit.getKey(), 0, unit.getKey().length());
+      int slot = slot(key);
+      while (keys[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = key;
+      multipliers[slot] = unit.getValue();
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * @return a builder holding every unit of this registry
+   */
+  public Builder toBuilder() {
+    Builder builder = new Builder();
+    builder.units.putAll(units);
+    return builder;
+  }
+
+  /**
+   * Looks up the unit spelled by {@code [start, end)}, ignoring case.
+   *
+   * @return the unit's multiplier, or {@link ParseStatus#INVALID_UNIT} if there is no such unit
+   */
+  public long multiplier(CharSequence value, int start, int end) {
+    long key = pack(value, start, end);
+    if (key != 0) {
+      for (int slot = slot(key); keys[slot] != 0; slot = (slot + 1) & mask) {
+        if (keys[slot] == key) {
+          return multipliers[slot];
+        }
+      }
+    }
+    return ParseStatus.INVALID_UNIT;
+  }
+
+  /**
+   * @return whether a unit of this name exists, ignoring case
+   */
+  public boolean contains(String unit) {
+    return multiplier(unit, 0, unit.length()) > 0;
+  }
+
+  private int slot(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h >>> 40) & mask;
+  }
+
+  /**
+   * Packs up to eight case-folded Latin-1 characters into a non-zero long, or returns 0 if the
+   * range is empty, too long or holds other characters.
+   */
+  private static long pack(CharSequence value, int start, int end) {
+    if (start >= end || end - start > MAX_NAME_LENGTH) {
+      return 0;
+    }
+    long key = 0;
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (c == 0 || c > 0xFF) {
+        return 0;
+      }
+      if (c >= 'A' && c <= 'Z') {
+        c += 'a' - 'A';
+      }
+      key = (key << 8) | c;
+    }
+    return key;
+  }
+
+  private static Builder binaryPrefixes(Builder builder) {
+    return builder.add("KiB", 1L << 10).add("MiB", 1L << 20).add("GiB", 1L << 30).add("TiB", 1L << 40)
+      .add("PiB", 1L << 50);
+  }
+
+  /**
+   * Collects units for a {@link UnitRegistry}. Adding a name that already exists, in any case,
+   * replaces its multiplier.
+   */
+  public static final class Builder {
+    private final Map<String, Long> units = new LinkedHashMap<>();
+
+    private Builder() {
+    }
+
+    /**
+     * @param name unit name of one to eight Latin-1 characters, matched case insensitively
+     * @param multiplier value of one unit, between 1 and {@link UnitRegistry#MAX_MULTIPLIER}
+     * @throws IllegalArgumentException if the name or multiplier is out of range
+     */
+    public Builder add(String name, long multiplier) {
+      if (pack(name, 0, name.length()) == 0) {
+        throw new IllegalArgumentException(
+          String.format("Unit name '%s' must be 1 to %d Latin-1 characters", name, MAX_NAME_LENGTH));
+      }
+      if (multiplier < 1 || multiplier > MAX_MULTIPLIER) {
+        throw new IllegalArgumentException(
+          String.format("Multiplier %d of unit '%s' must be between 1 and %d", multiplier, name, MAX_MULTIPLIER));
+      }
+      StringBuilder folded = new StringBuilder(name.length());
+      for (int i = 0; i < name.length(); i++) {
+        char c = name.charAt(i);
+        folded.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+      }
+      units.put(folded.toString(), multiplier);
+      return this;
+    }
+
+    public UnitRegistry build() {
+      return new UnitRegistry(new LinkedHashMap<>(units));
+    }
+  }
+}
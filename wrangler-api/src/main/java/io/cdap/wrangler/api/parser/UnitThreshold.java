@@ -0,0 +1,222 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.api.parser;
+
+/**
+ * Compares byte size or duration literals against a fixed threshold, usually without computing
+ * their value.
+ *
+ * <p>The threshold is normalised once, in bytes or nanoseconds. A literal with {@code d} integer
+ * digits, not counting leading zeros, in a unit worth {@code m} lies in
+ * {@code [10^(d-1) * m, 10^d * m)}; when the threshold falls outside that range, the result is
+ * known from the digit count and unit suffix alone. Only literals whose range straddles the
+ * threshold, and compound durations such as {@code 1h30m}, are parsed in full. Validation is
+ * the same as that of {@link ByteSize#tryParseBytes(CharSequence, int, int, UnitRegistry)} and
+ * {@link TimeDuration#tryParseNanos(CharSequence, int, int, UnitRegistry)}, including their
+ * {@link ParseStatus} codes. Instances are immutable and thread-safe.</p>
+ */
+public final class UnitThreshold {
+  /** Returned by {@link #test(CharSequence, int, int)} for a value that satisfies the comparison. */
+  public static final long MATCH = 1L;
+  /** Returned by {@link #test(CharSequence, int, int)} for a value that does not. */
+  public static final long NO_MATCH = 0L;
+
+  private static final long[] POWERS_OF_TEN = new long[19];
+
+  static {
+    POWERS_OF_TEN[0] = 1;
+    for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+      POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+    }
+  }
+
+  /**
+   * How a value is compared with the threshold.
+   */
+  public enum Comparison {
+    LT,
+    LE,
+    GT,
+    GE,
+    EQ,
+    NE
+  }
+
+  private final Comparison comparison;
+  private final long threshold;
+  private final UnitRegistry units;
+  private final boolean durations;
+
+  private UnitThreshold(Comparison comparison, long threshold, UnitRegistry units, boolean durations) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("Threshold must not be negative, got " + threshold);
+    }
+    this.comparison = comparison;
+    this.threshold = threshold;
+    this.units = units;
+    this.durations = durations;
+  }
+
+  /**
+   * @param threshold number of bytes values are compared with
+   */
+  public static UnitThreshold bytes(Comparison comparison, long threshold) {
+    return bytes(comparison, threshold, UnitRegistry.BYTES);
+  }
+
+  public static UnitThreshold bytes(Comparison comparison, long threshold, UnitRegistry units) {
+    return new UnitThreshold(comparison, threshold, units, false);
+  }
+
+  /**
+   * @param threshold number of nanoseconds values are compared with
+   */
+  public static UnitThreshold nanos(Comparison comparison, long threshold) {
+    return nanos(comparison, threshold, UnitRegistry.DURATIONS);
+  }
+
+  public static UnitThreshold nanos(Comparison comparison, long threshold, UnitRegistry units) {
+    return new UnitThreshold(comparison, threshold, units, true);
+  }
+
+  /**
+   * @return the threshold in bytes or nanoseconds
+   */
+  public long getThreshold() {
+    return threshold;
+  }
+
+  public Comparison getComparison() {
+    return comparison;
+  }
+
+  /**
+   * @param value a parsed, non-negative value in bytes or nanoseconds
+   * @return whether the value satisfies the comparison
+   */
+  public boolean matches(long value) {
+    return accepts(Long.compare(value, threshold));
+  }
+
+  /**
+   * Compares the literal in a character range with the threshold, without allocating or throwing.
+   *
+   * @param value characters holding the literal, may be null
+   * @param offset index of the first character
+   * @param length number of characters
+   * @return {@link #MATCH}, {@link #NO_MATCH}, or a negative {@link ParseStatus} code if the
+   *   literal is invalid
+   */
+  public long test(CharSequence value, int offset, int length) {
+    if (value == null) {
+      return ParseStatus.EMPTY;
+    }
+    FixedPoint.checkBounds(value, offset, length);
+    int start = FixedPoint.trimStart(value, offset, offset + length);
+    int end = FixedPoint.trimEnd(value, start, offset + length);
+    if (start == end) {
+      return ParseStatus.EMPTY;
+    }
+    if (value.charAt(start) == '-') {
+      return ParseStatus.NEGATIVE;
+    }
+
+    // One pass over the number counts the significant integer digits and validates it
+    int digits = 0;
+    int dots = 0;
+    boolean anyDigit = false;
+    int i = start;
+    for (; i < end; i++) {
+      char c = value.charAt(i);
+      if (c == '.') {
+        dots++;
+      } else if (c >= '0' && c <= '9') {
+        anyDigit = true;
+        if (dots == 0 && (digits > 0 || c != '0')) {
+          digits++;
+        }
+      } else {
+        break;
+      }
+    }
+    if (i == start || i == end) {
+      return ParseStatus.INVALID_FORMAT;
+    }
+
+    int unitEnd = end;
+    if (durations) {
+      unitEnd = i;
+      while (unitEnd < end && Character.isLetter(value.charAt(unitEnd))) {
+        unitEnd++;
+      }
+      if (unitEnd < end) {
+        // Compound durations, and anything malformed after the unit, take the full parser
+        return result(TimeDuration.tryParseNanos(value, start, end - start, units));
+      }
+    }
+    long multiplier = units.multiplier(value, i, unitEnd);
+    if (multiplier < 0) {
+      return multiplier;
+    }
+    if (!anyDigit || dots > 1) {
+      return ParseStatus.INVALID_NUMBER;
+    }
+
+    // The value lies in [lower, upper); decide from the bounds if both fit in a long
+    if (digits < POWERS_OF_TEN.length && POWERS_OF_TEN[digits] <= Long.MAX_VALUE / multiplier) {
+      long upper = POWERS_OF_TEN[digits] * multiplier;
+      long lower = digits == 0 ? 0 : POWERS_OF_TEN[digits - 1] * multiplier;
+      if (upper <= threshold) {
+        return accepts(-1) ? MATCH : NO_MATCH;
+      }
+      if (lower > threshold) {
+        return accepts(1) ? MATCH : NO_MATCH;
+      }
+    }
+    return result(FixedPoint.multiply(value, start, i, multiplier));
+  }
+
+  private long result(long parsed) {
+    if (parsed < 0) {
+      return parsed;
+    }
+    return matches(parsed) ? MATCH : NO_MATCH;
+  }
+
+  private boolean accepts(int sign) {
+    switch (comparison) {
+      case LT:
+        return sign < 0;
+      case LE:
+        return sign <= 0;
+      case GT:
+        return sign > 0;
+      case GE:
+        return sign >= 0;
+      case EQ:
+        return sign == 0;
+      default:
+        return sign != 0;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return comparison.name().toLowerCase() + " " + threshold;
+  }
+}
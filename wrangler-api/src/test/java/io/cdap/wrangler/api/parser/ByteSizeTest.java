@@ -57,4 +57,72 @@ public class ByteSizeTest {
     ByteSize size = ByteSize.parse("1.5GB");
     Assert.assertEquals("1.5GB", size.toString());
   }
-} 
\ No newline at end of file
+
+  @Test
+  public void testParseBytesMatchesParse() {
+    String[] values = {"1KB", "1.5KB", "0.1KB", "2mb", " 3.25GB ", "1TB", "1.KB", ".5MB"};
+    for (String value : values) {
+      Assert.assertEquals(value, (long) ByteSize.parse(value).toBytes(),
+                          ByteSize.parseBytes(value, 0, value.length()));
+    }
+  }
+
+  @Test
+  public void testParseBytesRange() {
+    String line = "id=7,size=1.5MB,time=2s";
+    Assert.assertEquals(1572864L, ByteSize.parseBytes(line, 10, 5));
+    Assert.assertEquals(1024L, ByteSize.parseBytes(new StringBuilder("x1KBx"), 1, 3));
+  }
+
+  @Test
+  public void testParseBytesExactFraction() {
+    // 1.1 * 2^40 is not representable as a double; the fixed-point path truncates exactly.
+    Assert.assertEquals(1209462790553L, ByteSize.parseBytes("1.1TB", 0, 5));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseBytesMultipleDecimalPoints() {
+    ByteSize.parseBytes("1.2.3KB", 0, 7);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseBytesOverflow() {
+    ByteSize.parseBytes("99999999999TB", 0, 13);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testParseBytesOutOfBounds() {
+    ByteSize.parseBytes("1KB", 1, 3);
+  }
+
+  @Test
+  public void testTryParseBytesStatus() {
+    Assert.assertEquals(1536L, ByteSize.tryParseBytes("1.5KB", 0, 5));
+    Assert.assertEquals(ParseStatus.EMPTY, ByteSize.tryParseBytes(null, 0, 0));
+    Assert.assertEquals(ParseStatus.EMPTY, ByteSize.tryParseBytes("   ", 0, 3));
+    Assert.assertEquals(ParseStatus.NEGATIVE, ByteSize.tryParseBytes("-1KB", 0, 4));
+    Assert.assertEquals(ParseStatus.INVALID_FORMAT, ByteSize.tryParseBytes("KB", 0, 2));
+    Assert.assertEquals(ParseStatus.INVALID_NUMBER, ByteSize.tryParseBytes("1..2KB", 0, 6));
+    Assert.assertEquals(ParseStatus.INVALID_UNIT, ByteSize.tryParseBytes("1XB", 0, 3));
+    Assert.assertEquals(ParseStatus.OUT_OF_RANGE, ByteSize.tryParseBytes("99999999999TB", 0, 13));
+    Assert.assertTrue(ParseStatus.isError(ByteSize.tryParseBytes("invalid", 0, 7)));
+  }
+
+  @Test
+  public void testBytesAndPetabytes() {
+    Assert.assertEquals(512L, ByteSize.parseBytes("512B", 0, 4));
+    Assert.assertEquals(1L, ByteSize.parseBytes("1.5b", 0, 4));
+    Assert.assertEquals(1L << 50, ByteSize.parseBytes("1PB", 0, 3));
+    Assert.assertEquals(3L << 49, ByteSize.parseBytes("1.5pb", 0, 5));
+    Assert.assertEquals(ParseStatus.OUT_OF_RANGE, ByteSize.tryParseBytes("8192PB", 0, 6));
+  }
+
+  @Test
+  public void testToken() {
+    ByteSize size = ByteSize.parse("1.5MB");
+    Assert.assertEquals(TokenType.BYTE_SIZE, size.type());
+    Assert.assertEquals(Long.valueOf(1572864L), size.value());
+    Assert.assertEquals(1572864L, size.getBytes());
+    Assert.assertEquals("1.5MB", size.toJson().getAsJsonObject().get("value").getAsString());
+  }
+}
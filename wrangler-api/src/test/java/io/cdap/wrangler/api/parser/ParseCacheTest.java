@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.api.parser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParseCacheTest {
+
+  @Test
+  public void testHitsAndMisses() {
+    ParseCache cache = ParseCache.forBytes(64);
+    String[] values = {"4KB", "64MB", "4KB", "4KB", "64MB"};
+    for (String value : values) {
+      Assert.assertEquals(ByteSize.parseBytes(value, 0, value.length()), cache.parse(value, 0, value.length()));
+    }
+    Assert.assertEquals(2L, cache.misses());
+    Assert.assertEquals(3L, cache.hits());
+    Assert.assertEquals(0.6, cache.hitRate(), 0.0001);
+  }
+
+  @Test
+  public void testRangeLookupMatchesString() {
+    ParseCache cache = ParseCache.forNanos(16);
+    Assert.assertEquals(250_000_000_000L, cache.parse("250.0s", 0, 6));
+    Assert.assertEquals(250_000_000_000L, cache.parse("t=250.0s;", 2, 6));
+    Assert.assertEquals(1L, cache.hits());
+  }
+
+  @Test
+  public void testInvalidValuesAreCached() {
+    ParseCache cache = ParseCache.forBytes(16);
+    Assert.assertEquals(ParseStatus.INVALID_UNIT, cache.parse("1XB", 0, 3));
+    Assert.assertEquals(ParseStatus.INVALID_UNIT, cache.parse("1XB", 0, 3));
+    Assert.assertEquals(1L, cache.hits());
+    Assert.assertEquals(ParseStatus.EMPTY, cache.parse(null, 0, 0));
+  }
+
+  @Test
+  public void testReplacePolicyEvicts() {
+    ParseCache cache = new ParseCache(ByteSize::tryParseBytes, 1, ParseCache.EvictionPolicy.REPLACE);
+    cache.parse("1KB", 0, 3);
+    cache.parse("2KB", 0, 3);
+    cache.parse("2KB", 0, 3);
+    Assert.assertEquals(1L, cache.evictions());
+    Assert.assertEquals(1L, cache.hits());
+  }
+
+  @Test
+  public void testRetainPolicyKeepsResident() {
+    ParseCache cache = new ParseCache(ByteSize::tryParseBytes, 1, ParseCache.EvictionPolicy.RETAIN);
+    cache.parse("1KB", 0, 3);
+    Assert.assertEquals(2048L, cache.parse("2KB", 0, 3));
+    cache.parse("1KB", 0, 3);
+    Assert.assertEquals(0L, cache.evictions());
+    Assert.assertEquals(1L, cache.hits());
+  }
+
+  @Test
+  public void testCapacityIsBounded() {
+    Assert.assertEquals(64, ParseCache.forBytes(100).capacity());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidSize() {
+    ParseCache.forBytes(0);
+  }
+}
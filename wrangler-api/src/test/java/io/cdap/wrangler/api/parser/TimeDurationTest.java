@@ -16,6 +16,7 @@
 
 package io.cdap.wrangler.api.parser;
 
+import com.google.gson.JsonObject;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -63,4 +64,93 @@ public class TimeDurationTest {
     Assert.assertEquals(3660000L, TimeDuration.parse("1h1m").toMillis());
     Assert.assertEquals(3661000L, TimeDuration.parse("1h1m1s").toMillis());
   }
-} 
\ No newline at end of file
+
+  @Test
+  public void testParseMillisMatchesParse() {
+    String[] values = {"1s", "1.5s", "1.5m", "2H", " 1h30m ", "1h1m1s", "0.001s", "1d"};
+    for (String value : values) {
+      Assert.assertEquals(value, TimeDuration.parse(value).toMillis(),
+                          TimeDuration.parseMillis(value, 0, value.length()));
+    }
+  }
+
+  @Test
+  public void testParseNanos() {
+    Assert.assertEquals(1_500_000_000L, TimeDuration.parseNanos("1.5s", 0, 4));
+    Assert.assertEquals(5_400_000_000_000L, TimeDuration.parseNanos("1h30m", 0, 5));
+    Assert.assertEquals(1_000L, TimeDuration.parseNanos("0.000001s", 0, 9));
+  }
+
+  @Test
+  public void testParseNanosRange() {
+    String line = "size=1MB,time=250.5s";
+    Assert.assertEquals(250_500_000_000L, TimeDuration.parseNanos(line, 14, 6));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseNanosMissingUnit() {
+    TimeDuration.parseNanos("1h30", 0, 4);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseNanosOverflow() {
+    TimeDuration.parseNanos("200000d", 0, 7);
+  }
+
+  @Test
+  public void testTryParseStatus() {
+    Assert.assertEquals(5_400_000L, TimeDuration.tryParseMillis("1h30m", 0, 5));
+    Assert.assertEquals(ParseStatus.EMPTY, TimeDuration.tryParseNanos(null, 0, 0));
+    Assert.assertEquals(ParseStatus.NEGATIVE, TimeDuration.tryParseNanos("-1s", 0, 3));
+    Assert.assertEquals(ParseStatus.INVALID_FORMAT, TimeDuration.tryParseNanos("1h30", 0, 4));
+    Assert.assertEquals(ParseStatus.INVALID_UNIT, TimeDuration.tryParseNanos("1w", 0, 2));
+    Assert.assertEquals(ParseStatus.OUT_OF_RANGE, TimeDuration.tryParseNanos("200000d", 0, 7));
+  }
+
+  @Test
+  public void testSubSecondUnits() {
+    Assert.assertEquals(500L, TimeDuration.parse("500ms").toMillis());
+    Assert.assertEquals(250_000L, TimeDuration.parseNanos("250000ns", 0, 8));
+    Assert.assertEquals(1L, TimeDuration.parseNanos("1.5ns", 0, 5));
+    Assert.assertEquals(1_500_000_000L, TimeDuration.parseNanos("1s500ms", 0, 7));
+    Assert.assertEquals(2L, TimeDuration.parseMillis("1ms999999ns1ns", 0, 14));
+    Assert.assertEquals(90_500L, TimeDuration.parseMillis("1M30S500MS", 0, 10));
+    Assert.assertEquals(ParseStatus.INVALID_UNIT, TimeDuration.tryParseNanos("1hm", 0, 3));
+  }
+
+  @Test
+  public void testToken() {
+    TimeDuration duration = TimeDuration.parse("1h30m");
+    Assert.assertEquals(TokenType.TIME_DURATION, duration.type());
+    Assert.assertEquals(Long.valueOf(5_400_000_000_000L), duration.value());
+    Assert.assertEquals(5_400_000_000_000L, duration.getNanos());
+    Assert.assertEquals(5_400_000L, duration.toMillis());
+  }
+
+  @Test
+  public void testMillisFollowNanos() {
+    String[] values = {"0.5ms0.5ms", "0.4ms0.4ms0.4ms", "1.5ms", "999999ns1ns", "1s0.9ms"};
+    for (String value : values) {
+      TimeDuration duration = TimeDuration.parse(value);
+      Assert.assertEquals(value, duration.getNanos() / 1_000_000L, duration.toMillis());
+      Assert.assertEquals(value, duration.toMillis(), TimeDuration.parseMillis(value, 0, value.length()));
+    }
+    Assert.assertEquals(1L, TimeDuration.parse("0.5ms0.5ms").toMillis());
+  }
+
+  @Test
+  public void testJsonCarriesNanos() {
+    JsonObject json = TimeDuration.parse("1.5ms").toJson().getAsJsonObject();
+    Assert.assertEquals("1.5ms", json.get("value").getAsString());
+    Assert.assertEquals(1L, json.get("millis").getAsLong());
+    Assert.assertEquals(1_500_000L, json.get("nanos").getAsLong());
+    Assert.assertFalse(TimeDuration.parse("200000d").toJson().getAsJsonObject().has("nanos"));
+  }
+
+  @Test(expected = ArithmeticException.class)
+  public void testNanosOutOfRange() {
+    TimeDuration duration = TimeDuration.parse("200000d");
+    Assert.assertEquals(200000L * 86_400_000L, duration.toMillis());
+    duration.getNanos();
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.api.parser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+public class UnitCodecTest {
+
+  @Test
+  public void testVarLongRoundTrip() throws Exception {
+    long[] values = {0, 1, -1, 63, -64, 64, 1L << 35, Long.MAX_VALUE, Long.MIN_VALUE, ParseStatus.OUT_OF_RANGE};
+    ByteBuffer buffer = ByteBuffer.allocate(values.length * UnitCodec.MAX_VARINT_BYTES);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (long value : values) {
+      int before = buffer.position();
+      UnitCodec.writeVarLong(buffer, value);
+      Assert.assertEquals(UnitCodec.varLongSize(value), buffer.position() - before);
+      UnitCodec.writeVarLong(out, value);
+    }
+    Assert.assertEquals(1, UnitCodec.varLongSize(63));
+    Assert.assertEquals(2, UnitCodec.varLongSize(64));
+    Assert.assertEquals(UnitCodec.MAX_VARINT_BYTES, UnitCodec.varLongSize(Long.MIN_VALUE));
+
+    buffer.flip();
+    byte[] streamed = out.toByteArray();
+    Assert.assertEquals(buffer.remaining(), streamed.length);
+    ByteArrayInputStream in = new ByteArrayInputStream(streamed);
+    for (long value : values) {
+      Assert.assertEquals(value, UnitCodec.readVarLong(buffer));
+      Assert.assertEquals(value, UnitCodec.readVarLong(in));
+    }
+  }
+
+  @Test
+  public void testByteSizeKeepsUnit() throws Exception {
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    for (String literal : new String[] {"2MB", "0KB", "1024kb", "3KiB"}) {
+      UnitCodec.writeByteSize(buffer, ByteSize.parse(literal));
+    }
+    UnitCodec.writeByteSize(buffer, ByteSize.parse("1.5MB"));
+    Assert.assertEquals(2 + 2 + 3 + 2 + 3, buffer.position());
+    buffer.flip();
+    Assert.assertEquals("2MB", UnitCodec.readByteSize(buffer).toString());
+    Assert.assertEquals("0KB", UnitCodec.readByteSize(buffer).toString());
+    Assert.assertEquals("1024KB", UnitCodec.readByteSize(buffer).toString());
+    Assert.assertEquals("3KB", UnitCodec.readByteSize(buffer).toString());
+    ByteSize fractional = UnitCodec.readByteSize(buffer);
+    Assert.assertEquals(1536L * 1024, fractional.getBytes());
+    Assert.assertEquals("1536KB", fractional.toString());
+  }
+
+  @Test
+  public void testTimeDurationRoundTrip() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    String[] literals = {"1h30m", "250us", "1.5s", "90m", "7ns"};
+    for (String literal : literals) {
+      UnitCodec.writeTimeDuration(out, TimeDuration.parse(literal));
+    }
+    ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+    String[] expected = {"90m", "250us", "1500ms", "90m", "7ns"};
+    for (int i = 0; i < literals.length; i++) {
+      TimeDuration original = TimeDuration.parse(literals[i]);
+      TimeDuration decoded = UnitCodec.readTimeDuration(in);
+      Assert.assertEquals(expected[i], decoded.toString());
+      Assert.assertEquals(original.getNanos(), decoded.getNanos());
+      Assert.assertEquals(original.toMillis(), decoded.toMillis());
+    }
+    Assert.assertEquals(-1, in.read());
+  }
+
+  @Test
+  public void testDurationBeyondNanos() {
+    TimeDuration distant = TimeDuration.parse("200000d");
+    ByteBuffer buffer = ByteBuffer.allocate(16);
+    UnitCodec.writeTimeDuration(buffer, distant);
+    buffer.flip();
+    TimeDuration decoded = UnitCodec.readTimeDuration(buffer);
+    Assert.assertEquals("200000d", decoded.toString());
+    Assert.assertEquals(distant.toMillis(), decoded.toMillis());
+  }
+
+  @Test
+  public void testColumnDeltaEncoding() throws Exception {
+    long[] timestamps = new long[1000];
+    for (int i = 0; i < timestamps.length; i++) {
+      timestamps[i] = 1_700_000_000_000L + i * 10;
+    }
+    int size = UnitCodec.columnSize(timestamps, 0, timestamps.length);
+    Assert.assertTrue("size " + size, size < timestamps.length + 16);
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    UnitCodec.writeColumn(buffer, timestamps, 0, timestamps.length);
+    Assert.assertFalse(buffer.hasRemaining());
+    buffer.flip();
+    Assert.assertArrayEquals(timestamps, UnitCodec.readColumn(buffer));
+  }
+
+  @Test
+  public void testColumnRandomRoundTrip() throws Exception {
+    Random random = new Random(7);
+    long[] values = new long[500];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = random.nextInt(4) == 0 ? random.nextLong() : random.nextInt(1 << 20);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    UnitCodec.writeColumn(out, values, 100, 300);
+    Assert.assertEquals(UnitCodec.columnSize(values, 100, 300), out.size());
+    long[] decoded = UnitCodec.readColumn(new ByteArrayInputStream(out.toByteArray()));
+    Assert.assertEquals(300, decoded.length);
+    for (int i = 0; i < decoded.length; i++) {
+      Assert.assertEquals(values[100 + i], decoded[i]);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCorruptColumnLength() {
+    ByteBuffer buffer = ByteBuffer.allocate(16);
+    UnitCodec.writeVarLong(buffer, 1_000_000);
+    buffer.flip();
+    UnitCodec.readColumn(buffer);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidHint() {
+    ByteBuffer buffer = ByteBuffer.wrap(new byte[] {42, 2});
+    UnitCodec.readByteSize(buffer);
+  }
+
+  @Test(expected = EOFException.class)
+  public void testTruncatedStream() throws Exception {
+    UnitCodec.readVarLong(new ByteArrayInputStream(new byte[] {(byte) 0x80}));
+  }
+}
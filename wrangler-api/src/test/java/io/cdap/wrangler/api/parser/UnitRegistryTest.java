@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.api.parser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+public class UnitRegistryTest {
+
+  @Test
+  public void testBinaryAndDecimalBytes() {
+    Assert.assertEquals(1024L, UnitRegistry.BYTES.multiplier("KB", 0, 2));
+    Assert.assertEquals(1000L, UnitRegistry.SI_BYTES.multiplier("KB", 0, 2));
+    Assert.assertEquals(1L << 50, UnitRegistry.BYTES.multiplier("PiB", 0, 3));
+    Assert.assertEquals(1L << 50, UnitRegistry.SI_BYTES.multiplier("pib", 0, 3));
+    Assert.assertEquals(1L, UnitRegistry.SI_BYTES.multiplier("b", 0, 1));
+  }
+
+  @Test
+  public void testLookupIsCaseInsensitiveAndBounded() {
+    Assert.assertEquals(1L << 20, UnitRegistry.BYTES.multiplier("10mIb", 2, 5));
+    Assert.assertEquals(ParseStatus.INVALID_UNIT, UnitRegistry.BYTES.multiplier("KBX", 0, 3));
+    Assert.assertEquals(ParseStatus.INVALID_UNIT, UnitRegistry.BYTES.multiplier("KB", 1, 1));
+    Assert.assertEquals(ParseStatus.INVALID_UNIT, UnitRegistry.BYTES.multiplier("kilobytes", 0, 9));
+    Assert.assertFalse(UnitRegistry.BYTES.contains("s"));
+    Assert.assertTrue(UnitRegistry.DURATIONS.contains("MS"));
+  }
+
+  @Test
+  public void testMicroseconds() {
+    Assert.assertEquals(1_000L, UnitRegistry.DURATIONS.multiplier("us", 0, 2));
+    Assert.assertEquals(1_000L, UnitRegistry.DURATIONS.multiplier("µs", 0, 2));
+    Assert.assertEquals(1_500L, TimeDuration.tryParseNanos("1.5us", 0, 5));
+    Assert.assertEquals(2_000_250_000L, TimeDuration.tryParseNanos("2s250µs", 0, 7));
+  }
+
+  @Test
+  public void testCustomUnits() {
+    UnitRegistry blocks = UnitRegistry.BYTES.toBuilder().add("blk", 4096).add("KB", 1000).build();
+    Assert.assertEquals(3L * 4096, ByteSize.tryParseBytes("3BLK", 0, 4, blocks));
+    Assert.assertEquals(2000L, ByteSize.tryParseBytes("2kb", 0, 3, blocks));
+    Assert.assertEquals(1L << 30, ByteSize.tryParseBytes("1GB", 0, 3, blocks));
+    Assert.assertEquals(ParseStatus.INVALID_UNIT, ByteSize.tryParseBytes("3blk", 0, 4, UnitRegistry.BYTES));
+
+    UnitRegistry weeks = UnitRegistry.DURATIONS.toBuilder().add("w", 7 * 86_400_000_000_000L).build();
+    Assert.assertEquals(7 * 86_400_000_000_000L + 3_600_000_000_000L,
+                        TimeDuration.tryParseNanos("1w1h", 0, 4, weeks));
+  }
+
+  @Test
+  public void testInvalidDefinitions() {
+    UnitRegistry.Builder builder = UnitRegistry.builder();
+    for (String name : new String[] {"", "megabytes", "μs"}) {
+      try {
+        builder.add(name, 1);
+        Assert.fail("Expected unit name '" + name + "' to be rejected");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+    for (long multiplier : new long[] {0, -1, UnitRegistry.MAX_MULTIPLIER + 1}) {
+      try {
+        builder.add("x", multiplier);
+        Assert.fail("Expected multiplier " + multiplier + " to be rejected");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testLargestMultiplier() {
+    long max = UnitRegistry.MAX_MULTIPLIER;
+    UnitRegistry units = UnitRegistry.builder().add("x", max).build();
+    // Nines fold the largest sums into the fraction; the results must still be exact floors
+    for (String number : new String[] {"0.9999999999999999999", "9.99999", "1.5", "0.1"}) {
+      String literal = number + "x";
+      long expected = new BigDecimal(number).multiply(BigDecimal.valueOf(max)).longValue();
+      Assert.assertEquals(literal, expected, ByteSize.tryParseBytes(literal, 0, literal.length(), units));
+    }
+    Assert.assertEquals(ParseStatus.OUT_OF_RANGE, ByteSize.tryParseBytes("10.01x", 0, 6, units));
+  }
+
+  @Test
+  public void testExactSums() {
+    long total = 0;
+    for (int i = 0; i < 1000; i++) {
+      total += ByteSize.tryParseBytes("1.5MiB", 0, 6, UnitRegistry.BYTES);
+    }
+    Assert.assertEquals(1000L * 1_572_864L, total);
+    Assert.assertEquals(1_000_000_000_000_000L, ByteSize.tryParseBytes("1PB", 0, 3, UnitRegistry.SI_BYTES));
+    Assert.assertEquals(ParseStatus.OUT_OF_RANGE, ByteSize.tryParseBytes("9000PB", 0, 6, UnitRegistry.BYTES));
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.api.parser;
+
+import io.cdap.wrangler.api.parser.UnitThreshold.Comparison;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class UnitThresholdTest {
+
+  @Test
+  public void testComparisons() {
+    long mb = 1L << 20;
+    Assert.assertEquals(UnitThreshold.MATCH, UnitThreshold.bytes(Comparison.LT, mb).test("512KB", 0, 5));
+    Assert.assertEquals(UnitThreshold.NO_MATCH, UnitThreshold.bytes(Comparison.LT, mb).test("1MB", 0, 3));
+    Assert.assertEquals(UnitThreshold.MATCH, UnitThreshold.bytes(Comparison.LE, mb).test("1024KB", 0, 6));
+    Assert.assertEquals(UnitThreshold.MATCH, UnitThreshold.bytes(Comparison.GE, mb).test("1mb", 0, 3));
+    Assert.assertEquals(UnitThreshold.NO_MATCH, UnitThreshold.bytes(Comparison.GT, mb).test("1MB", 0, 3));
+    Assert.assertEquals(UnitThreshold.MATCH, UnitThreshold.bytes(Comparison.EQ, mb).test(" 1.0MB ", 0, 7));
+    Assert.assertEquals(UnitThreshold.MATCH, UnitThreshold.bytes(Comparison.NE, mb).test("3GB", 0, 3));
+    Assert.assertTrue(UnitThreshold.bytes(Comparison.GT, mb).matches(mb + 1));
+  }
+
+  @Test
+  public void testDurations() {
+    UnitThreshold slow = UnitThreshold.nanos(Comparison.GT, 500_000_000L);
+    Assert.assertEquals(UnitThreshold.MATCH, slow.test("2s", 0, 2));
+    Assert.assertEquals(UnitThreshold.NO_MATCH, slow.test("499ms", 0, 5));
+    Assert.assertEquals(UnitThreshold.MATCH, slow.test("501ms", 0, 5));
+    Assert.assertEquals(UnitThreshold.MATCH, slow.test("0s501ms", 0, 7));
+    Assert.assertEquals(UnitThreshold.NO_MATCH, slow.test("250us", 0, 5));
+  }
+
+  @Test
+  public void testInvalidLiterals() {
+    UnitThreshold threshold = UnitThreshold.bytes(Comparison.GT, 1);
+    Assert.assertEquals(ParseStatus.EMPTY, threshold.test(null, 0, 0));
+    Assert.assertEquals(ParseStatus.EMPTY, threshold.test("  ", 0, 2));
+    Assert.assertEquals(ParseStatus.NEGATIVE, threshold.test("-1MB", 0, 4));
+    Assert.assertEquals(ParseStatus.INVALID_FORMAT, threshold.test("MB", 0, 2));
+    Assert.assertEquals(ParseStatus.INVALID_UNIT, threshold.test("10XB", 0, 4));
+    Assert.assertEquals(ParseStatus.INVALID_NUMBER, threshold.test("1.2.3MB", 0, 7));
+    Assert.assertEquals(ParseStatus.OUT_OF_RANGE, threshold.test("99999999PB", 0, 10));
+    Assert.assertEquals(ParseStatus.INVALID_UNIT,
+                        UnitThreshold.nanos(Comparison.GT, 1).test("5 fortnights", 0, 12));
+  }
+
+  @Test
+  public void testAgreesWithFullParse() {
+    String[] byteUnits = {"B", "KB", "MB", "GB", "TB", "PB", "KiB"};
+    String[] timeUnits = {"ns", "us", "ms", "s", "m", "h", "d"};
+    Random random = new Random(42);
+    for (int n = 0; n < 20_000; n++) {
+      boolean durations = random.nextBoolean();
+      String[] units = durations ? timeUnits : byteUnits;
+      String unit = units[random.nextInt(units.length)];
+      String number = Long.toString((long) Math.pow(10, random.nextInt(19) * random.nextDouble()));
+      if (random.nextInt(4) == 0) {
+        number += "." + random.nextInt(1000);
+      }
+      if (random.nextInt(8) == 0) {
+        number = "00" + number;
+      }
+      String literal = number + unit;
+      long value = durations ? TimeDuration.tryParseNanos(literal, 0, literal.length())
+        : ByteSize.tryParseBytes(literal, 0, literal.length());
+      long threshold = random.nextBoolean() && value >= 0
+        ? value : (long) Math.pow(10, random.nextInt(19) * random.nextDouble());
+      for (Comparison comparison : Comparison.values()) {
+        UnitThreshold t = durations
+          ? UnitThreshold.nanos(comparison, threshold) : UnitThreshold.bytes(comparison, threshold);
+        long expected = value < 0 ? value : t.matches(value) ? UnitThreshold.MATCH : UnitThreshold.NO_MATCH;
+        Assert.assertEquals(literal + " " + t, expected, t.test(literal, 0, literal.length()));
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeThreshold() {
+    UnitThreshold.bytes(Comparison.LT, -1);
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.benchmarks;
+
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.ErrorRowException;
+import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ColumnName;
+import io.cdap.wrangler.api.parser.Identifier;
+import io.cdap.wrangler.api.parser.Text;
+import io.cdap.wrangler.api.parser.Token;
+import io.cdap.wrangler.core.columnar.ColumnBatch;
+import io.cdap.wrangler.core.directives.aggregates.AggregateStatsDirective;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link AggregateStatsDirective#execute} on one batch per invocation, across batch
+ * sizes, input mixes and parse cache sizes. Invalid cells are counted rather than failing the
+ * batch, so the {@code mixed} and {@code invalid} mixes measure the error path too. The directive
+ * is initialized once per trial, so its totals keep growing across invocations as they would over
+ * a long partition. {@link #executeColumnar()} runs the same batch already transposed into
+ * columns, which separates the cost of the row-to-column adapter from the aggregation itself.
+ * A non-zero {@code parallelBatchSize} splits batches at least that large across the common
+ * fork-join pool.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class AggregateStatsBenchmark {
+
+  @Param({"1", "100", "10000", "1000000"})
+  public int batchSize;
+
+  @Param({"valid", "mixed"})
+  public String mix;
+
+  @Param({"0", "1024"})
+  public int cacheSize;
+
+  @Param({"0", "65536"})
+  public int parallelBatchSize;
+
+  private AggregateStatsDirective directive;
+  private List<Row> batch;
+  private ColumnBatch columns;
+  private ExecutorContext context;
+
+  @Setup(Level.Trial)
+  public void setUp() throws DirectiveParseException {
+    Map<String, Token> tokens = new HashMap<>();
+    tokens.put("byteSizeColumn", new ColumnName("data_size"));
+    tokens.put("timeDurationColumn", new ColumnName("response_time"));
+    tokens.put("totalSizeColumn", new Text("total_size_mb"));
+    tokens.put("totalTimeColumn", new Text("total_time_sec"));
+    tokens.put("onError", new Identifier("count"));
+    tokens.put("options", new Text(String.format("cache=%d; parallel=%d", cacheSize, parallelBatchSize)));
+    directive = new AggregateStatsDirective();
+    directive.initialize(BenchmarkContexts.arguments(tokens));
+
+    // Real columns repeat values heavily, so draw the rows from a small pool of distinct literals
+    String[] sizes = InputMixes.byteSizes(mix, 256);
+    String[] durations = InputMixes.timeDurations(mix, 256);
+    batch = new ArrayList<>(batchSize);
+    for (int i = 0; i < batchSize; i++) {
+      batch.add(new Row("data_size", sizes[i % sizes.length]).add("response_time", durations[i % durations.length]));
+    }
+    columns = ColumnBatch.fromRows(batch, directive.inputColumns());
+    context = BenchmarkContexts.context(false);
+  }
+
+  @Benchmark
+  public List<Row> execute() throws DirectiveExecutionException, ErrorRowException {
+    return directive.execute(batch, context);
+  }
+
+  @Benchmark
+  public List<Row> executeColumnar() throws DirectiveExecutionException, ErrorRowException {
+    return directive.execute(columns, context);
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.benchmarks;
+
+import io.cdap.cdap.etl.api.StageMetrics;
+import io.cdap.wrangler.api.Arguments;
+import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.TransientStore;
+import io.cdap.wrangler.api.parser.Token;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Minimal {@link Arguments} and {@link ExecutorContext} for driving directives outside a pipeline.
+ */
+final class BenchmarkContexts {
+
+  private BenchmarkContexts() {
+  }
+
+  static Arguments arguments(Map<String, Token> tokens) {
+    return new Arguments() {
+      @Override
+      public int size() {
+        return tokens.size();
+      }
+
+      @Override
+      public boolean contains(String name) {
+        return tokens.containsKey(name);
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public <T> T value(String name) {
+        return (T) tokens.get(name);
+      }
+    };
+  }
+
+  static ExecutorContext context(boolean isLast) {
+    return new ExecutorContext() {
+      @Override
+      public String getNamespace() {
+        return "benchmark";
+      }
+
+      @Override
+      public Environment getEnvironment() {
+        return Environment.TESTING;
+      }
+
+      @Override
+      public StageMetrics getMetrics() {
+        return null;
+      }
+
+      @Override
+      public String getContextName() {
+        return "benchmark";
+      }
+
+      @Override
+      public Map<String, String> getProperties() {
+        return Collections.emptyMap();
+      }
+
+      @Override
+      public URL getService(String applicationId, String serviceId) {
+        return null;
+      }
+
+      @Override
+      public TransientStore getTransientStore() {
+        return null;
+      }
+
+      @Override
+      public boolean isLast() {
+        return isLast;
+      }
+    };
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.benchmarks;
+
+import io.cdap.wrangler.parser.DirectivesLexer;
+import io.cdap.wrangler.parser.DirectivesParser;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks lexing and parsing of directive lines with the {@code Directives.g4} grammar. Each
+ * line carries byte size and time duration literals drawn from {@link InputMixes}, so the
+ * {@code BYTE_SIZE}, {@code TIME_DURATION} and {@code NUMBER} rules compete on every literal.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class DirectivesLexerBenchmark {
+
+  @Param({"1", "16", "256"})
+  public int literalsPerLine;
+
+  private String line;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    String[] sizes = InputMixes.byteSizes("valid", literalsPerLine);
+    String[] durations = InputMixes.timeDurations("valid", literalsPerLine);
+    StringBuilder builder = new StringBuilder("aggregate-stats :data_size :response_time total_size_mb total_time_sec");
+    for (int i = 0; i < literalsPerLine; i++) {
+      builder.append(' ').append(sizes[i]).append(' ').append(durations[i]).append(" 'text' ").append(i);
+    }
+    line = builder.toString();
+  }
+
+  @Benchmark
+  public int lex() {
+    DirectivesLexer lexer = new DirectivesLexer(CharStreams.fromString(line));
+    int tokens = 0;
+    while (lexer.nextToken().getType() != Token.EOF) {
+      tokens++;
+    }
+    return tokens;
+  }
+
+  @Benchmark
+  public void parse(Blackhole blackhole) {
+    DirectivesLexer lexer = new DirectivesLexer(CharStreams.fromString(line));
+    DirectivesParser parser = new DirectivesParser(new CommonTokenStream(lexer));
+    blackhole.consume(parser.directive());
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Deterministic inputs for the benchmarks. The {@code valid} mix only holds parseable values,
+ * {@code mixed} replaces one value in ten with an invalid one, and {@code invalid} holds nothing
+ * but invalid values. Valid durations include compound values such as {@code 1h30m}.
+ */
+final class InputMixes {
+  private static final long SEED = 42;
+  private static final String[] BYTE_UNITS = {"KB", "MB", "GB", "TB", "kb", "Mb"};
+  private static final String[] TIME_UNITS = {"s", "m", "h", "d"};
+  private static final String[] INVALID_SIZES = {"", "abc", "-1MB", "10XB", "1..5MB", "MB", "12", " 3 GB x"};
+  private static final String[] INVALID_DURATIONS = {"", "fast", "-5s", "10y", "1..5s", "h", "1h30", "2d-4h"};
+
+  private InputMixes() {
+  }
+
+  static String[] byteSizes(String mix, int count) {
+    Random random = new Random(SEED);
+    String[] values = new String[count];
+    for (int i = 0; i < count; i++) {
+      values[i] = isInvalid(mix, random)
+        ? INVALID_SIZES[random.nextInt(INVALID_SIZES.length)]
+        : number(random) + BYTE_UNITS[random.nextInt(BYTE_UNITS.length)];
+    }
+    return values;
+  }
+
+  static String[] timeDurations(String mix, int count) {
+    Random random = new Random(SEED);
+    String[] values = new String[count];
+    for (int i = 0; i < count; i++) {
+      if (isInvalid(mix, random)) {
+        values[i] = INVALID_DURATIONS[random.nextInt(INVALID_DURATIONS.length)];
+      } else if (random.nextInt(4) == 0) {
+        values[i] = (1 + random.nextInt(23)) + "h" + random.nextInt(60) + "m";
+      } else {
+        values[i] = number(random) + TIME_UNITS[random.nextInt(TIME_UNITS.length)];
+      }
+    }
+    return values;
+  }
+
+  private static boolean isInvalid(String mix, Random random) {
+    switch (mix) {
+      case "valid":
+        return false;
+      case "mixed":
+        return random.nextInt(10) == 0;
+      case "invalid":
+        return true;
+      default:
+        throw new IllegalArgumentException("Unknown input mix '" + mix + "'");
+    }
+  }
+
+  private static String number(Random random) {
+    int whole = random.nextInt(1000);
+    return random.nextBoolean() ? Integer.toString(whole) : whole + "." + random.nextInt(100);
+  }
+}
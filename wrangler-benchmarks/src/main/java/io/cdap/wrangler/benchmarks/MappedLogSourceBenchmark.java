@@ -0,0 +1,148 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.benchmarks;
+
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.ErrorRowException;
+import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ColumnName;
+import io.cdap.wrangler.api.parser.Identifier;
+import io.cdap.wrangler.api.parser.Text;
+import io.cdap.wrangler.api.parser.Token;
+import io.cdap.wrangler.core.directives.aggregates.AggregateStatsDirective;
+import io.cdap.wrangler.core.source.MappedLogSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks feeding a space-delimited access log into {@code aggregate-stats}, once through
+ * {@link MappedLogSource} and once by reading each line into a {@link String} and splitting it, as
+ * a line-oriented source would. The log is written once per trial and stays in the page cache, so
+ * both measure parsing and aggregation rather than the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class MappedLogSourceBenchmark {
+  private static final List<String> COLUMNS = Arrays.asList("host", null, "data_size", "response_time");
+
+  @Param({"100000", "1000000"})
+  public int lines;
+
+  @Param({"valid", "mixed"})
+  public String mix;
+
+  @Param({"8192"})
+  public int batchSize;
+
+  private Path file;
+  private ExecutorContext context;
+  private ExecutorContext lastContext;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    String[] sizes = InputMixes.byteSizes(mix, 256);
+    String[] durations = InputMixes.timeDurations(mix, 256);
+    Random random = new Random(42);
+    file = Files.createTempFile("access", ".log");
+    try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+      for (int i = 0; i < lines; i++) {
+        // Invalid literals may hold spaces, which would shift the fields, so those are replaced
+        writer.write("host" + random.nextInt(64) + " GET " + sizes[i % sizes.length].replace(' ', '_') + " "
+                       + durations[i % durations.length].replace(' ', '_') + "\n");
+      }
+    }
+    context = BenchmarkContexts.context(false);
+    lastContext = BenchmarkContexts.context(true);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  public List<Row> mapped() throws IOException, DirectiveExecutionException, ErrorRowException,
+    DirectiveParseException {
+    try (MappedLogSource source = new MappedLogSource(file, ' ', COLUMNS, batchSize,
+                                                      MappedLogSource.DEFAULT_WINDOW_BYTES)) {
+      return source.streamTo(createDirective(), context, lastContext);
+    }
+  }
+
+  @Benchmark
+  public List<Row> lineByLine() throws IOException, DirectiveExecutionException, ErrorRowException,
+    DirectiveParseException {
+    AggregateStatsDirective directive = createDirective();
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.US_ASCII)) {
+      List<Row> batch = new ArrayList<>(batchSize);
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split(" ", -1);
+        batch.add(new Row("host", fields[0]).add("data_size", fields[2]).add("response_time", fields[3]));
+        if (batch.size() == batchSize) {
+          directive.execute(batch, context);
+          batch = new ArrayList<>(batchSize);
+        }
+      }
+      return directive.execute(batch, lastContext);
+    }
+  }
+
+  private static AggregateStatsDirective createDirective() throws DirectiveParseException {
+    Map<String, Token> tokens = new HashMap<>();
+    tokens.put("byteSizeColumn", new ColumnName("data_size"));
+    tokens.put("timeDurationColumn", new ColumnName("response_time"));
+    tokens.put("totalSizeColumn", new Text("total_size_mb"));
+    tokens.put("totalTimeColumn", new Text("total_time_sec"));
+    tokens.put("onError", new Identifier("count"));
+    AggregateStatsDirective directive = new AggregateStatsDirective();
+    directive.initialize(BenchmarkContexts.arguments(tokens));
+    return directive;
+  }
+}
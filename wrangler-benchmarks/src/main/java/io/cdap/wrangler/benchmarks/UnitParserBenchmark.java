@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.benchmarks;
+
+import io.cdap.wrangler.api.parser.ByteSize;
+import io.cdap.wrangler.api.parser.TimeDuration;
+import io.cdap.wrangler.api.parser.UnitThreshold;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link ByteSize} and {@link TimeDuration} parsing, through both the object-returning
+ * {@code parse} methods and the allocation-free {@code tryParse} methods, over input mixes drawn
+ * from {@link InputMixes}. Each invocation parses the whole input array, so scores are per array.
+ * The {@code Threshold} benchmarks compare each input with 1MB or 500ms through a
+ * {@link UnitThreshold}, against a full parse followed by a comparison.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class UnitParserBenchmark {
+
+  @Param({"valid", "mixed", "invalid"})
+  public String mix;
+
+  @Param({"1024"})
+  public int inputs;
+
+  private String[] sizes;
+  private String[] durations;
+  private UnitThreshold sizeThreshold;
+  private UnitThreshold durationThreshold;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    sizes = InputMixes.byteSizes(mix, inputs);
+    durations = InputMixes.timeDurations(mix, inputs);
+    sizeThreshold = UnitThreshold.bytes(UnitThreshold.Comparison.GE, 1L << 20);
+    durationThreshold = UnitThreshold.nanos(UnitThreshold.Comparison.GT, 500_000_000L);
+  }
+
+  @Benchmark
+  public void byteSizeParse(Blackhole blackhole) {
+    for (String size : sizes) {
+      try {
+        blackhole.consume(ByteSize.parse(size));
+      } catch (IllegalArgumentException e) {
+        blackhole.consume(e);
+      }
+    }
+  }
+
+  @Benchmark
+  public void byteSizeTryParse(Blackhole blackhole) {
+    for (String size : sizes) {
+      blackhole.consume(ByteSize.tryParseBytes(size, 0, size.length()));
+    }
+  }
+
+  @Benchmark
+  public void timeDurationParse(Blackhole blackhole) {
+    for (String duration : durations) {
+      try {
+        blackhole.consume(TimeDuration.parse(duration));
+      } catch (IllegalArgumentException e) {
+        blackhole.consume(e);
+      }
+    }
+  }
+
+  @Benchmark
+  public void timeDurationTryParse(Blackhole blackhole) {
+    for (String duration : durations) {
+      blackhole.consume(TimeDuration.tryParseNanos(duration, 0, duration.length()));
+    }
+  }
+
+  @Benchmark
+  public void byteSizeThreshold(Blackhole blackhole) {
+    for (String size : sizes) {
+      blackhole.consume(sizeThreshold.test(size, 0, size.length()));
+    }
+  }
+
+  @Benchmark
+  public void byteSizeParseThenCompare(Blackhole blackhole) {
+    for (String size : sizes) {
+      long bytes = ByteSize.tryParseBytes(size, 0, size.length());
+      blackhole.consume(bytes >= 0 && sizeThreshold.matches(bytes));
+    }
+  }
+
+  @Benchmark
+  public void timeDurationThreshold(Blackhole blackhole) {
+    for (String duration : durations) {
+      blackhole.consume(durationThreshold.test(duration, 0, duration.length()));
+    }
+  }
+
+  @Benchmark
+  public void timeDurationParseThenCompare(Blackhole blackhole) {
+    for (String duration : durations) {
+      long nanos = TimeDuration.tryParseNanos(duration, 0, duration.length());
+      blackhole.consume(nanos >= 0 && durationThreshold.matches(nanos));
+    }
+  }
+}
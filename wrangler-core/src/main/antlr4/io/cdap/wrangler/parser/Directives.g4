@@ -11,40 +11,59 @@ args
 
 value
     : IDENTIFIER
+    | columns
     | STRING
     | NUMBER
     | BYTE_SIZE
     | TIME_DURATION
     ;
 
+// A single column, or a comma separated list such as :tenant,:host
+columns
+    : COLUMN (',' COLUMN)*
+    ;
+
 // Lexer Rules
+// Units match UnitRegistry.BYTES and UnitRegistry.DURATIONS in io.cdap.wrangler.api.parser:
+// case insensitive, and durations may be compound such as 1h30m
 BYTE_SIZE
     : DIGIT+ ('.' DIGIT+)? BYTE_UNIT
     ;
 
 TIME_DURATION
-    : DIGIT+ ('.' DIGIT+)? TIME_UNIT
+    : (DIGIT+ ('.' DIGIT+)? TIME_UNIT)+
     ;
 
 fragment BYTE_UNIT
-    : [Kk]'B'
-    | [Mm]'B'
-    | [Gg]'B'
-    | [Tt]'B'
-    | [Pp]'B'
-    | 'B'
+    : [Kk][Ii]?[Bb]
+    | [Mm][Ii]?[Bb]
+    | [Gg][Ii]?[Bb]
+    | [Tt][Ii]?[Bb]
+    | [Pp][Ii]?[Bb]
+    | [Bb]
     ;
 
 fragment TIME_UNIT
-    : 'ns'
-    | 'ms'
-    | 's'
-    | 'm'
-    | 'h'
+    : [Nn][Ss]
+    | [Uu\u00B5][Ss]
+    | [Mm][Ss]
+    | [Ss]
+    | [Mm]
+    | [Hh]
+    | [Dd]
     ;
 
+// Directive names such as aggregate-stats contain dashes
 IDENTIFIER
-    : [a-zA-Z_] [a-zA-Z0-9_]*
+    : [a-zA-Z_] NAME_PART*
+    ;
+
+COLUMN
+    : ':' NAME_PART+
+    ;
+
+fragment NAME_PART
+    : [a-zA-Z0-9_\-]
     ;
 
 STRING
@@ -0,0 +1,236 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.columnar;
+
+import io.cdap.wrangler.api.Row;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A batch of rows seen as one {@link ColumnVector} per column read by a {@link ColumnarDirective}.
+ *
+ * <p>{@link #fromRows(List, String...)} is the row-to-column adapter: it transposes the named
+ * columns once per batch, reading each row by position through {@link ColumnPositions}, so a row
+ * is only searched by name when its layout differs from the previous row's; {@link Builder} does
+ * the same one row at a time. A column whose non-null cells are all {@link Long}s or
+ * {@link Integer}s, such as one typed by {@code parse-as-bytes}, becomes a {@code long} vector. In
+ * any other column the {@link Long} and {@link Integer} cells stay {@code long}s in a mixed vector,
+ * so they read as the row-based directives read them, and other cells that are not
+ * {@link CharSequence}s are converted with {@code toString()}.</p>
+ *
+ * <p>A batch built from rows keeps them, so a directive that passes rows through can return
+ * {@link #rows()} or a subset without rebuilding them.</p>
+ */
+public final class ColumnBatch {
+  private final List<String> names;
+  private final ColumnVector[] vectors;
+  private final List<Row> rows;
+
+  private ColumnBatch(List<String> names, ColumnVector[] vectors, List<Row> rows) {
+    this.names = names;
+    this.vectors = vectors;
+    this.rows = rows;
+  }
+
+  /**
+   * Transposes the given columns of the rows. A column missing from a row reads as null.
+   */
+  public static ColumnBatch fromRows(List<Row> rows, String... columns) {
+    Builder builder = new Builder(rows, columns);
+    for (int i = 0; i < rows.size(); i++) {
+      builder.transpose(rows.get(i));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Transposes rows one at a time, for callers that decide row by row which rows make up the batch.
+   * Not thread-safe.
+   */
+  public static final class Builder {
+    private final String[] columns;
+    private final List<Row> rows;
+    private final ColumnPositions positions;
+    private final boolean[] integral;
+    // Whether some cell of the column is a Long or Integer
+    private final boolean[] typed;
+    private Object[][] cells;
+    private int capacity;
+    private int size;
+
+    /**
+     * @param capacity expected number of rows
+     * @param columns columns to transpose; a column missing from a row reads as null
+     */
+    public Builder(int capacity, String... columns) {
+      this(new ArrayList<>(capacity), columns);
+    }
+
+    private Builder(List<Row> rows, String... columns) {
+      this.columns = columns.clone();
+      this.rows = rows;
+      this.positions = new ColumnPositions(columns);
+      this.integral = new boolean[columns.length];
+      Arrays.fill(integral, true);
+      this.typed = new boolean[columns.length];
+      this.capacity = Math.max(rows.size(), 16);
+      this.cells = new Object[columns.length][capacity];
+    }
+
+    /**
+     * Appends a row to the batch.
+     */
+    public Builder add(Row row) {
+      rows.add(row);
+      transpose(row);
+      return this;
+    }
+
+    private void transpose(Row row) {
+      if (size == capacity) {
+        capacity *= 2;
+        for (int c = 0; c < columns.length; c++) {
+          cells[c] = Arrays.copyOf(cells[c], capacity);
+        }
+      }
+      positions.resolve(row);
+      for (int c = 0; c < columns.length; c++) {
+        Object value = positions.value(row, c);
+        cells[c][size] = value;
+        boolean isIntegral = value instanceof Long || value instanceof Integer;
+        integral[c] &= value == null || isIntegral;
+        typed[c] |= isIntegral;
+      }
+      size++;
+    }
+
+    public ColumnBatch build() {
+      ColumnVector[] vectors = new ColumnVector[columns.length];
+      for (int c = 0; c < columns.length; c++) {
+        Object[] column = capacity == size ? cells[c] : Arrays.copyOf(cells[c], size);
+        if (integral[c] && size > 0) {
+          vectors[c] = longVector(column);
+        } else {
+          vectors[c] = typed[c] ? mixedVector(column) : textVector(column);
+        }
+      }
+      return new ColumnBatch(Arrays.asList(columns.clone()), vectors, rows);
+    }
+  }
+
+  private static ColumnVector longVector(Object[] cells) {
+    long[] longs = new long[cells.length];
+    long[] nulls = new long[ColumnVector.words(cells.length)];
+    for (int i = 0; i < cells.length; i++) {
+      if (cells[i] == null) {
+        nulls[i >>> 6] |= 1L << i;
+      } else {
+        longs[i] = ((Number) cells[i]).longValue();
+      }
+    }
+    return ColumnVector.ofLongs(longs, nulls);
+  }
+
+  private static ColumnVector mixedVector(Object[] cells) {
+    CharSequence[] texts = new CharSequence[cells.length];
+    long[] longs = new long[cells.length];
+    long[] typed = new long[ColumnVector.words(cells.length)];
+    for (int i = 0; i < cells.length; i++) {
+      Object value = cells[i];
+      if (value instanceof Long || value instanceof Integer) {
+        longs[i] = ((Number) value).longValue();
+        typed[i >>> 6] |= 1L << i;
+      } else if (value != null) {
+        texts[i] = value instanceof CharSequence ? (CharSequence) value : value.toString();
+      }
+    }
+    return ColumnVector.ofMixed(texts, longs, typed);
+  }
+
+  private static ColumnVector textVector(Object[] cells) {
+    CharSequence[] texts = new CharSequence[cells.length];
+    for (int i = 0; i < cells.length; i++) {
+      Object value = cells[i];
+      if (value != null) {
+        texts[i] = value instanceof CharSequence ? (CharSequence) value : value.toString();
+      }
+    }
+    return ColumnVector.ofText(texts);
+  }
+
+  /**
+   * Builds a batch from vectors of the same size; {@link #rows()} then materializes the rows.
+   *
+   * @throws IllegalArgumentException if the names and vectors do not match up
+   */
+  public static ColumnBatch of(List<String> names, ColumnVector... vectors) {
+    if (names.size() != vectors.length) {
+      throw new IllegalArgumentException(
+        String.format("Got %d column names for %d vectors", names.size(), vectors.length));
+    }
+    for (ColumnVector vector : vectors) {
+      if (vector.size() != vectors[0].size()) {
+        throw new IllegalArgumentException(
+          String.format("Vectors have different sizes %d and %d", vectors[0].size(), vector.size()));
+      }
+    }
+    return new ColumnBatch(new ArrayList<>(names), vectors.clone(), null);
+  }
+
+  /**
+   * @return number of rows in the batch
+   */
+  public int size() {
+    return rows != null ? rows.size() : vectors.length == 0 ? 0 : vectors[0].size();
+  }
+
+  public List<String> names() {
+    return names;
+  }
+
+  public ColumnVector column(int index) {
+    return vectors[index];
+  }
+
+  /**
+   * @return the vector of the named column, or null if the batch does not have it
+   */
+  public ColumnVector column(String name) {
+    int index = names.indexOf(name);
+    return index < 0 ? null : vectors[index];
+  }
+
+  /**
+   * @return the rows the batch was built from, or rows built from the vectors
+   */
+  public List<Row> rows() {
+    if (rows != null) {
+      return rows;
+    }
+    List<Row> built = new ArrayList<>(size());
+    for (int i = 0; i < size(); i++) {
+      Row row = new Row();
+      for (int c = 0; c < vectors.length; c++) {
+        row.add(names.get(c), vectors[c].get(i));
+      }
+      built.add(row);
+    }
+    return built;
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.columnar;
+
+import io.cdap.wrangler.api.Row;
+
+import java.util.Arrays;
+
+/**
+ * Resolves column names to positions once per row layout, for directives that read a few columns
+ * of every row.
+ *
+ * <p>Rows of a batch nearly always share a layout, so {@link #resolve(Row)} checks the positions
+ * found for the previous row by comparing the name at each one, which is a reference comparison
+ * when rows share their column name strings, and searches a row by name only when its layout
+ * differs. A column missing from the layout cannot be confirmed missing without a search, so it is
+ * searched for in every row. Cells are then read by index with {@link #value(Row, int)}.</p>
+ *
+ * <p>Instances are not thread-safe: create one per batch, or keep one per worker thread to carry
+ * the layout over from batch to batch.</p>
+ */
+public final class ColumnPositions {
+  private final String[] columns;
+  private final int[] positions;
+  private long searches;
+
+  /**
+   * @param columns names of the columns to resolve, read back by their index in this list
+   */
+  public ColumnPositions(String... columns) {
+    this.columns = columns.clone();
+    this.positions = new int[columns.length];
+    Arrays.fill(positions, -1);
+  }
+
+  /**
+   * Points the positions at the columns of the row, searching only for those whose name moved.
+   *
+   * @return this
+   */
+  public ColumnPositions resolve(Row row) {
+    int width = row.width();
+    for (int c = 0; c < columns.length; c++) {
+      int position = positions[c];
+      if (position < 0 || position >= width || !columns[c].equals(row.getColumn(position))) {
+        positions[c] = row.find(columns[c]);
+        searches++;
+      }
+    }
+    return this;
+  }
+
+  /**
+   * @return the position of a column in the last resolved row, or -1 if the row does not have it
+   */
+  public int position(int column) {
+    return positions[column];
+  }
+
+  /**
+   * @return the cell of a column in a row of the last resolved layout, or null if it has none
+   */
+  public Object value(Row row, int column) {
+    int position = positions[column];
+    return position < 0 ? null : row.getValue(position);
+  }
+
+  /**
+   * @return number of columns
+   */
+  public int size() {
+    return columns.length;
+  }
+
+  /**
+   * @return number of searches by name so far, which stays at one per column while the layout holds
+   */
+  public long searches() {
+    return searches;
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.columnar;
+
+/**
+ * The cells of one column of a {@link ColumnBatch}, either as text or as typed {@code long}s, or a
+ * mix of both where a text column has some typed cells.
+ *
+ * <p>Nulls are tracked in a bitmap with one bit per cell, so a {@code long} column needs no boxing
+ * and a directive can skip whole words of nulls. The backing arrays are exposed as is, without
+ * copying, for tight loops; callers must not modify them.</p>
+ */
+public final class ColumnVector {
+  private final int size;
+  private final CharSequence[] texts;
+  private final long[] longs;
+  private final long[] nulls;
+  private final long[] typed;
+
+  private ColumnVector(int size, CharSequence[] texts, long[] longs, long[] nulls, long[] typed) {
+    this.size = size;
+    this.texts = texts;
+    this.longs = longs;
+    this.nulls = nulls;
+    this.typed = typed;
+  }
+
+  /**
+   * @param values cells of the column, null where the cell is null
+   */
+  public static ColumnVector ofText(CharSequence[] values) {
+    long[] nulls = new long[words(values.length)];
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == null) {
+        nulls[i >>> 6] |= 1L << i;
+      }
+    }
+    return new ColumnVector(values.length, values, null, nulls, null);
+  }
+
+  /**
+   * @param texts text cells, null where the cell is null or holds a {@code long}
+   * @param longs {@code long} cells; the value of a text or null cell is ignored
+   * @param typed bitmap, laid out as the null bitmap, with the bit set where the cell holds a {@code long}
+   * @throws IllegalArgumentException if the arrays do not match up
+   */
+  public static ColumnVector ofMixed(CharSequence[] texts, long[] longs, long[] typed) {
+    if (longs.length != texts.length || typed.length < words(texts.length)) {
+      throw new IllegalArgumentException(
+        String.format("Got %d longs and %d typed words for %d cells", longs.length, typed.length, texts.length));
+    }
+    long[] nulls = new long[words(texts.length)];
+    for (int i = 0; i < texts.length; i++) {
+      if (texts[i] == null && (typed[i >>> 6] & (1L << i)) == 0) {
+        nulls[i >>> 6] |= 1L << i;
+      }
+    }
+    return new ColumnVector(texts.length, texts, longs, nulls, typed);
+  }
+
+  /**
+   * @param values cells of the column; the value of a null cell is ignored
+   * @param nulls bitmap with bit {@code i % 64} of word {@code i / 64} set where cell {@code i} is null
+   * @throws IllegalArgumentException if the bitmap is too short for the values
+   */
+  public static ColumnVector ofLongs(long[] values, long[] nulls) {
+    if (nulls.length < words(values.length)) {
+      throw new IllegalArgumentException(
+        String.format("Null bitmap of %d words is too short for %d values", nulls.length, values.length));
+    }
+    return new ColumnVector(values.length, null, values, nulls, null);
+  }
+
+  /**
+   * @return number of words in a null bitmap for {@code size} cells
+   */
+  public static int words(int size) {
+    return (size + 63) >>> 6;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @return true if the cells are {@code long}s, false if some or all of them are text
+   */
+  public boolean isLong() {
+    return texts == null;
+  }
+
+  /**
+   * @return true if the cell holds a {@code long}; false for a text cell, and unspecified for a null one
+   */
+  public boolean isLong(int index) {
+    return texts == null || typed != null && (typed[index >>> 6] & (1L << index)) != 0;
+  }
+
+  public boolean isNull(int index) {
+    return (nulls[index >>> 6] & (1L << index)) != 0;
+  }
+
+  /**
+   * @return true if some cell is null
+   */
+  public boolean hasNulls() {
+    for (long word : nulls) {
+      if (word != 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the text cells, or null for a {@code long} column; null at the {@code long} cells of a
+   *   mixed column
+   */
+  public CharSequence[] texts() {
+    return texts;
+  }
+
+  /**
+   * @return the {@code long} cells, or null for a column without any; only the cells for which
+   *   {@link #isLong(int)} holds are set
+   */
+  public long[] longs() {
+    return longs;
+  }
+
+  /**
+   * @return the null bitmap
+   */
+  public long[] nulls() {
+    return nulls;
+  }
+
+  /**
+   * @return the cell as a {@link CharSequence} or {@link Long}, or null
+   */
+  public Object get(int index) {
+    if (isNull(index)) {
+      return null;
+    }
+    return isLong(index) ? (Object) longs[index] : texts[index];
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.columnar;
+
+import io.cdap.wrangler.api.Directive;
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.ErrorRowException;
+import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.Row;
+
+import java.util.List;
+
+/**
+ * A directive that can process a batch column by column.
+ *
+ * <p>Callers that already hold columns pass a {@link ColumnBatch} to
+ * {@link #execute(ColumnBatch, ExecutorContext)}. The row-based
+ * {@link #execute(List, ExecutorContext)} stays the entry point for the executor and, by default,
+ * adapts the rows with {@link ColumnBatch#fromRows(List, String...)}, so both paths share one
+ * implementation.</p>
+ */
+public interface ColumnarDirective extends Directive {
+
+  /**
+   * @return the columns read by the directive, in the order of the batch vectors; only valid after
+   *   the directive is initialized
+   */
+  String[] inputColumns();
+
+  /**
+   * Executes the directive on a batch holding at least the {@link #inputColumns()}.
+   */
+  List<Row> execute(ColumnBatch batch, ExecutorContext context)
+    throws DirectiveExecutionException, ErrorRowException;
+
+  @Override
+  default List<Row> execute(List<Row> rows, ExecutorContext context)
+    throws DirectiveExecutionException, ErrorRowException {
+    return execute(ColumnBatch.fromRows(rows, inputColumns()), context);
+  }
+}
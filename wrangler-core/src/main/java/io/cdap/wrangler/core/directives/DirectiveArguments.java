@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.directives;
+
+import io.cdap.wrangler.api.Arguments;
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.parser.ByteSize;
+import io.cdap.wrangler.api.parser.TimeDuration;
+import io.cdap.wrangler.api.parser.Token;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads directive arguments as text, byte sizes, time durations and named options.
+ *
+ * <p>The recipe compiler folds a literal such as {@code 256MB} or {@code 5m} into a
+ * {@link ByteSize} or {@link TimeDuration} token, which is used as is. Any other token, e.g. a
+ * quoted string or an argument given programmatically, is parsed from its text.</p>
+ */
+public final class DirectiveArguments {
+
+  private DirectiveArguments() {
+  }
+
+  /**
+   * @return the value of the named argument as text
+   */
+  public static String text(Arguments args, String name) {
+    Token token = args.value(name);
+    return token.value().toString();
+  }
+
+  /**
+   * @return the byte size of the token
+   * @throws IllegalArgumentException if the token text is not a byte size
+   */
+  public static ByteSize byteSize(Token token) {
+    return token instanceof ByteSize ? (ByteSize) token : ByteSize.parse(token.value().toString().trim());
+  }
+
+  /**
+   * @return the time duration of the token
+   * @throws IllegalArgumentException if the token text is not a time duration
+   */
+  public static TimeDuration timeDuration(Token token) {
+    return token instanceof TimeDuration
+      ? (TimeDuration) token : TimeDuration.parse(token.value().toString().trim());
+  }
+
+  /**
+   * Reads an optional argument of named options such as {@code 'cache=1024; output=partial'}.
+   * Entries are separated by semicolons, so values may contain commas.
+   *
+   * @param directive name of the directive, for error messages
+   * @param args arguments of the directive
+   * @param name name of the options argument
+   * @param keys the option names the directive accepts
+   * @return the value of each option given, trimmed, or an empty map if the argument is absent
+   * @throws DirectiveParseException if an entry is malformed, unknown or repeated
+   */
+  public static Map<String, String> options(String directive, Arguments args, String name, String... keys)
+    throws DirectiveParseException {
+    Map<String, String> options = new HashMap<>();
+    if (!args.contains(name)) {
+      return options;
+    }
+    List<String> known = Arrays.asList(keys);
+    for (String entry : text(args, name).split(";")) {
+      if (entry.trim().isEmpty()) {
+        continue;
+      }
+      int equals = entry.indexOf('=');
+      String key = equals < 0 ? entry.trim() : entry.substring(0, equals).trim();
+      if (equals < 0 || !known.contains(key)) {
+        throw new DirectiveParseException(
+          directive, String.format("Invalid option '%s'. Expected key=value with key one of %s.",
+                                   entry.trim(), String.join(", ", keys)));
+      }
+      if (options.put(key, entry.substring(equals + 1).trim()) != null) {
+        throw new DirectiveParseException(directive, String.format("Option '%s' is given twice.", key));
+      }
+    }
+    return options;
+  }
+}
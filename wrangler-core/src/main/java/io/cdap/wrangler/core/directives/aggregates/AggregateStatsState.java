@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import io.cdap.wrangler.api.Row;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * Partial result of {@code aggregate-stats}: byte and nanosecond totals plus row counts.
+ *
+ * <p>Each partition accumulates its own state and the states are merged with
+ * {@link #combine(AggregateStatsState)}, which is associative and commutative, so partials can be
+ * folded in any order, like a map-side combiner. {@link #toBytes()} gives a fixed
+ * {@value #ENCODED_SIZE}-byte encoding for shipping a partial between stages.</p>
+ */
+public final class AggregateStatsState implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  public static final int ENCODED_SIZE = 4 * Long.BYTES;
+
+  private long totalBytes;
+  private long totalNanos;
+  private long rowCount;
+  private long invalidCount;
+
+  public AggregateStatsState() {
+  }
+
+  AggregateStatsState(long totalBytes, long totalNanos, long rowCount, long invalidCount) {
+    this.totalBytes = totalBytes;
+    this.totalNanos = totalNanos;
+    this.rowCount = rowCount;
+    this.invalidCount = invalidCount;
+  }
+
+  /**
+   * Adds one row's contribution.
+   */
+  public void add(long bytes, long nanos) {
+    totalBytes += bytes;
+    totalNanos += nanos;
+    rowCount++;
+  }
+
+  /**
+   * Records invalid cells that did not contribute to the totals.
+   */
+  public void addInvalid(long cells) {
+    invalidCount += cells;
+  }
+
+  /**
+   * Merges another partial into this one.
+   *
+   * @param other partial to fold in, left unchanged
+   * @return this state
+   */
+  public AggregateStatsState combine(AggregateStatsState other) {
+    totalBytes += other.totalBytes;
+    totalNanos += other.totalNanos;
+    rowCount += other.rowCount;
+    invalidCount += other.invalidCount;
+    return this;
+  }
+
+  public long getTotalBytes() {
+    return totalBytes;
+  }
+
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  public long getInvalidCount() {
+    return invalidCount;
+  }
+
+  /**
+   * Builds the aggregate row: total size in MB and total time in seconds.
+   *
+   * @param totalSizeColumn name of the size column
+   * @param totalTimeColumn name of the time column
+   * @param invalidCountColumn name of the invalid cell count column, or null to leave it out
+   */
+  public Row toRow(String totalSizeColumn, String totalTimeColumn, String invalidCountColumn) {
+    Row result = new Row();
+    // Convert total bytes to MB
+    result.add(totalSizeColumn, totalBytes / (1024.0 * 1024.0));
+    // Convert total nanoseconds to seconds
+    result.add(totalTimeColumn, totalNanos / 1_000_000_000.0);
+    if (invalidCountColumn != null) {
+      result.add(invalidCountColumn, invalidCount);
+    }
+    return result;
+  }
+
+  /**
+   * @return compact big-endian encoding of this state
+   */
+  public byte[] toBytes() {
+    return ByteBuffer.allocate(ENCODED_SIZE)
+      .putLong(totalBytes)
+      .putLong(totalNanos)
+      .putLong(rowCount)
+      .putLong(invalidCount)
+      .array();
+  }
+
+  /**
+   * Decodes a state written by {@link #toBytes()}.
+   *
+   * @throws IllegalArgumentException if the encoding has the wrong length
+   */
+  public static AggregateStatsState fromBytes(byte[] bytes) {
+    if (bytes.length != ENCODED_SIZE) {
+      throw new IllegalArgumentException(
+        String.format("Expected %d bytes of aggregate state but got %d", ENCODED_SIZE, bytes.length));
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    return new AggregateStatsState(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+  }
+}
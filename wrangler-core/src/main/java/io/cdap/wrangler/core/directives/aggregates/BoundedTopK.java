@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@code k} entries with the largest {@code long} keys seen so far.
+ *
+ * <p>Entries are kept in a binary min-heap over parallel arrays of keys, arrival sequence numbers
+ * and values, so memory is {@code O(k)} and an offer costs {@code O(log k)}; most offers only
+ * compare against the root and return. Among equal keys the earlier entry wins, which makes the
+ * result independent of how ties arrive within one heap. The arrays start small and double as
+ * entries arrive, up to {@code k}, so a large {@code k} costs memory only once that many entries
+ * are kept. Not thread-safe.</p>
+ *
+ * @param <T> type of the values ranked by key
+ */
+final class BoundedTopK<T> {
+  /** Largest supported {@code k}, the largest array length every JVM allows. */
+  static final int MAX_K = Integer.MAX_VALUE - 8;
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final int k;
+  private long[] keys;
+  private long[] sequences;
+  private Object[] values;
+  private int size;
+  private long nextSequence;
+
+  BoundedTopK(int k) {
+    if (k < 0 || k > MAX_K) {
+      throw new IllegalArgumentException(String.format("k must be between 0 and %d, got %d", MAX_K, k));
+    }
+    int capacity = Math.min(k, INITIAL_CAPACITY);
+    this.k = k;
+    this.keys = new long[capacity];
+    this.sequences = new long[capacity];
+    this.values = new Object[capacity];
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Offers a value; it is kept if the heap is not full or its key beats the smallest kept key.
+   */
+  void offer(long key, T value) {
+    offer(key, nextSequence++, value);
+  }
+
+  private void offer(long key, long sequence, Object value) {
+    if (size < k) {
+      if (size == keys.length) {
+        grow();
+      }
+      int i = size++;
+      set(i, key, sequence, value);
+      siftUp(i);
+    } else if (k > 0 && less(0, key, sequence)) {
+      set(0, key, sequence, value);
+      siftDown(0);
+    }
+  }
+
+  /**
+   * Offers every entry of another heap to this one, keeping the arrival order of each heap.
+   */
+  void combine(BoundedTopK<T> other) {
+    long offset = nextSequence;
+    for (int i = 0; i < other.size; i++) {
+      offer(other.keys[i], offset + other.sequences[i], other.values[i]);
+    }
+    nextSequence += other.nextSequence;
+  }
+
+  /**
+   * @return the kept values ordered by key, largest first, and by arrival among equal keys
+   */
+  @SuppressWarnings("unchecked")
+  List<T> sorted() {
+    BoundedTopK<T> copy = new BoundedTopK<>(size);
+    copy.combine(this);
+    List<T> result = new ArrayList<>(copy.size);
+    for (int n = copy.size; n > 0; n--) {
+      result.add((T) copy.values[0]);
+      copy.size--;
+      copy.set(0, copy.keys[copy.size], copy.sequences[copy.size], copy.values[copy.size]);
+      copy.values[copy.size] = null;
+      copy.siftDown(0);
+    }
+    Collections.reverse(result);
+    return result;
+  }
+
+  private void grow() {
+    int capacity = (int) Math.min(k, 2L * keys.length);
+    keys = Arrays.copyOf(keys, capacity);
+    sequences = Arrays.copyOf(sequences, capacity);
+    values = Arrays.copyOf(values, capacity);
+  }
+
+  /**
+   * @return whether entry {@code i} ranks below the given key and sequence
+   */
+  private boolean less(int i, long key, long sequence) {
+    return keys[i] < key || (keys[i] == key && sequences[i] > sequence);
+  }
+
+  private void set(int i, long key, long sequence, Object value) {
+    keys[i] = key;
+    sequences[i] = sequence;
+    values[i] = value;
+  }
+
+  private void siftUp(int i) {
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (!less(i, keys[parent], sequences[parent])) {
+        return;
+      }
+      swap(i, parent);
+      i = parent;
+    }
+  }
+
+  private void siftDown(int i) {
+    while (true) {
+      int smallest = i;
+      int left = 2 * i + 1;
+      int right = left + 1;
+      if (left < size && less(left, keys[smallest], sequences[smallest])) {
+        smallest = left;
+      }
+      if (right < size && less(right, keys[smallest], sequences[smallest])) {
+        smallest = right;
+      }
+      if (smallest == i) {
+        return;
+      }
+      swap(i, smallest);
+      i = smallest;
+    }
+  }
+
+  private void swap(int a, int b) {
+    long key = keys[a];
+    long sequence = sequences[a];
+    Object value = values[a];
+    set(a, keys[b], sequences[b], values[b]);
+    set(b, key, sequence, value);
+  }
+}
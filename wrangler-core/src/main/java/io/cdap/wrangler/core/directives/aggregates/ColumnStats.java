@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import java.util.Arrays;
+
+/**
+ * Count, exact sum, min, max, mean and variance of several {@code long} columns, accumulated in
+ * one pass.
+ *
+ * <p>Every statistic is a flat primitive array indexed by column, so adding a value touches no
+ * objects. Mean and variance use Welford's update, which stays accurate where the naive sum of
+ * squares cancels catastrophically, and partial results are merged with Chan's pairwise formula,
+ * so per-thread accumulators can be combined in any order. Not thread-safe.</p>
+ */
+final class ColumnStats {
+  private final long[] counts;
+  private final long[] sums;
+  private final long[] mins;
+  private final long[] maxs;
+  private final double[] means;
+  private final double[] m2s;
+  private final long[] invalid;
+
+  ColumnStats(int columns) {
+    this.counts = new long[columns];
+    this.sums = new long[columns];
+    this.mins = new long[columns];
+    this.maxs = new long[columns];
+    this.means = new double[columns];
+    this.m2s = new double[columns];
+    this.invalid = new long[columns];
+    Arrays.fill(mins, Long.MAX_VALUE);
+    Arrays.fill(maxs, Long.MIN_VALUE);
+  }
+
+  int columns() {
+    return counts.length;
+  }
+
+  void add(int column, long value) {
+    long n = ++counts[column];
+    sums[column] += value;
+    if (value < mins[column]) {
+      mins[column] = value;
+    }
+    if (value > maxs[column]) {
+      maxs[column] = value;
+    }
+    double delta = value - means[column];
+    means[column] += delta / n;
+    m2s[column] += delta * (value - means[column]);
+  }
+
+  void addInvalid(int column) {
+    invalid[column]++;
+  }
+
+  /**
+   * Merges another accumulator over the same columns into this one.
+   */
+  void combine(ColumnStats other) {
+    for (int c = 0; c < counts.length; c++) {
+      long n2 = other.counts[c];
+      invalid[c] += other.invalid[c];
+      if (n2 == 0) {
+        continue;
+      }
+      long n1 = counts[c];
+      long n = n1 + n2;
+      double delta = other.means[c] - means[c];
+      means[c] += delta * n2 / n;
+      m2s[c] += other.m2s[c] + delta * delta * ((double) n1 * n2 / n);
+      counts[c] = n;
+      sums[c] += other.sums[c];
+      mins[c] = Math.min(mins[c], other.mins[c]);
+      maxs[c] = Math.max(maxs[c], other.maxs[c]);
+    }
+  }
+
+  long count(int column) {
+    return counts[column];
+  }
+
+  long sum(int column) {
+    return sums[column];
+  }
+
+  /**
+   * @return the smallest value, undefined if the count is 0
+   */
+  long min(int column) {
+    return mins[column];
+  }
+
+  /**
+   * @return the largest value, undefined if the count is 0
+   */
+  long max(int column) {
+    return maxs[column];
+  }
+
+  double mean(int column) {
+    return means[column];
+  }
+
+  /**
+   * @return the sample variance, undefined if the count is below 2
+   */
+  double variance(int column) {
+    return m2s[column] / (counts[column] - 1);
+  }
+
+  long invalidCount(int column) {
+    return invalid[column];
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import io.cdap.wrangler.api.Row;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Open-addressing hash table from a composite group key to byte and duration statistics.
+ *
+ * <p>Groups are numbered densely in insertion order and every statistic lives in its own
+ * {@code long[]} indexed by group number, so updating a group boxes nothing. The slot array uses
+ * linear probing and stores {@code group + 1}, with 0 marking an empty slot, next to the cached key
+ * hash. Key values are kept in one flat array, {@code keyCount} references per group, and compared
+ * in place against the row, so a lookup allocates nothing. Each group costs nine longs, the key
+ * references and, at the 0.5 maximum load factor, at most four ints of slot space.</p>
+ *
+ * <p>Sizes and durations are counted per column: a null or invalid cell, passed as a negative
+ * value, still counts the row but leaves the statistics of its column alone.</p>
+ *
+ * <p>Instances are not thread-safe.</p>
+ */
+final class GroupStatsTable {
+  private static final int INITIAL_GROUPS = 16;
+
+  private final int keyCount;
+  private int size;
+  private int[] slots;
+  private int[] hashes;
+  private Object[] keys;
+  private long[] counts;
+  private long[] bytesCount;
+  private long[] bytesSum;
+  private long[] bytesMin;
+  private long[] bytesMax;
+  private long[] nanosCount;
+  private long[] nanosSum;
+  private long[] nanosMin;
+  private long[] nanosMax;
+
+  GroupStatsTable(int keyCount) {
+    this.keyCount = keyCount;
+    this.slots = new int[INITIAL_GROUPS * 2];
+    this.hashes = new int[INITIAL_GROUPS];
+    this.keys = new Object[INITIAL_GROUPS * keyCount];
+    this.counts = new long[INITIAL_GROUPS];
+    this.bytesCount = new long[INITIAL_GROUPS];
+    this.nanosCount = new long[INITIAL_GROUPS];
+    this.bytesSum = new long[INITIAL_GROUPS];
+    this.bytesMin = new long[INITIAL_GROUPS];
+    this.bytesMax = new long[INITIAL_GROUPS];
+    this.nanosSum = new long[INITIAL_GROUPS];
+    this.nanosMin = new long[INITIAL_GROUPS];
+    this.nanosMax = new long[INITIAL_GROUPS];
+  }
+
+  /**
+   * @return number of groups
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the group number for the key held in {@code keyColumns} of the row, creating the
+   * group if it does not exist yet.
+   */
+  int group(Row row, String[] keyColumns) {
+    int hash = 1;
+    for (String column : keyColumns) {
+      hash = 31 * hash + Objects.hashCode(row.getValue(column));
+    }
+    return probe(hash ^ (hash >>> 16), row, keyColumns, null, 0);
+  }
+
+  /**
+   * Adds one row's contribution to a group.
+   *
+   * @param bytes size of the row, or a negative value if its cell is null or invalid
+   * @param nanos duration of the row, or a negative value if its cell is null or invalid
+   */
+  void add(int group, long bytes, long nanos) {
+    counts[group]++;
+    if (bytes >= 0) {
+      if (bytesCount[group] == 0) {
+        bytesMin[group] = bytes;
+        bytesMax[group] = bytes;
+      } else {
+        bytesMin[group] = Math.min(bytesMin[group], bytes);
+        bytesMax[group] = Math.max(bytesMax[group], bytes);
+      }
+      bytesCount[group]++;
+      bytesSum[group] += bytes;
+    }
+    if (nanos >= 0) {
+      if (nanosCount[group] == 0) {
+        nanosMin[group] = nanos;
+        nanosMax[group] = nanos;
+      } else {
+        nanosMin[group] = Math.min(nanosMin[group], nanos);
+        nanosMax[group] = Math.max(nanosMax[group], nanos);
+      }
+      nanosCount[group]++;
+      nanosSum[group] += nanos;
+    }
+  }
+
+  /**
+   * Merges every group of another table with the same key columns into this one.
+   */
+  void combine(GroupStatsTable other) {
+    for (int g = 0; g < other.size; g++) {
+      int group = probe(other.hashes[g], null, null, other.keys, g * keyCount);
+      counts[group] += other.counts[g];
+      if (other.bytesCount[g] > 0) {
+        boolean first = bytesCount[group] == 0;
+        bytesMin[group] = first ? other.bytesMin[g] : Math.min(bytesMin[group], other.bytesMin[g]);
+        bytesMax[group] = first ? other.bytesMax[g] : Math.max(bytesMax[group], other.bytesMax[g]);
+        bytesCount[group] += other.bytesCount[g];
+        bytesSum[group] += other.bytesSum[g];
+      }
+      if (other.nanosCount[g] > 0) {
+        boolean first = nanosCount[group] == 0;
+        nanosMin[group] = first ? other.nanosMin[g] : Math.min(nanosMin[group], other.nanosMin[g]);
+        nanosMax[group] = first ? other.nanosMax[g] : Math.max(nanosMax[group], other.nanosMax[g]);
+        nanosCount[group] += other.nanosCount[g];
+        nanosSum[group] += other.nanosSum[g];
+      }
+    }
+  }
+
+  Object key(int group, int keyIndex) {
+    return keys[group * keyCount + keyIndex];
+  }
+
+  long count(int group) {
+    return counts[group];
+  }
+
+  /**
+   * @return number of rows of the group with a valid size
+   */
+  long bytesCount(int group) {
+    return bytesCount[group];
+  }
+
+  long bytesSum(int group) {
+    return bytesSum[group];
+  }
+
+  long bytesMin(int group) {
+    return bytesMin[group];
+  }
+
+  long bytesMax(int group) {
+    return bytesMax[group];
+  }
+
+  /**
+   * @return number of rows of the group with a valid duration
+   */
+  long nanosCount(int group) {
+    return nanosCount[group];
+  }
+
+  long nanosSum(int group) {
+    return nanosSum[group];
+  }
+
+  long nanosMin(int group) {
+    return nanosMin[group];
+  }
+
+  long nanosMax(int group) {
+    return nanosMax[group];
+  }
+
+  /**
+   * Finds or creates the group for a key read either from a row or from a flat key array.
+   */
+  private int probe(int hash, Row row, String[] keyColumns, Object[] source, int sourceBase) {
+    int mask = slots.length - 1;
+    for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+      int entry = slots[slot];
+      if (entry == 0) {
+        int group = newGroup(hash);
+        for (int k = 0; k < keyCount; k++) {
+          keys[group * keyCount + k] = row != null ? row.getValue(keyColumns[k]) : source[sourceBase + k];
+        }
+        slots[slot] = group + 1;
+        if (size * 2 > slots.length) {
+          rehash(slots.length * 2);
+        }
+        return group;
+      }
+      int group = entry - 1;
+      if (hashes[group] == hash && keyEquals(group, row, keyColumns, source, sourceBase)) {
+        return group;
+      }
+    }
+  }
+
+  private boolean keyEquals(int group, Row row, String[] keyColumns, Object[] source, int sourceBase) {
+    int base = group * keyCount;
+    for (int k = 0; k < keyCount; k++) {
+      Object value = row != null ? row.getValue(keyColumns[k]) : source[sourceBase + k];
+      if (!Objects.equals(keys[base + k], value)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int newGroup(int hash) {
+    if (size == hashes.length) {
+      int capacity = size * 2;
+      hashes = Arrays.copyOf(hashes, capacity);
+      keys = Arrays.copyOf(keys, capacity * keyCount);
+      counts = Arrays.copyOf(counts, capacity);
+      bytesCount = Arrays.copyOf(bytesCount, capacity);
+      nanosCount = Arrays.copyOf(nanosCount, capacity);
+      bytesSum = Arrays.copyOf(bytesSum, capacity);
+      bytesMin = Arrays.copyOf(bytesMin, capacity);
+      bytesMax = Arrays.copyOf(bytesMax, capacity);
+      nanosSum = Arrays.copyOf(nanosSum, capacity);
+      nanosMin = Arrays.copyOf(nanosMin, capacity);
+      nanosMax = Arrays.copyOf(nanosMax, capacity);
+    }
+    hashes[size] = hash;
+    return size++;
+  }
+
+  private void rehash(int capacity) {
+    int[] rehashed = new int[capacity];
+    int mask = capacity - 1;
+    for (int group = 0; group < size; group++) {
+      int slot = hashes[group] & mask;
+      while (rehashed[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      rehashed[slot] = group + 1;
+    }
+    slots = rehashed;
+  }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import io.cdap.cdap.api.annotation.Description;
+import io.cdap.cdap.api.annotation.Name;
+import io.cdap.cdap.api.annotation.Plugin;
+import io.cdap.wrangler.api.Arguments;
+import io.cdap.wrangler.api.Directive;
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.ErrorRowException;
+import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ByteSize;
+import io.cdap.wrangler.api.parser.ParseStatus;
+import io.cdap.wrangler.api.parser.Token;
+import io.cdap.wrangler.api.parser.TokenType;
+import io.cdap.wrangler.api.parser.UsageDefinition;
+import io.cdap.wrangler.core.columnar.ColumnPositions;
+import io.cdap.wrangler.core.directives.DirectiveArguments;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Directive for aggregating byte sizes and time durations per group of one or more key columns.
+ *
+ * <p>For every group it emits, when the last batch arrives, the key columns, the row count and the
+ * total, minimum and maximum size in MB and time in seconds. The size statistics go in the total size
+ * column and its {@code _min}/{@code _max}/{@code _count} siblings, and likewise for time.
+ * Statistics are kept in a {@link GroupStatsTable} per worker thread, so nothing is boxed per row
+ * and a shared instance does not contend; the tables are merged at the end. Invalid cells are
+ * handled as in {@code aggregate-stats}. Null cells, and invalid ones in {@code count} mode, are
+ * skipped per column: {@code _count} is the number of cells a column's statistics cover, and
+ * {@code _min} and {@code _max} are null for a group without any.</p>
+ *
+ * <p>For key spaces too large for the heap, a memory budget given in the optional options argument
+ * after the error mode, such as {@code 'budget=256MB'}, keeps the groups off-heap in a
+ * {@link SpillingGroupStatsStore} instead, which spills sorted runs to the temporary directory
+ * when the budget is exceeded and merges them at the end. Batches then update
+ * the single store one at a time, and the rows of the last batch are read from the merged file as
+ * they are consumed, so neither the budget nor the groups stay on the heap. {@link #destroy()}
+ * deletes the file.</p>
+ */
+@Plugin(type = Directive.TYPE)
+@Name("aggregate-stats-by")
+@Description("Aggregates byte sizes and time durations per group of key columns.")
+public class GroupedAggregateStatsDirective implements Directive {
+  public static final String NAME = "aggregate-stats-by";
+  public static final String COUNT_COLUMN = "count";
+  public static final String COUNT_SUFFIX = "_count";
+  public static final String BUDGET_OPTION = "budget";
+  private static final long MIN_MEMORY_BUDGET = 1024 * 1024;
+  private static final long NO_VALUE = -1;
+  private String[] keyColumns;
+  private String byteSizeColumn;
+  private String timeDurationColumn;
+  private String totalSizeColumn;
+  private String totalTimeColumn;
+  private AggregateStatsDirective.OnError onError;
+  private ThreadLocal<GroupStatsTable> threadTable;
+  private Queue<GroupStatsTable> tables;
+  private LongAdder invalidCount;
+  private SpillingGroupStatsStore spillingStore;
+
+  @Override
+  public UsageDefinition define() {
+    UsageDefinition.Builder builder = UsageDefinition.builder(NAME);
+    builder.define("keyColumns", TokenType.COLUMN_NAME_LIST);
+    builder.define("byteSizeColumn", TokenType.COLUMN);
+    builder.define("timeDurationColumn", TokenType.COLUMN);
+    builder.define("totalSizeColumn", TokenType.COLUMN);
+    builder.define("totalTimeColumn", TokenType.COLUMN);
+    builder.define("onError", TokenType.IDENTIFIER, true);
+    builder.define("options", TokenType.TEXT, true);
+    return builder.build();
+  }
+
+  @Override
+  public void initialize(Arguments args) throws DirectiveParseException {
+    Token keys = args.value("keyColumns");
+    List<?> keyList = (List<?>) keys.value();
+    if (keyList.isEmpty()) {
+      throw new DirectiveParseException(NAME, "At least one key column is required.");
+    }
+    this.keyColumns = new String[keyList.size()];
+    for (int i = 0; i < keyColumns.length; i++) {
+      keyColumns[i] = keyList.get(i).toString();
+    }
+    this.byteSizeColumn = DirectiveArguments.text(args, "byteSizeColumn");
+    this.timeDurationColumn = DirectiveArguments.text(args, "timeDurationColumn");
+    this.totalSizeColumn = DirectiveArguments.text(args, "totalSizeColumn");
+    this.totalTimeColumn = DirectiveArguments.text(args, "totalTimeColumn");
+    this.onError = AggregateStatsDirective.OnError.parse(NAME, args, "onError");
+
+    int keyCount = keyColumns.length;
+    destroy();
+    Map<String, String> options = DirectiveArguments.options(NAME, args, "options", BUDGET_OPTION);
+    if (options.containsKey(BUDGET_OPTION)) {
+      String value = options.get(BUDGET_OPTION);
+      long budgetBytes;
+      try {
+        budgetBytes = ByteSize.parse(value).getBytes();
+      } catch (IllegalArgumentException e) {
+        throw new DirectiveParseException(NAME, String.format("Invalid memory budget '%s'.", value));
+      }
+      if (budgetBytes < MIN_MEMORY_BUDGET) {
+        throw new DirectiveParseException(
+          NAME, String.format("Memory budget '%s' is below the minimum of 1MB.", value));
+      }
+      Path spillDirectory = Paths.get(System.getProperty("java.io.tmpdir"));
+      this.spillingStore = new SpillingGroupStatsStore(keyCount, budgetBytes, spillDirectory);
+    }
+    Queue<GroupStatsTable> registered = new ConcurrentLinkedQueue<>();
+    this.tables = registered;
+    this.threadTable = ThreadLocal.withInitial(() -> {
+      GroupStatsTable table = new GroupStatsTable(keyCount);
+      registered.add(table);
+      return table;
+    });
+    this.invalidCount = new LongAdder();
+  }
+
+  @Override
+  public List<Row> execute(List<Row> rows, ExecutorContext context)
+    throws DirectiveExecutionException, ErrorRowException {
+    if (spillingStore != null) {
+      synchronized (spillingStore) {
+        try {
+          return execute(rows, context, null, spillingStore);
+        } catch (DirectiveExecutionException | RuntimeException e) {
+          // The partition is abandoned, so its run files are of no further use
+          spillingStore.close();
+          throw e;
+        }
+      }
+    }
+    return execute(rows, context, threadTable.get(), null);
+  }
+
+  private List<Row> execute(List<Row> rows, ExecutorContext context, GroupStatsTable table,
+                            SpillingGroupStatsStore store)
+    throws DirectiveExecutionException, ErrorRowException {
+    // Rows are only copied out once the first invalid row has to be dropped
+    List<Row> output = null;
+    int batchInvalid = 0;
+    ColumnPositions positions = new ColumnPositions(byteSizeColumn, timeDurationColumn);
+    for (int i = 0; i < rows.size(); i++) {
+      Row row = rows.get(i);
+      positions.resolve(row);
+      Object sizeObj = positions.value(row, 0);
+      Object timeObj = positions.value(row, 1);
+
+      // Null cells are left out of the statistics of their column, as are invalid ones in count mode
+      long bytes = sizeObj == null ? NO_VALUE : UnitCells.bytes(sizeObj);
+      long nanos = timeObj == null ? NO_VALUE : UnitCells.nanos(timeObj);
+
+      if ((bytes < 0 && sizeObj != null) || (nanos < 0 && timeObj != null)) {
+        if (onError == AggregateStatsDirective.OnError.FAIL) {
+          boolean sizeInvalid = bytes < 0 && sizeObj != null;
+          long status = sizeInvalid ? bytes : nanos;
+          Object value = sizeInvalid ? sizeObj : timeObj;
+          throw new DirectiveExecutionException(
+            String.format("Invalid format in row %d: %s: %s", i + 1, ParseStatus.describe(status), value));
+        }
+        invalidCount.add((bytes < 0 && sizeObj != null ? 1 : 0) + (nanos < 0 && timeObj != null ? 1 : 0));
+        batchInvalid++;
+        if (onError == AggregateStatsDirective.OnError.COUNT) {
+          add(table, store, row, bytes, nanos);
+          continue;
+        }
+        if (output == null) {
+          output = new ArrayList<>(rows.subList(0, i));
+        }
+        continue;
+      }
+
+      add(table, store, row, bytes, nanos);
+      if (output != null) {
+        output.add(row);
+      }
+    }
+
+    if (context.isLast()) {
+      if (store != null) {
+        try {
+          return store.finish(this::toRow);
+        } catch (UncheckedIOException e) {
+          throw new DirectiveExecutionException(e.getMessage(), e.getCause());
+        }
+      }
+      GroupStatsTable merged = new GroupStatsTable(keyColumns.length);
+      for (GroupStatsTable perThread : tables) {
+        merged.combine(perThread);
+      }
+      List<Row> results = new ArrayList<>(merged.size());
+      for (int group = 0; group < merged.size(); group++) {
+        results.add(toRow(merged, group));
+      }
+      return results;
+    }
+
+    if (onError == AggregateStatsDirective.OnError.ERROR && batchInvalid > 0) {
+      throw new ErrorRowException(
+        NAME, String.format("%d row(s) with invalid size or duration values", batchInvalid), 1);
+    }
+    return output == null ? rows : output;
+  }
+
+  /**
+   * Releases the memory budget and deletes the spill files, including the one the last result is
+   * read from.
+   */
+  public void destroy() {
+    if (spillingStore != null) {
+      spillingStore.close();
+      spillingStore = null;
+    }
+  }
+
+  /**
+   * @return number of invalid cells seen since {@link #initialize(Arguments)}
+   */
+  public long getInvalidCount() {
+    return invalidCount.sum();
+  }
+
+  private void add(GroupStatsTable table, SpillingGroupStatsStore store, Row row, long bytes, long nanos)
+    throws DirectiveExecutionException {
+    if (table != null) {
+      table.add(table.group(row, keyColumns), bytes, nanos);
+      return;
+    }
+    try {
+      store.add(row, keyColumns, bytes, nanos);
+    } catch (IllegalArgumentException e) {
+      throw new DirectiveExecutionException(NAME, e.getMessage());
+    } catch (UncheckedIOException e) {
+      throw new DirectiveExecutionException(e.getMessage(), e.getCause());
+    }
+  }
+
+  private Row toRow(GroupStatsTable table, int group) {
+    Object[] key = new Object[keyColumns.length];
+    for (int k = 0; k < keyColumns.length; k++) {
+      key[k] = table.key(group, k);
+    }
+    long[] stats = new long[SpillingGroupStatsStore.STATS];
+    stats[SpillingGroupStatsStore.COUNT] = table.count(group);
+    stats[SpillingGroupStatsStore.BYTES_COUNT] = table.bytesCount(group);
+    stats[SpillingGroupStatsStore.BYTES_SUM] = table.bytesSum(group);
+    stats[SpillingGroupStatsStore.BYTES_MIN] = table.bytesMin(group);
+    stats[SpillingGroupStatsStore.BYTES_MAX] = table.bytesMax(group);
+    stats[SpillingGroupStatsStore.NANOS_COUNT] = table.nanosCount(group);
+    stats[SpillingGroupStatsStore.NANOS_SUM] = table.nanosSum(group);
+    stats[SpillingGroupStatsStore.NANOS_MIN] = table.nanosMin(group);
+    stats[SpillingGroupStatsStore.NANOS_MAX] = table.nanosMax(group);
+    return toRow(key, stats);
+  }
+
+  private Row toRow(Object[] key, long[] stats) {
+    Row row = new Row();
+    for (int k = 0; k < keyColumns.length; k++) {
+      row.add(keyColumns[k], key[k]);
+    }
+    row.add(COUNT_COLUMN, stats[SpillingGroupStatsStore.COUNT]);
+    boolean sizes = stats[SpillingGroupStatsStore.BYTES_COUNT] > 0;
+    row.add(totalSizeColumn, toMegabytes(stats[SpillingGroupStatsStore.BYTES_SUM]));
+    row.add(totalSizeColumn + "_min", sizes ? toMegabytes(stats[SpillingGroupStatsStore.BYTES_MIN]) : null);
+    row.add(totalSizeColumn + "_max", sizes ? toMegabytes(stats[SpillingGroupStatsStore.BYTES_MAX]) : null);
+    row.add(totalSizeColumn + COUNT_SUFFIX, stats[SpillingGroupStatsStore.BYTES_COUNT]);
+    boolean times = stats[SpillingGroupStatsStore.NANOS_COUNT] > 0;
+    row.add(totalTimeColumn, toSeconds(stats[SpillingGroupStatsStore.NANOS_SUM]));
+    row.add(totalTimeColumn + "_min", times ? toSeconds(stats[SpillingGroupStatsStore.NANOS_MIN]) : null);
+    row.add(totalTimeColumn + "_max", times ? toSeconds(stats[SpillingGroupStatsStore.NANOS_MAX]) : null);
+    row.add(totalTimeColumn + COUNT_SUFFIX, stats[SpillingGroupStatsStore.NANOS_COUNT]);
+    return row;
+  }
+
+  private static double toMegabytes(long bytes) {
+    return bytes / (1024.0 * 1024.0);
+  }
+
+  private static double toSeconds(long nanos) {
+    return nanos / 1_000_000_000.0;
+  }
+}
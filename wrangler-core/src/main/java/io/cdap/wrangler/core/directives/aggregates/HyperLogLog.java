@@ -0,0 +1,201 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-memory HyperLogLog sketch estimating the number of distinct values.
+ *
+ * <p>Values are hashed to 64 bits; the top {@code precision} bits pick one of {@code 2^precision}
+ * one-byte registers, which keeps the longest run of leading zeros seen in the remaining bits.
+ * The standard error of the estimate is about {@code 1.04 / sqrt(2^precision)}: 1.6% in 4 KB for
+ * the default precision of 12. Small cardinalities fall back to linear counting over the empty
+ * registers, and with a 64-bit hash no large-range correction is needed.</p>
+ *
+ * <p>Text is hashed by its characters, and a {@code long} by its decimal digits, so {@code 42} and
+ * {@code "42"} are the same value. Sketches with the same precision are merged with
+ * {@link #combine(HyperLogLog)}, which takes the register-wise maximum, so per-partition or
+ * per-thread sketches give exactly the estimate of one sketch fed every value. Instances are not
+ * thread-safe.</p>
+ */
+public final class HyperLogLog implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  public static final int DEFAULT_PRECISION = 12;
+  public static final int MIN_PRECISION = 4;
+  public static final int MAX_PRECISION = 18;
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final int precision;
+  private final byte[] registers;
+
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  /**
+   * @param precision number of register index bits, between {@value #MIN_PRECISION} and
+   *   {@value #MAX_PRECISION}
+   */
+  public HyperLogLog(int precision) {
+    if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+      throw new IllegalArgumentException(
+        String.format("Precision must be between %d and %d, got %d", MIN_PRECISION, MAX_PRECISION, precision));
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  /**
+   * Adds a text value.
+   */
+  public void add(CharSequence value) {
+    long hash = FNV_OFFSET;
+    for (int i = 0; i < value.length(); i++) {
+      hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+    }
+    addHash(mix(hash));
+  }
+
+  /**
+   * Adds a number; the same as adding its decimal string.
+   */
+  public void add(long value) {
+    if (value == Long.MIN_VALUE) {
+      add(Long.toString(value));
+      return;
+    }
+    long hash = FNV_OFFSET;
+    if (value < 0) {
+      hash = (hash ^ '-') * FNV_PRIME;
+      value = -value;
+    }
+    long divisor = 1;
+    while (divisor <= value / 10) {
+      divisor *= 10;
+    }
+    for (; divisor > 0; divisor /= 10) {
+      hash = (hash ^ ('0' + (value / divisor) % 10)) * FNV_PRIME;
+    }
+    addHash(mix(hash));
+  }
+
+  private void addHash(long hash) {
+    int index = (int) (hash >>> (64 - precision));
+    // A sentinel bit bounds the run of zeros at 64 - precision
+    int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+    if (rank > registers[index]) {
+      registers[index] = (byte) rank;
+    }
+  }
+
+  /**
+   * Merges another sketch with the same precision into this one.
+   *
+   * @param other sketch to fold in, left unchanged
+   * @return this sketch
+   */
+  public HyperLogLog combine(HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException(
+        String.format("Cannot combine sketches of precision %d and %d", precision, other.precision));
+    }
+    for (int i = 0; i < registers.length; i++) {
+      if (other.registers[i] > registers[i]) {
+        registers[i] = other.registers[i];
+      }
+    }
+    return this;
+  }
+
+  /**
+   * @return the estimated number of distinct values added
+   */
+  public long estimate() {
+    int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += Double.longBitsToDouble((1023L - register) << 52);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    double estimate = alpha(m) * m * m / sum;
+    if (estimate <= 2.5 * m && zeros > 0) {
+      estimate = m * Math.log((double) m / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  public int getPrecision() {
+    return precision;
+  }
+
+  /**
+   * @return encoding holding the precision and the registers
+   */
+  public byte[] toBytes() {
+    return ByteBuffer.allocate(1 + registers.length).put((byte) precision).put(registers).array();
+  }
+
+  /**
+   * Decodes a sketch written by {@link #toBytes()}.
+   *
+   * @throws IllegalArgumentException if the encoding is malformed
+   */
+  public static HyperLogLog fromBytes(byte[] bytes) {
+    if (bytes.length < 1) {
+      throw new IllegalArgumentException("Malformed sketch encoding");
+    }
+    HyperLogLog sketch = new HyperLogLog(bytes[0]);
+    if (bytes.length != 1 + sketch.registers.length) {
+      throw new IllegalArgumentException(
+        String.format("Expected %d bytes of sketch but got %d", 1 + sketch.registers.length, bytes.length));
+    }
+    System.arraycopy(bytes, 1, sketch.registers, 0, sketch.registers.length);
+    return sketch;
+  }
+
+  /**
+   * Murmur3 finalizer, spreading FNV's weak high bits over the whole word.
+   */
+  private static long mix(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  private static double alpha(int m) {
+    switch (m) {
+      case 16:
+        return 0.673;
+      case 32:
+        return 0.697;
+      case 64:
+        return 0.709;
+      default:
+        return 0.7213 / (1 + 1.079 / m);
+    }
+  }
+}
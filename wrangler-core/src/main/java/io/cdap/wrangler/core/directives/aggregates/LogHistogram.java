@@ -0,0 +1,218 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-memory streaming histogram of non-negative {@code long} values, such as durations in
+ * nanoseconds, with HDR-style logarithmic buckets.
+ *
+ * <p>Every power-of-two range {@code [2^e, 2^(e+1))} is split into {@code 2^precision} equal
+ * sub-buckets, and values below {@code 2^precision} are counted exactly. A quantile is reported as
+ * the midpoint of the bucket holding it, clamped to the exact minimum and maximum, so its relative
+ * error is at most {@code 2^-(precision + 1)}: 0.39% for the default precision of 7. Memory is
+ * {@code (64 - precision) * 2^precision} counters whatever the number of values, about 58 KB for
+ * the default.</p>
+ *
+ * <p>Histograms with the same precision are merged with {@link #combine(LogHistogram)}, which just
+ * adds the counters, so per-partition or per-thread histograms give the same quantiles as one
+ * histogram fed every value. Instances are not thread-safe.</p>
+ */
+public final class LogHistogram implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  public static final int DEFAULT_PRECISION = 7;
+
+  private final int precision;
+  private final long[] counts;
+  private long count;
+  private long min = Long.MAX_VALUE;
+  private long max = Long.MIN_VALUE;
+
+  public LogHistogram() {
+    this(DEFAULT_PRECISION);
+  }
+
+  /**
+   * @param precision number of sub-bucket bits per power of two, between 1 and 16
+   */
+  public LogHistogram(int precision) {
+    if (precision < 1 || precision > 16) {
+      throw new IllegalArgumentException("Precision must be between 1 and 16, got " + precision);
+    }
+    this.precision = precision;
+    this.counts = new long[(64 - precision) << precision];
+  }
+
+  /**
+   * Records one value.
+   *
+   * @param value non-negative value to record
+   */
+  public void record(long value) {
+    if (value < 0) {
+      throw new IllegalArgumentException("Histogram values must not be negative, got " + value);
+    }
+    counts[index(value)]++;
+    count++;
+    if (value < min) {
+      min = value;
+    }
+    if (value > max) {
+      max = value;
+    }
+  }
+
+  /**
+   * Adds the counts of another histogram with the same precision to this one.
+   *
+   * @param other histogram to fold in, left unchanged
+   * @return this histogram
+   */
+  public LogHistogram combine(LogHistogram other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException(
+        String.format("Cannot combine histograms of precision %d and %d", precision, other.precision));
+    }
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] += other.counts[i];
+    }
+    count += other.count;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+    return this;
+  }
+
+  /**
+   * Returns the value at the given quantile.
+   *
+   * @param quantile between 0 and 1; 0 gives the minimum and 1 the maximum
+   * @return the estimated value, or 0 if nothing has been recorded
+   */
+  public long quantile(double quantile) {
+    if (quantile < 0 || quantile > 1) {
+      throw new IllegalArgumentException("Quantile must be between 0 and 1, got " + quantile);
+    }
+    if (count == 0) {
+      return 0;
+    }
+    if (quantile == 0) {
+      return min;
+    }
+    if (quantile == 1) {
+      return max;
+    }
+    long rank = Math.max(1, (long) Math.ceil(quantile * count));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.max(min, Math.min(max, midpoint(i)));
+      }
+    }
+    return max;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public int getPrecision() {
+    return precision;
+  }
+
+  /**
+   * @return the smallest recorded value, or 0 if nothing has been recorded
+   */
+  public long getMin() {
+    return count == 0 ? 0 : min;
+  }
+
+  /**
+   * @return the largest recorded value, or 0 if nothing has been recorded
+   */
+  public long getMax() {
+    return count == 0 ? 0 : max;
+  }
+
+  /**
+   * @return sparse big-endian encoding holding only the non-empty buckets
+   */
+  public byte[] toBytes() {
+    int nonEmpty = 0;
+    for (long c : counts) {
+      if (c != 0) {
+        nonEmpty++;
+      }
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * 2 + Long.BYTES * 3
+                                              + nonEmpty * (Integer.BYTES + Long.BYTES));
+    buffer.putInt(precision).putLong(count).putLong(min).putLong(max).putInt(nonEmpty);
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] != 0) {
+        buffer.putInt(i).putLong(counts[i]);
+      }
+    }
+    return buffer.array();
+  }
+
+  /**
+   * Decodes a histogram written by {@link #toBytes()}.
+   *
+   * @throws IllegalArgumentException if the encoding is malformed
+   */
+  public static LogHistogram fromBytes(byte[] bytes) {
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(bytes);
+      LogHistogram histogram = new LogHistogram(buffer.getInt());
+      histogram.count = buffer.getLong();
+      histogram.min = buffer.getLong();
+      histogram.max = buffer.getLong();
+      int nonEmpty = buffer.getInt();
+      for (int i = 0; i < nonEmpty; i++) {
+        histogram.counts[buffer.getInt()] = buffer.getLong();
+      }
+      return histogram;
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException("Malformed histogram encoding", e);
+    }
+  }
+
+  private int index(long value) {
+    int subBuckets = 1 << precision;
+    if (value < subBuckets) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - precision;
+    // The top precision + 1 bits of the value, in [subBuckets, 2 * subBuckets)
+    int mantissa = (int) (value >>> shift);
+    return ((shift + 1) << precision) + mantissa - subBuckets;
+  }
+
+  private long midpoint(int index) {
+    int subBuckets = 1 << precision;
+    if (index < subBuckets) {
+      return index;
+    }
+    int shift = (index >>> precision) - 1;
+    long lower = ((long) ((index & (subBuckets - 1)) + subBuckets)) << shift;
+    return lower + ((1L << shift) >>> 1);
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import io.cdap.cdap.api.annotation.Description;
+import io.cdap.cdap.api.annotation.Name;
+import io.cdap.cdap.api.annotation.Plugin;
+import io.cdap.wrangler.api.Arguments;
+import io.cdap.wrangler.api.Directive;
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.TokenType;
+import io.cdap.wrangler.api.parser.UsageDefinition;
+import io.cdap.wrangler.core.directives.DirectiveArguments;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Directive that merges the partial states emitted by {@code aggregate-stats ... 'output=partial'} into
+ * the final byte and time totals. The partial rows are consumed and the totals are emitted when
+ * the last batch arrives. If the partials carry duration histograms, an optional percentile
+ * list such as {@code "p50,p99,max"} adds the merged quantiles as in {@code aggregate-stats}, and
+ * if they carry distinct count sketches, an optional column name adds the merged estimate in that
+ * column suffixed with {@value AggregateStatsDirective#DISTINCT_SUFFIX}.
+ */
+@Plugin(type = Directive.TYPE)
+@Name("merge-stats")
+@Description("Merges partial aggregate-stats states into final totals.")
+public class MergeStatsDirective implements Directive {
+  public static final String NAME = "merge-stats";
+  private String partialColumn;
+  private String totalSizeColumn;
+  private String totalTimeColumn;
+  private AggregateStatsState state;
+  private QuantileColumns quantileColumns;
+  private LogHistogram histogram;
+  private String distinctColumn;
+  private HyperLogLog sketch;
+
+  @Override
+  public UsageDefinition define() {
+    UsageDefinition.Builder builder = UsageDefinition.builder(NAME);
+    builder.define("partialColumn", TokenType.COLUMN);
+    builder.define("totalSizeColumn", TokenType.COLUMN);
+    builder.define("totalTimeColumn", TokenType.COLUMN);
+    builder.define("percentiles", TokenType.TEXT, true);
+    builder.define("distinctColumn", TokenType.COLUMN, true);
+    return builder.build();
+  }
+
+  @Override
+  public void initialize(Arguments args) throws DirectiveParseException {
+    this.partialColumn = DirectiveArguments.text(args, "partialColumn");
+    this.totalSizeColumn = DirectiveArguments.text(args, "totalSizeColumn");
+    this.totalTimeColumn = DirectiveArguments.text(args, "totalTimeColumn");
+    this.state = new AggregateStatsState();
+    this.quantileColumns = null;
+    if (args.contains("percentiles")) {
+      try {
+        this.quantileColumns = QuantileColumns.parse(DirectiveArguments.text(args, "percentiles"), totalTimeColumn);
+      } catch (IllegalArgumentException e) {
+        throw new DirectiveParseException(NAME, e.getMessage());
+      }
+    }
+    this.histogram = new LogHistogram();
+    this.distinctColumn = args.contains("distinctColumn") ? DirectiveArguments.text(args, "distinctColumn") : null;
+    this.sketch = null;
+  }
+
+  @Override
+  public List<Row> execute(List<Row> rows, ExecutorContext context) throws DirectiveExecutionException {
+    for (Row row : rows) {
+      Object value = row.getValue(partialColumn);
+      if (value instanceof AggregateStatsState) {
+        state.combine((AggregateStatsState) value);
+      } else if (value instanceof byte[]) {
+        try {
+          state.combine(AggregateStatsState.fromBytes((byte[]) value));
+        } catch (IllegalArgumentException e) {
+          throw new DirectiveExecutionException(NAME, e.getMessage());
+        }
+      } else if (value != null) {
+        throw new DirectiveExecutionException(
+          NAME, String.format("Column '%s' does not hold an aggregate-stats partial but %s.",
+                              partialColumn, value.getClass().getSimpleName()));
+      }
+
+      Object histogramValue = row.getValue(AggregateStatsDirective.HISTOGRAM_COLUMN);
+      if (histogramValue instanceof byte[]) {
+        try {
+          histogram.combine(LogHistogram.fromBytes((byte[]) histogramValue));
+        } catch (IllegalArgumentException e) {
+          throw new DirectiveExecutionException(NAME, e.getMessage());
+        }
+      }
+
+      Object sketchValue = row.getValue(AggregateStatsDirective.DISTINCT_COLUMN);
+      if (sketchValue instanceof byte[]) {
+        try {
+          HyperLogLog partialSketch = HyperLogLog.fromBytes((byte[]) sketchValue);
+          sketch = sketch == null ? partialSketch : sketch.combine(partialSketch);
+        } catch (IllegalArgumentException e) {
+          throw new DirectiveExecutionException(NAME, e.getMessage());
+        }
+      }
+    }
+
+    if (context.isLast()) {
+      Row result = state.toRow(totalSizeColumn, totalTimeColumn, AggregateStatsDirective.INVALID_COUNT_COLUMN);
+      if (quantileColumns != null) {
+        quantileColumns.addTo(result, histogram);
+      }
+      if (distinctColumn != null) {
+        result.add(distinctColumn + AggregateStatsDirective.DISTINCT_SUFFIX, sketch == null ? 0L : sketch.estimate());
+      }
+      return List.of(result);
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * @return the state merged so far
+   */
+  public AggregateStatsState getState() {
+    return state;
+  }
+}
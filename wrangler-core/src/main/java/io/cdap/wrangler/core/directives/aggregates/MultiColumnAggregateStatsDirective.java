@@ -0,0 +1,304 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import io.cdap.cdap.api.annotation.Description;
+import io.cdap.cdap.api.annotation.Name;
+import io.cdap.cdap.api.annotation.Plugin;
+import io.cdap.wrangler.api.Arguments;
+import io.cdap.wrangler.api.Directive;
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.ErrorRowException;
+import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ByteSize;
+import io.cdap.wrangler.api.parser.ParseStatus;
+import io.cdap.wrangler.api.parser.RangeParser;
+import io.cdap.wrangler.api.parser.TimeDuration;
+import io.cdap.wrangler.api.parser.TokenType;
+import io.cdap.wrangler.api.parser.UnitRegistry;
+import io.cdap.wrangler.api.parser.UsageDefinition;
+import io.cdap.wrangler.core.columnar.ColumnBatch;
+import io.cdap.wrangler.core.columnar.ColumnVector;
+import io.cdap.wrangler.core.columnar.ColumnarDirective;
+import io.cdap.wrangler.core.directives.DirectiveArguments;
+import io.cdap.wrangler.core.metrics.DirectiveMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Directive computing several statistics over several size and duration columns in one pass.
+ *
+ * <p>The first argument lists the columns, separated by semicolons, each as
+ * {@code column:unit:operators}, e.g. {@code 'data_size:MB:sum,max;response_time:s:mean,stddev'}.
+ * The unit is any byte or duration unit; it decides how the column is parsed and the unit the
+ * results are reported in. The operators are {@code count}, {@code sum}, {@code min}, {@code max},
+ * {@code mean} and {@code stddev} (sample standard deviation). Nulls are ignored, so {@code count}
+ * is the number of values; statistics without a value, such as the mean of an empty column or the
+ * standard deviation of one value, are null.</p>
+ *
+ * <p>The optional error mode is that of {@code aggregate-stats} and, unless it is {@code fail}, the
+ * invalid cells of each column are reported as {@code invalid_count}. It may be followed by an
+ * options argument such as {@code 'layout=tall'}, where the layout is {@code wide} (the default),
+ * one row with a {@code <column>_<operator>} column per result, or {@code tall}, one row per input
+ * column holding {@code column}, {@code unit} and a column per operator.</p>
+ *
+ * <p>All statistics are kept in a {@link ColumnStats} of flat arrays per worker thread and merged
+ * with the last batch, when the result rows are emitted. Batch metrics are published through
+ * {@link DirectiveMetrics}.</p>
+ */
+@Plugin(type = Directive.TYPE)
+@Name("aggregate-stats-multi")
+@Description("Computes count, sum, min, max, mean and stddev over several size and duration columns.")
+public class MultiColumnAggregateStatsDirective implements ColumnarDirective {
+  public static final String NAME = "aggregate-stats-multi";
+  public static final String COLUMN_COLUMN = "column";
+  public static final String UNIT_COLUMN = "unit";
+  public static final String INVALID_COUNT = "invalid_count";
+  public static final String LAYOUT_OPTION = "layout";
+  private String[] columns;
+  private String[] units;
+  private long[] scales;
+  private RangeParser[] parsers;
+  private Operator[][] operators;
+  private boolean tall;
+  private AggregateStatsDirective.OnError onError;
+  private ThreadLocal<ColumnStats> threadStats;
+  private Queue<ColumnStats> allStats;
+  private DirectiveMetrics metrics;
+
+  /**
+   * A statistic that can be requested for a column.
+   */
+  public enum Operator {
+    COUNT,
+    SUM,
+    MIN,
+    MAX,
+    MEAN,
+    STDDEV
+  }
+
+  @Override
+  public UsageDefinition define() {
+    UsageDefinition.Builder builder = UsageDefinition.builder(NAME);
+    builder.define("columns", TokenType.TEXT);
+    builder.define("onError", TokenType.IDENTIFIER, true);
+    builder.define("options", TokenType.TEXT, true);
+    return builder.build();
+  }
+
+  @Override
+  public void initialize(Arguments args) throws DirectiveParseException {
+    parseColumns(DirectiveArguments.text(args, "columns"));
+    this.tall = false;
+    Map<String, String> options = DirectiveArguments.options(NAME, args, "options", LAYOUT_OPTION);
+    if (options.containsKey(LAYOUT_OPTION)) {
+      String layout = options.get(LAYOUT_OPTION);
+      if (!layout.equalsIgnoreCase("wide") && !layout.equalsIgnoreCase("tall")) {
+        throw new DirectiveParseException(
+          NAME, String.format("Invalid layout '%s'. Expected wide or tall.", layout));
+      }
+      this.tall = layout.equalsIgnoreCase("tall");
+    }
+    this.onError = AggregateStatsDirective.OnError.parse(NAME, args, "onError");
+    this.metrics = new DirectiveMetrics(NAME);
+    int width = columns.length;
+    Queue<ColumnStats> registered = new ConcurrentLinkedQueue<>();
+    this.allStats = registered;
+    this.threadStats = ThreadLocal.withInitial(() -> {
+      ColumnStats stats = new ColumnStats(width);
+      registered.add(stats);
+      return stats;
+    });
+  }
+
+  private void parseColumns(String spec) throws DirectiveParseException {
+    String[] entries = spec.split(";");
+    columns = new String[entries.length];
+    units = new String[entries.length];
+    scales = new long[entries.length];
+    parsers = new RangeParser[entries.length];
+    operators = new Operator[entries.length][];
+    for (int c = 0; c < entries.length; c++) {
+      String[] parts = entries[c].trim().split(":");
+      if (parts.length != 3 || parts[0].trim().isEmpty()) {
+        throw new DirectiveParseException(
+          NAME, String.format("Invalid column '%s'. Expected column:unit:operators.", entries[c].trim()));
+      }
+      columns[c] = parts[0].trim();
+      units[c] = parts[1].trim();
+      String unit = units[c];
+      if (UnitRegistry.BYTES.contains(unit)) {
+        scales[c] = UnitRegistry.BYTES.multiplier(unit, 0, unit.length());
+        parsers[c] = ByteSize::tryParseBytes;
+      } else if (UnitRegistry.DURATIONS.contains(unit)) {
+        scales[c] = UnitRegistry.DURATIONS.multiplier(unit, 0, unit.length());
+        parsers[c] = TimeDuration::tryParseNanos;
+      } else {
+        throw new DirectiveParseException(
+          NAME, String.format("Unknown unit '%s' for column '%s'.", unit, columns[c]));
+      }
+      String[] names = parts[2].split(",");
+      operators[c] = new Operator[names.length];
+      for (int o = 0; o < names.length; o++) {
+        try {
+          operators[c][o] = Operator.valueOf(names[o].trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+          throw new DirectiveParseException(
+            NAME, String.format("Unknown operator '%s' for column '%s'. Expected count, sum, min, max, "
+                                  + "mean or stddev.", names[o].trim(), columns[c]));
+        }
+      }
+    }
+  }
+
+  @Override
+  public String[] inputColumns() {
+    return columns.clone();
+  }
+
+  @Override
+  public List<Row> execute(ColumnBatch batch, ExecutorContext context)
+    throws DirectiveExecutionException, ErrorRowException {
+    long start = metrics.start(context);
+    int width = columns.length;
+    ColumnVector[] vectors = new ColumnVector[width];
+    long[][] values = new long[width][];
+    for (int c = 0; c < width; c++) {
+      vectors[c] = batch.column(columns[c]);
+      if (vectors[c] == null) {
+        throw new DirectiveExecutionException(String.format("Batch has no column '%s'", columns[c]));
+      }
+      values[c] = UnitCells.values(vectors[c], parsers[c]);
+    }
+
+    ColumnStats stats = threadStats.get();
+    List<Row> rows = batch.rows();
+    // Rows are only copied out once the first invalid row has to be dropped
+    List<Row> output = null;
+    int batchInvalid = 0;
+    int size = batch.size();
+    for (int i = 0; i < size; i++) {
+      int invalidColumn = -1;
+      for (int c = 0; c < width && invalidColumn < 0; c++) {
+        if (values[c][i] < 0) {
+          invalidColumn = c;
+        }
+      }
+      if (invalidColumn >= 0) {
+        if (onError == AggregateStatsDirective.OnError.FAIL) {
+          throw new DirectiveExecutionException(
+            String.format("Invalid value in row %d of column '%s': %s: %s", i + 1, columns[invalidColumn],
+                          ParseStatus.describe(values[invalidColumn][i]), vectors[invalidColumn].get(i)));
+        }
+        batchInvalid++;
+        for (int c = 0; c < width; c++) {
+          if (values[c][i] < 0) {
+            stats.addInvalid(c);
+          } else if (onError == AggregateStatsDirective.OnError.COUNT && !vectors[c].isNull(i)) {
+            stats.add(c, values[c][i]);
+          }
+        }
+        if (onError != AggregateStatsDirective.OnError.COUNT && output == null) {
+          output = new ArrayList<>(rows.subList(0, i));
+        }
+        continue;
+      }
+
+      for (int c = 0; c < width; c++) {
+        if (!vectors[c].isNull(i)) {
+          stats.add(c, values[c][i]);
+        }
+      }
+      if (output != null) {
+        output.add(rows.get(i));
+      }
+    }
+
+    metrics.finish(context, start, size, batchInvalid);
+
+    if (context.isLast()) {
+      ColumnStats merged = new ColumnStats(width);
+      for (ColumnStats perThread : allStats) {
+        merged.combine(perThread);
+      }
+      return tall ? tallRows(merged) : List.of(wideRow(merged));
+    }
+
+    if (onError == AggregateStatsDirective.OnError.ERROR && batchInvalid > 0) {
+      throw new ErrorRowException(
+        NAME, String.format("%d row(s) with invalid size or duration values", batchInvalid), 1);
+    }
+    return output == null ? rows : output;
+  }
+
+  private Row wideRow(ColumnStats stats) {
+    Row row = new Row();
+    for (int c = 0; c < columns.length; c++) {
+      for (Operator operator : operators[c]) {
+        row.add(columns[c] + "_" + operator.name().toLowerCase(), result(stats, c, operator));
+      }
+      if (onError != AggregateStatsDirective.OnError.FAIL) {
+        row.add(columns[c] + "_" + INVALID_COUNT, stats.invalidCount(c));
+      }
+    }
+    return row;
+  }
+
+  private List<Row> tallRows(ColumnStats stats) {
+    List<Row> rows = new ArrayList<>(columns.length);
+    for (int c = 0; c < columns.length; c++) {
+      Row row = new Row(COLUMN_COLUMN, columns[c]);
+      row.add(UNIT_COLUMN, units[c]);
+      for (Operator operator : operators[c]) {
+        row.add(operator.name().toLowerCase(), result(stats, c, operator));
+      }
+      if (onError != AggregateStatsDirective.OnError.FAIL) {
+        row.add(INVALID_COUNT, stats.invalidCount(c));
+      }
+      rows.add(row);
+    }
+    return rows;
+  }
+
+  private Object result(ColumnStats stats, int column, Operator operator) {
+    long count = stats.count(column);
+    double scale = scales[column];
+    switch (operator) {
+      case COUNT:
+        return count;
+      case SUM:
+        return stats.sum(column) / scale;
+      case MIN:
+        return count == 0 ? null : stats.min(column) / scale;
+      case MAX:
+        return count == 0 ? null : stats.max(column) / scale;
+      case MEAN:
+        return count == 0 ? null : stats.mean(column) / scale;
+      case STDDEV:
+        return count < 2 ? null : Math.sqrt(stats.variance(column)) / scale;
+      default:
+        throw new IllegalStateException("Unknown operator " + operator);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import io.cdap.wrangler.api.Row;
+
+/**
+ * Quantile output columns parsed from a specification such as {@code "p50,p95,p99,max"}.
+ *
+ * <p>Each entry is {@code pNN} (any percentile between 0 and 100, decimals allowed), {@code min}
+ * or {@code max}. The column for an entry is the prefix followed by an underscore and the entry,
+ * with a decimal point replaced by an underscore, e.g. {@code response_time_p99_9}.</p>
+ */
+final class QuantileColumns {
+  private final String[] names;
+  private final double[] quantiles;
+
+  private QuantileColumns(String[] names, double[] quantiles) {
+    this.names = names;
+    this.quantiles = quantiles;
+  }
+
+  /**
+   * @throws IllegalArgumentException if an entry is not a valid percentile
+   */
+  static QuantileColumns parse(String spec, String prefix) {
+    String[] entries = spec.split(",");
+    String[] names = new String[entries.length];
+    double[] quantiles = new double[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      String entry = entries[i].trim().toLowerCase();
+      if (entry.equals("min")) {
+        quantiles[i] = 0;
+      } else if (entry.equals("max")) {
+        quantiles[i] = 1;
+      } else {
+        double percentile;
+        try {
+          percentile = entry.startsWith("p") ? Double.parseDouble(entry.substring(1)) : Double.NaN;
+        } catch (NumberFormatException e) {
+          percentile = Double.NaN;
+        }
+        if (!(percentile >= 0 && percentile <= 100)) {
+          throw new IllegalArgumentException(
+            String.format("Invalid percentile '%s'. Expected pNN with NN between 0 and 100, min or max.", entry));
+        }
+        quantiles[i] = percentile / 100;
+      }
+      names[i] = prefix + "_" + entry.replace('.', '_');
+    }
+    return new QuantileColumns(names, quantiles);
+  }
+
+  /**
+   * Adds one column per quantile to the row, converting nanoseconds to seconds.
+   */
+  void addTo(Row row, LogHistogram histogram) {
+    for (int i = 0; i < names.length; i++) {
+      row.add(names[i], histogram.quantile(quantiles[i]) / 1_000_000_000.0);
+    }
+  }
+}
@@ -0,0 +1,644 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.UnitCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.function.BiFunction;
+
+/**
+ * Group statistics kept off-heap within a fixed memory budget, spilling sorted runs to disk.
+ *
+ * <p>Groups live in a direct buffer as records of {@code [hash][key length][key bytes][9 longs]},
+ * found through an open-addressing table of record offsets in a second direct buffer. The key is
+ * the group's key values encoded as length-prefixed UTF-8 in a reused scratch array, so adding a
+ * row allocates nothing on the heap for string keys. When either buffer is full the records are
+ * sorted by key in place and written to a run file, with the statistics as {@link UnitCodec}
+ * varints, and the buffers are reused. The buffers are allocated by the first {@link #add} and
+ * dropped by {@link #finish} and {@link #close}, so an idle store holds no off-heap memory.</p>
+ *
+ * <p>{@link #finish} merges the runs, at most {@link #MAX_FAN_IN} files at a time, into one file
+ * of distinct groups, and returns a list that reads its rows from that file. Reading the list in
+ * order streams the file, so the heap holds one group at a time however many groups there are. The
+ * file is deleted by the next {@link #finish} or by {@link #close}.</p>
+ *
+ * <p>Key values come back as strings. Instances are not thread-safe.</p>
+ */
+final class SpillingGroupStatsStore implements Closeable {
+  static final int COUNT = 0;
+  static final int BYTES_SUM = 1;
+  static final int BYTES_MIN = 2;
+  static final int BYTES_MAX = 3;
+  static final int NANOS_SUM = 4;
+  static final int NANOS_MIN = 5;
+  static final int NANOS_MAX = 6;
+  static final int BYTES_COUNT = 7;
+  static final int NANOS_COUNT = 8;
+  static final int STATS = 9;
+  private static final int HEADER = 2 * Integer.BYTES;
+  private static final int MIN_SLOTS = 16;
+  static final int MAX_FAN_IN = 64;
+
+  private final int keyCount;
+  private final Path spillDirectory;
+  private final int slotCount;
+  private final int recordBytes;
+  private final int slotMask;
+  private final int fanIn;
+  private final List<Path> runs = new ArrayList<>();
+  private ByteBuffer records;
+  private IntBuffer slots;
+  private byte[] scratch = new byte[64];
+  private int entries;
+  private SpilledGroups result;
+
+  /**
+   * @param keyCount number of key columns
+   * @param memoryBudget off-heap bytes to use for groups before spilling
+   * @param spillDirectory directory for run files
+   */
+  SpillingGroupStatsStore(int keyCount, long memoryBudget, Path spillDirectory) {
+    this(keyCount, memoryBudget, spillDirectory, MAX_FAN_IN);
+  }
+
+  /**
+   * @param fanIn maximum number of run files merged at once, at least 2
+   */
+  SpillingGroupStatsStore(int keyCount, long memoryBudget, Path spillDirectory, int fanIn) {
+    if (fanIn < 2) {
+      throw new IllegalArgumentException("Merge fan-in must be at least 2, got " + fanIn);
+    }
+    this.keyCount = keyCount;
+    this.fanIn = fanIn;
+    this.spillDirectory = spillDirectory;
+    // A quarter of the budget for slots, the rest for records
+    long slotCount = Math.max(MIN_SLOTS, Long.highestOneBit(Math.min(memoryBudget / 16, 1 << 28)));
+    this.slotCount = (int) slotCount;
+    this.recordBytes = (int) Math.min(Integer.MAX_VALUE, Math.max(memoryBudget - slotCount * Integer.BYTES, 1024));
+    this.slotMask = (int) slotCount - 1;
+  }
+
+  /**
+   * Adds one row's contribution to the group of its key columns. A negative size or duration,
+   * for a null or invalid cell, is left out of the statistics of its column.
+   *
+   * @throws UncheckedIOException if a run cannot be spilled
+   */
+  void add(Row row, String[] keyColumns, long bytes, long nanos) {
+    int keyLength = encodeKey(row, keyColumns);
+    int hash = hash(scratch, keyLength);
+    int recordSize = HEADER + keyLength + STATS * Long.BYTES;
+    if (recordSize > recordBytes) {
+      throw new IllegalArgumentException(
+        String.format("Group key of %d bytes does not fit in the memory budget", keyLength));
+    }
+    if (records == null) {
+      slots = ByteBuffer.allocateDirect(slotCount * Integer.BYTES).asIntBuffer();
+      records = ByteBuffer.allocateDirect(recordBytes);
+    }
+
+    int slot = find(hash, keyLength);
+    int offset = slots.get(slot) - 1;
+    if (offset < 0) {
+      if (records.position() + recordSize > records.capacity() || (entries + 1) * 2 > slots.capacity()) {
+        spill();
+        slot = find(hash, keyLength);
+      }
+      offset = records.position();
+      records.putInt(hash).putInt(keyLength).put(scratch, 0, keyLength);
+      for (int s = 0; s < STATS; s++) {
+        records.putLong(0);
+      }
+      slots.put(slot, offset + 1);
+      entries++;
+    }
+
+    int stats = offset + HEADER + keyLength;
+    increment(stats + COUNT * Long.BYTES, 1);
+    if (bytes >= 0) {
+      addValue(stats, BYTES_COUNT, BYTES_SUM, BYTES_MIN, BYTES_MAX, bytes);
+    }
+    if (nanos >= 0) {
+      addValue(stats, NANOS_COUNT, NANOS_SUM, NANOS_MIN, NANOS_MAX, nanos);
+    }
+  }
+
+  /**
+   * @return number of run files spilled so far
+   */
+  int spillCount() {
+    return runs.size();
+  }
+
+  /**
+   * Merges every run into one file of distinct groups, and deletes the other run files. The
+   * memory budget is released, and the store can take new rows afterwards.
+   *
+   * @param toRow builds an output row from a group's key values and statistics
+   * @return the groups ordered by encoded key, read from the merged file when accessed
+   * @throws UncheckedIOException if the runs cannot be merged
+   */
+  List<Row> finish(BiFunction<Object[], long[], Row> toRow) {
+    closeResult();
+    try {
+      if (entries > 0) {
+        spill();
+      }
+      records = null;
+      slots = null;
+      // Merge in passes of at most fanIn runs, so that few files are open at once, until one is left
+      while (runs.size() > 1) {
+        Path run = createRun();
+        runs.add(run);
+        List<Path> pass = runs.subList(0, Math.min(fanIn, runs.size() - 1));
+        int[] groups = new int[1];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+          merge(pass, (key, stats) -> {
+            writeRecord(out, key, key.length, stats);
+            groups[0]++;
+          });
+        }
+        for (Path merged : pass) {
+          Files.delete(merged);
+        }
+        pass.clear();
+        if (runs.size() == 1) {
+          result = new SpilledGroups(run, groups[0], toRow);
+        }
+      }
+      if (runs.isEmpty()) {
+        return Collections.emptyList();
+      }
+      if (result == null) {
+        // A single run has distinct keys already
+        result = new SpilledGroups(runs.get(0), countGroups(runs.get(0)), toRow);
+      }
+      runs.clear();
+      return result;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to merge aggregate-stats spill files", e);
+    } finally {
+      deleteRuns();
+    }
+  }
+
+  /**
+   * Releases the memory budget and deletes every run file, including that of the last result.
+   */
+  @Override
+  public void close() {
+    records = null;
+    slots = null;
+    entries = 0;
+    closeResult();
+    deleteRuns();
+  }
+
+  private void closeResult() {
+    if (result != null) {
+      result.close();
+      try {
+        Files.deleteIfExists(result.run);
+      } catch (IOException e) {
+        // Nothing more can be done about a temporary file that cannot be deleted
+      }
+      result = null;
+    }
+  }
+
+  private static int countGroups(Path run) throws IOException {
+    int groups = 0;
+    try (RunReader reader = new RunReader(run)) {
+      while (reader.next()) {
+        groups++;
+      }
+    }
+    return groups;
+  }
+
+  private void deleteRuns() {
+    for (Path run : runs) {
+      try {
+        Files.deleteIfExists(run);
+      } catch (IOException e) {
+        // Nothing more can be done about a temporary file that cannot be deleted
+      }
+    }
+    runs.clear();
+  }
+
+  private Path createRun() throws IOException {
+    return Files.createTempFile(spillDirectory, "aggregate-stats-spill", ".run");
+  }
+
+  /**
+   * Merges sorted runs, combining the statistics of equal keys, and passes each group to the sink
+   * in key order. The statistics array is reused from group to group.
+   */
+  private static void merge(List<Path> runs, GroupSink sink) throws IOException {
+    PriorityQueue<RunReader> queue = new PriorityQueue<>((a, b) -> Arrays.compareUnsigned(a.key, b.key));
+    List<RunReader> readers = new ArrayList<>(runs.size());
+    try {
+      for (Path run : runs) {
+        RunReader reader = new RunReader(run);
+        readers.add(reader);
+        if (reader.next()) {
+          queue.add(reader);
+        }
+      }
+      long[] stats = new long[STATS];
+      while (!queue.isEmpty()) {
+        RunReader head = queue.poll();
+        byte[] key = head.key;
+        System.arraycopy(head.stats, 0, stats, 0, STATS);
+        advance(queue, head);
+        while (!queue.isEmpty() && Arrays.equals(queue.peek().key, key)) {
+          RunReader same = queue.poll();
+          combine(stats, same.stats);
+          advance(queue, same);
+        }
+        sink.accept(key, stats);
+      }
+    } finally {
+      for (RunReader reader : readers) {
+        reader.close();
+      }
+    }
+  }
+
+  private int encodeKey(Row row, String[] keyColumns) {
+    int length = 0;
+    for (String column : keyColumns) {
+      Object value = row.getValue(column);
+      if (value == null) {
+        length = ensure(length, Integer.BYTES);
+        length = putInt(length, -1);
+        continue;
+      }
+      CharSequence text = value instanceof CharSequence ? (CharSequence) value : value.toString();
+      int lengthAt = length;
+      length = ensure(length, Integer.BYTES + text.length() * 3);
+      length += Integer.BYTES;
+      for (int i = 0; i < text.length(); i++) {
+        char c = text.charAt(i);
+        if (c < 0x80) {
+          scratch[length++] = (byte) c;
+        } else if (c < 0x800) {
+          scratch[length++] = (byte) (0xC0 | (c >> 6));
+          scratch[length++] = (byte) (0x80 | (c & 0x3F));
+        } else {
+          // Surrogates are encoded individually; the encoding only has to be consistent
+          scratch[length++] = (byte) (0xE0 | (c >> 12));
+          scratch[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+          scratch[length++] = (byte) (0x80 | (c & 0x3F));
+        }
+      }
+      putInt(lengthAt, length - lengthAt - Integer.BYTES);
+    }
+    return length;
+  }
+
+  private int ensure(int length, int extra) {
+    if (length + extra > scratch.length) {
+      scratch = Arrays.copyOf(scratch, Math.max(scratch.length * 2, length + extra));
+    }
+    return length;
+  }
+
+  private int putInt(int at, int value) {
+    scratch[at] = (byte) (value >>> 24);
+    scratch[at + 1] = (byte) (value >>> 16);
+    scratch[at + 2] = (byte) (value >>> 8);
+    scratch[at + 3] = (byte) value;
+    return at + Integer.BYTES;
+  }
+
+  private Object[] decodeKey(byte[] key) {
+    Object[] values = new Object[keyCount];
+    ByteBuffer buffer = ByteBuffer.wrap(key);
+    for (int k = 0; k < keyCount; k++) {
+      int length = buffer.getInt();
+      if (length >= 0) {
+        values[k] = new String(key, buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+      }
+    }
+    return values;
+  }
+
+  private static int hash(byte[] key, int length) {
+    int h = 1;
+    for (int i = 0; i < length; i++) {
+      h = 31 * h + key[i];
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private int find(int hash, int keyLength) {
+    for (int slot = hash & slotMask; ; slot = (slot + 1) & slotMask) {
+      int entry = slots.get(slot);
+      if (entry == 0 || keyEquals(entry - 1, hash, keyLength)) {
+        return slot;
+      }
+    }
+  }
+
+  private boolean keyEquals(int offset, int hash, int keyLength) {
+    if (records.getInt(offset) != hash || records.getInt(offset + Integer.BYTES) != keyLength) {
+      return false;
+    }
+    int key = offset + HEADER;
+    for (int i = 0; i < keyLength; i++) {
+      if (records.get(key + i) != scratch[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void increment(int at, long delta) {
+    records.putLong(at, records.getLong(at) + delta);
+  }
+
+  private void addValue(int stats, int count, int sum, int min, int max, long value) {
+    long seen = records.getLong(stats + count * Long.BYTES);
+    if (seen == 0) {
+      records.putLong(stats + min * Long.BYTES, value);
+      records.putLong(stats + max * Long.BYTES, value);
+    } else {
+      minimum(stats + min * Long.BYTES, value);
+      maximum(stats + max * Long.BYTES, value);
+    }
+    records.putLong(stats + count * Long.BYTES, seen + 1);
+    increment(stats + sum * Long.BYTES, value);
+  }
+
+  private void minimum(int at, long value) {
+    if (value < records.getLong(at)) {
+      records.putLong(at, value);
+    }
+  }
+
+  private void maximum(int at, long value) {
+    if (value > records.getLong(at)) {
+      records.putLong(at, value);
+    }
+  }
+
+  /**
+   * Sorts the in-memory records by key and writes them to a new run file, then empties the buffers.
+   */
+  private void spill() {
+    // Pack the occupied slots to the front, then heap sort them in place by key
+    int count = 0;
+    for (int slot = 0; slot < slots.capacity(); slot++) {
+      int entry = slots.get(slot);
+      if (entry != 0) {
+        slots.put(slot, 0);
+        slots.put(count++, entry);
+      }
+    }
+    for (int i = count / 2 - 1; i >= 0; i--) {
+      siftDown(i, count);
+    }
+    for (int end = count - 1; end > 0; end--) {
+      swap(0, end);
+      siftDown(0, end);
+    }
+
+    try {
+      Path run = createRun();
+      runs.add(run);
+      long[] stats = new long[STATS];
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+        for (int i = 0; i < count; i++) {
+          int offset = slots.get(i) - 1;
+          int keyLength = records.getInt(offset + Integer.BYTES);
+          int statsAt = offset + HEADER + keyLength;
+          for (int s = 0; s < STATS; s++) {
+            stats[s] = records.getLong(statsAt + s * Long.BYTES);
+          }
+          out.writeInt(keyLength);
+          for (int b = 0; b < keyLength; b++) {
+            out.write(records.get(offset + HEADER + b));
+          }
+          for (long stat : stats) {
+            UnitCodec.writeVarLong(out, stat);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to spill aggregate-stats groups", e);
+    }
+
+    for (int i = 0; i < count; i++) {
+      slots.put(i, 0);
+    }
+    records.clear();
+    entries = 0;
+  }
+
+  private void siftDown(int root, int size) {
+    while (true) {
+      int child = 2 * root + 1;
+      if (child >= size) {
+        return;
+      }
+      if (child + 1 < size && compareKeys(slots.get(child + 1), slots.get(child)) > 0) {
+        child++;
+      }
+      if (compareKeys(slots.get(root), slots.get(child)) >= 0) {
+        return;
+      }
+      swap(root, child);
+      root = child;
+    }
+  }
+
+  private void swap(int i, int j) {
+    int tmp = slots.get(i);
+    slots.put(i, slots.get(j));
+    slots.put(j, tmp);
+  }
+
+  /**
+   * Compares the keys of two records, given as offset + 1, in unsigned lexicographic order.
+   */
+  private int compareKeys(int left, int right) {
+    int leftLength = records.getInt(left - 1 + Integer.BYTES);
+    int rightLength = records.getInt(right - 1 + Integer.BYTES);
+    int leftKey = left - 1 + HEADER;
+    int rightKey = right - 1 + HEADER;
+    for (int i = 0; i < Math.min(leftLength, rightLength); i++) {
+      int cmp = Integer.compare(records.get(leftKey + i) & 0xFF, records.get(rightKey + i) & 0xFF);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return Integer.compare(leftLength, rightLength);
+  }
+
+  private static void combine(long[] into, long[] other) {
+    into[COUNT] += other[COUNT];
+    combine(into, other, BYTES_COUNT, BYTES_SUM, BYTES_MIN, BYTES_MAX);
+    combine(into, other, NANOS_COUNT, NANOS_SUM, NANOS_MIN, NANOS_MAX);
+  }
+
+  private static void combine(long[] into, long[] other, int count, int sum, int min, int max) {
+    if (other[count] == 0) {
+      return;
+    }
+    boolean first = into[count] == 0;
+    into[min] = first ? other[min] : Math.min(into[min], other[min]);
+    into[max] = first ? other[max] : Math.max(into[max], other[max]);
+    into[count] += other[count];
+    into[sum] += other[sum];
+  }
+
+  private static void advance(PriorityQueue<RunReader> queue, RunReader reader) throws IOException {
+    if (reader.next()) {
+      queue.add(reader);
+    }
+  }
+
+  private static void writeRecord(DataOutputStream out, byte[] key, int keyLength, long[] stats) throws IOException {
+    out.writeInt(keyLength);
+    out.write(key, 0, keyLength);
+    for (long stat : stats) {
+      UnitCodec.writeVarLong(out, stat);
+    }
+  }
+
+  /**
+   * Sequential reader of a run file.
+   */
+  private static final class RunReader implements Closeable {
+    private final DataInputStream in;
+    private final long[] stats = new long[STATS];
+    private byte[] key;
+
+    private RunReader(Path run) throws IOException {
+      this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)));
+    }
+
+    private boolean next() throws IOException {
+      int keyLength;
+      try {
+        keyLength = in.readInt();
+      } catch (EOFException e) {
+        return false;
+      }
+      key = new byte[keyLength];
+      in.readFully(key);
+      for (int s = 0; s < STATS; s++) {
+        stats[s] = UnitCodec.readVarLong(in);
+      }
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  /**
+   * Receives the merged groups.
+   */
+  private interface GroupSink {
+    void accept(byte[] key, long[] stats) throws IOException;
+  }
+
+  /**
+   * Read-only list of the groups in a merged run file. A reader is kept at the next group, so reading
+   * in order is sequential; going back reopens the file. Rows are built when they are read.
+   */
+  private final class SpilledGroups extends AbstractList<Row> {
+    private final Path run;
+    private final int size;
+    private final BiFunction<Object[], long[], Row> toRow;
+    private RunReader reader;
+    // Index of the group the reader returns next
+    private int next;
+
+    private SpilledGroups(Path run, int size, BiFunction<Object[], long[], Row> toRow) {
+      this.run = run;
+      this.size = size;
+      this.toRow = toRow;
+    }
+
+    @Override
+    public Row get(int index) {
+      Objects.checkIndex(index, size);
+      try {
+        if (reader == null || index < next) {
+          close();
+          reader = new RunReader(run);
+        }
+        while (next <= index) {
+          reader.next();
+          next++;
+        }
+        Row row = toRow.apply(decodeKey(reader.key), reader.stats.clone());
+        if (next == size) {
+          close();
+        }
+        return row;
+      } catch (IOException e) {
+        throw new UncheckedIOException("Failed to read aggregate-stats spill file", e);
+      }
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    private void close() {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (IOException e) {
+          // The file is only read
+        }
+        reader = null;
+      }
+      next = 0;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe totals for a directive instance shared by several worker threads.
+ *
+ * <p>Every counter is a {@link LongAdder}, which spreads concurrent updates over per-thread
+ * cells instead of contending on one field. Callers accumulate each batch into a thread-confined
+ * {@link AggregateStatsState} and fold it in with {@link #add(AggregateStatsState)}, so there are
+ * four adder updates per batch rather than per row. {@link #snapshot()} sums the cells; it is exact
+ * once all writers are done, which is the case when the last batch of a partition is processed.</p>
+ */
+final class StripedAggregateStats {
+  private final LongAdder totalBytes = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final LongAdder rowCount = new LongAdder();
+  private final LongAdder invalidCount = new LongAdder();
+
+  void add(AggregateStatsState batch) {
+    totalBytes.add(batch.getTotalBytes());
+    totalNanos.add(batch.getTotalNanos());
+    rowCount.add(batch.getRowCount());
+    invalidCount.add(batch.getInvalidCount());
+  }
+
+  long rowCount() {
+    return rowCount.sum();
+  }
+
+  AggregateStatsState snapshot() {
+    return new AggregateStatsState(totalBytes.sum(), totalNanos.sum(), rowCount.sum(), invalidCount.sum());
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import io.cdap.cdap.api.annotation.Description;
+import io.cdap.cdap.api.annotation.Name;
+import io.cdap.cdap.api.annotation.Plugin;
+import io.cdap.wrangler.api.Arguments;
+import io.cdap.wrangler.api.Directive;
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.ErrorRowException;
+import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ParseStatus;
+import io.cdap.wrangler.api.parser.Token;
+import io.cdap.wrangler.api.parser.TokenType;
+import io.cdap.wrangler.api.parser.UsageDefinition;
+import io.cdap.wrangler.core.columnar.ColumnPositions;
+import io.cdap.wrangler.core.directives.DirectiveArguments;
+import io.cdap.wrangler.core.metrics.DirectiveMetrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Directive keeping the {@code k} rows with the largest byte size or time duration.
+ *
+ * <p>The column is read as {@code bytes} or {@code duration}, as given by the third argument;
+ * cells typed by {@code parse-as-bytes} or {@code parse-as-duration} are used without parsing.
+ * Each worker thread ranks its rows in a {@link BoundedTopK} heap, so memory is {@code O(k)} and a
+ * row costs {@code O(log k)} at most. The input rows are consumed, and the last batch emits the
+ * {@code k} largest rows, unchanged, from largest to smallest; ties keep arrival order within a
+ * worker. Rows with a null cell are not ranked. To rank rows alongside the totals, use the
+ * {@value AggregateStatsDirective#TOP_OPTION} option of {@code aggregate-stats} instead.</p>
+ *
+ * <p>The optional error mode is that of {@code aggregate-stats}. Rows with an invalid cell are
+ * never ranked: {@code fail} aborts execution, {@code error} routes the row to the error
+ * collector, and {@code skip} and {@code count} drop it, counted by {@link #getInvalidCount()}.
+ * Batch metrics are published through {@link DirectiveMetrics}.</p>
+ */
+@Plugin(type = Directive.TYPE)
+@Name("top-k")
+@Description("Keeps the k rows with the largest byte size or time duration.")
+public class TopKDirective implements Directive {
+  public static final String NAME = "top-k";
+  private String column;
+  private int k;
+  private boolean durations;
+  private AggregateStatsDirective.OnError onError;
+  private LongAdder invalidCount;
+  private ThreadLocal<BoundedTopK<Row>> threadHeap;
+  private Queue<BoundedTopK<Row>> heaps;
+  private DirectiveMetrics metrics;
+
+  @Override
+  public UsageDefinition define() {
+    UsageDefinition.Builder builder = UsageDefinition.builder(NAME);
+    builder.define("column", TokenType.COLUMN);
+    builder.define("k", TokenType.NUMERIC);
+    builder.define("kind", TokenType.IDENTIFIER);
+    builder.define("onError", TokenType.IDENTIFIER, true);
+    return builder.build();
+  }
+
+  @Override
+  public void initialize(Arguments args) throws DirectiveParseException {
+    this.column = DirectiveArguments.text(args, "column");
+    Token count = args.value("k");
+    long requested = ((Number) count.value()).longValue();
+    if (requested < 1 || requested > BoundedTopK.MAX_K) {
+      throw new DirectiveParseException(
+        NAME, String.format("The number of rows must be between 1 and %d, got %d.", BoundedTopK.MAX_K, requested));
+    }
+    this.k = (int) requested;
+    String kind = DirectiveArguments.text(args, "kind");
+    if (!kind.equalsIgnoreCase("bytes") && !kind.equalsIgnoreCase("duration")) {
+      throw new DirectiveParseException(NAME, String.format("Invalid kind '%s'. Expected bytes or duration.", kind));
+    }
+    this.durations = kind.equalsIgnoreCase("duration");
+    this.onError = AggregateStatsDirective.OnError.parse(NAME, args, "onError");
+    this.invalidCount = new LongAdder();
+    this.metrics = new DirectiveMetrics(NAME);
+    int size = k;
+    Queue<BoundedTopK<Row>> registered = new ConcurrentLinkedQueue<>();
+    this.heaps = registered;
+    this.threadHeap = ThreadLocal.withInitial(() -> {
+      BoundedTopK<Row> heap = new BoundedTopK<>(size);
+      registered.add(heap);
+      return heap;
+    });
+  }
+
+  @Override
+  public List<Row> execute(List<Row> rows, ExecutorContext context)
+    throws DirectiveExecutionException, ErrorRowException {
+    long start = metrics.start(context);
+    BoundedTopK<Row> heap = threadHeap.get();
+    int batchInvalid = 0;
+    ColumnPositions positions = new ColumnPositions(column);
+    for (int i = 0; i < rows.size(); i++) {
+      Row row = rows.get(i);
+      int position = positions.resolve(row).position(0);
+      Object value = position < 0 ? null : row.getValue(position);
+      if (value == null) {
+        continue;
+      }
+      long key = durations ? UnitCells.nanos(value) : UnitCells.bytes(value);
+      if (key < 0) {
+        if (onError == AggregateStatsDirective.OnError.FAIL) {
+          throw new DirectiveExecutionException(
+            String.format("Invalid value in row %d of column '%s': %s: %s",
+                          i + 1, column, ParseStatus.describe(key), value));
+        }
+        invalidCount.increment();
+        batchInvalid++;
+        continue;
+      }
+      heap.offer(key, row);
+    }
+    metrics.finish(context, start, rows.size(), batchInvalid);
+
+    if (context.isLast()) {
+      BoundedTopK<Row> merged = new BoundedTopK<>(k);
+      for (BoundedTopK<Row> perThread : heaps) {
+        merged.combine(perThread);
+      }
+      return merged.sorted();
+    }
+
+    if (onError == AggregateStatsDirective.OnError.ERROR && batchInvalid > 0) {
+      throw new ErrorRowException(NAME, String.format("Invalid value in column '%s'", column), 1);
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * @return number of invalid cells seen since {@link #initialize(Arguments)}
+   */
+  public long getInvalidCount() {
+    return invalidCount.sum();
+  }
+}
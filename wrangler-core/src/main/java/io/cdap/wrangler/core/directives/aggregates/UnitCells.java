@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import io.cdap.wrangler.api.parser.ByteSize;
+import io.cdap.wrangler.api.parser.ParseStatus;
+import io.cdap.wrangler.api.parser.RangeParser;
+import io.cdap.wrangler.api.parser.TimeDuration;
+import io.cdap.wrangler.core.columnar.ColumnVector;
+
+/**
+ * Reads byte and nanosecond values from row cells.
+ *
+ * <p>Cells already typed by {@code parse-as-bytes} or {@code parse-as-duration} hold a
+ * {@link Long} and are used as is; {@link ByteSize} and {@link TimeDuration} cells give their exact
+ * value; anything else is parsed as text. Null cells count as 0, and failures are returned as
+ * negative {@link ParseStatus} codes. {@link #values(ColumnVector, RangeParser)} does the same for
+ * a whole column vector.</p>
+ */
+final class UnitCells {
+
+  private UnitCells() {
+  }
+
+  static long bytes(Object cell) {
+    if (cell == null) {
+      return 0;
+    } else if (cell instanceof Long || cell instanceof Integer) {
+      return typed(((Number) cell).longValue());
+    } else if (cell instanceof ByteSize) {
+      return ((ByteSize) cell).getBytes();
+    }
+    CharSequence text = asCharSequence(cell);
+    return ByteSize.tryParseBytes(text, 0, text.length());
+  }
+
+  static long nanos(Object cell) {
+    if (cell == null) {
+      return 0;
+    } else if (cell instanceof Long || cell instanceof Integer) {
+      return typed(((Number) cell).longValue());
+    } else if (cell instanceof TimeDuration) {
+      try {
+        return ((TimeDuration) cell).getNanos();
+      } catch (ArithmeticException e) {
+        return ParseStatus.OUT_OF_RANGE;
+      }
+    }
+    CharSequence text = asCharSequence(cell);
+    return TimeDuration.tryParseNanos(text, 0, text.length());
+  }
+
+  /**
+   * @return the value of every cell, 0 for nulls, or a negative {@link ParseStatus} code
+   */
+  static long[] values(ColumnVector vector, RangeParser parser) {
+    long[] values = new long[vector.size()];
+    values(vector, parser, 0, values.length, values);
+    return values;
+  }
+
+  /**
+   * Reads the cells {@code [from, to)} of a vector into {@code values}, starting at index 0.
+   */
+  static void values(ColumnVector vector, RangeParser parser, int from, int to, long[] values) {
+    if (vector.isLong()) {
+      long[] longs = vector.longs();
+      for (int i = from; i < to; i++) {
+        values[i - from] = vector.isNull(i) ? 0 : typed(longs[i]);
+      }
+      return;
+    }
+    CharSequence[] texts = vector.texts();
+    long[] longs = vector.longs();
+    for (int i = from; i < to; i++) {
+      CharSequence text = texts[i];
+      if (text != null) {
+        values[i - from] = parser.parse(text, 0, text.length());
+      } else {
+        // A typed cell of a mixed column is used as is, as in a long column
+        values[i - from] = longs != null && vector.isLong(i) ? typed(longs[i]) : 0;
+      }
+    }
+  }
+
+  private static long typed(long value) {
+    return value < 0 ? ParseStatus.NEGATIVE : value;
+  }
+
+  private static CharSequence asCharSequence(Object value) {
+    return value instanceof CharSequence ? (CharSequence) value : value.toString();
+  }
+}
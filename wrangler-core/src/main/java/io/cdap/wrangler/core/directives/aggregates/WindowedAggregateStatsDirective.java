@@ -0,0 +1,231 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import io.cdap.cdap.api.annotation.Description;
+import io.cdap.cdap.api.annotation.Name;
+import io.cdap.cdap.api.annotation.Plugin;
+import io.cdap.wrangler.api.Arguments;
+import io.cdap.wrangler.api.Directive;
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ParseStatus;
+import io.cdap.wrangler.api.parser.Text;
+import io.cdap.wrangler.api.parser.TimeDuration;
+import io.cdap.wrangler.api.parser.Token;
+import io.cdap.wrangler.api.parser.TokenType;
+import io.cdap.wrangler.api.parser.UsageDefinition;
+import io.cdap.wrangler.core.columnar.ColumnPositions;
+import io.cdap.wrangler.core.directives.DirectiveArguments;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Directive for aggregating byte sizes and time durations over event-time windows.
+ *
+ * <p>Rows are assigned to windows by a timestamp column holding epoch milliseconds, a
+ * {@link Date}, an {@link Instant}, a {@link ZonedDateTime} or an ISO-8601 instant string.
+ * Windows are tumbling by default; a slide shorter than the window, given in the optional options
+ * argument as {@code 'slide=10s'}, makes them overlap. Both are written as duration literals,
+ * e.g. {@code 1m} and {@code 10s}. The watermark is the
+ * largest timestamp seen so far, and every window ending at or before it is emitted right away,
+ * so only the open windows are kept in memory. The input rows are consumed; the remaining
+ * windows are emitted with the last batch.</p>
+ *
+ * <p>Each window row holds {@code window_start} and {@code window_end} in epoch milliseconds, the
+ * row {@code count}, the total size in MB and time in seconds, and the size throughput in MB per
+ * second of window in the total size column suffixed with {@code _per_sec}. Rows arriving for
+ * windows that were already emitted are dropped and counted by {@link #getLateCount()}. Batches
+ * are processed one at a time, since windows close in event-time order.</p>
+ */
+@Plugin(type = Directive.TYPE)
+@Name("aggregate-stats-window")
+@Description("Aggregates byte sizes and time durations over tumbling or sliding event-time windows.")
+public class WindowedAggregateStatsDirective implements Directive {
+  public static final String NAME = "aggregate-stats-window";
+  public static final String WINDOW_START_COLUMN = "window_start";
+  public static final String WINDOW_END_COLUMN = "window_end";
+  public static final String COUNT_COLUMN = "count";
+  public static final String SLIDE_OPTION = "slide";
+  private String timestampColumn;
+  private String byteSizeColumn;
+  private String timeDurationColumn;
+  private String totalSizeColumn;
+  private String totalTimeColumn;
+  private long windowMillis;
+  private long slideMillis;
+  private TreeMap<Long, AggregateStatsState> openWindows;
+  private long watermark;
+  private long lateCount;
+  private ColumnPositions positions;
+
+  @Override
+  public UsageDefinition define() {
+    UsageDefinition.Builder builder = UsageDefinition.builder(NAME);
+    builder.define("timestampColumn", TokenType.COLUMN);
+    builder.define("byteSizeColumn", TokenType.COLUMN);
+    builder.define("timeDurationColumn", TokenType.COLUMN);
+    builder.define("totalSizeColumn", TokenType.COLUMN);
+    builder.define("totalTimeColumn", TokenType.COLUMN);
+    builder.define("windowSize", TokenType.TIME_DURATION);
+    builder.define("options", TokenType.TEXT, true);
+    return builder.build();
+  }
+
+  @Override
+  public void initialize(Arguments args) throws DirectiveParseException {
+    this.timestampColumn = DirectiveArguments.text(args, "timestampColumn");
+    this.byteSizeColumn = DirectiveArguments.text(args, "byteSizeColumn");
+    this.timeDurationColumn = DirectiveArguments.text(args, "timeDurationColumn");
+    this.totalSizeColumn = DirectiveArguments.text(args, "totalSizeColumn");
+    this.totalTimeColumn = DirectiveArguments.text(args, "totalTimeColumn");
+    Map<String, String> options = DirectiveArguments.options(NAME, args, "options", SLIDE_OPTION);
+    this.windowMillis = durationMillis("windowSize", args.value("windowSize"));
+    this.slideMillis = windowMillis;
+    if (options.containsKey(SLIDE_OPTION)) {
+      this.slideMillis = durationMillis(SLIDE_OPTION, new Text(options.get(SLIDE_OPTION)));
+      if (slideMillis > windowMillis) {
+        throw new DirectiveParseException(
+          NAME, String.format("Slide of %d ms must not be longer than the window of %d ms.",
+                              slideMillis, windowMillis));
+      }
+    }
+    this.openWindows = new TreeMap<>();
+    this.watermark = Long.MIN_VALUE;
+    this.lateCount = 0;
+    // Execution is synchronized, so the positions carry over from batch to batch
+    this.positions = new ColumnPositions(timestampColumn, byteSizeColumn, timeDurationColumn);
+  }
+
+  @Override
+  public synchronized List<Row> execute(List<Row> rows, ExecutorContext context)
+    throws DirectiveExecutionException {
+    for (int i = 0; i < rows.size(); i++) {
+      Row row = rows.get(i);
+      positions.resolve(row);
+      long timestamp = timestampMillis(positions.value(row, 0), i);
+
+      Object sizeObj = positions.value(row, 1);
+      Object timeObj = positions.value(row, 2);
+      long bytes = UnitCells.bytes(sizeObj);
+      long nanos = UnitCells.nanos(timeObj);
+      if ((bytes | nanos) < 0) {
+        long status = bytes < 0 ? bytes : nanos;
+        Object value = bytes < 0 ? sizeObj : timeObj;
+        throw new DirectiveExecutionException(
+          String.format("Invalid format in row %d: %s: %s", i + 1, ParseStatus.describe(status), value));
+      }
+
+      // Windows containing the timestamp start at multiples of the slide in (timestamp - window, timestamp]
+      boolean added = false;
+      long last = Math.floorDiv(timestamp, slideMillis) * slideMillis;
+      for (long start = last; start > timestamp - windowMillis; start -= slideMillis) {
+        if (start + windowMillis > watermark) {
+          openWindows.computeIfAbsent(start, s -> new AggregateStatsState()).add(bytes, nanos);
+          added = true;
+        }
+      }
+      if (!added) {
+        lateCount++;
+      }
+      watermark = Math.max(watermark, timestamp);
+    }
+
+    List<Row> results = Collections.emptyList();
+    while (!openWindows.isEmpty()
+      && (context.isLast() || openWindows.firstKey() + windowMillis <= watermark)) {
+      if (results.isEmpty()) {
+        results = new ArrayList<>();
+      }
+      Map.Entry<Long, AggregateStatsState> window = openWindows.pollFirstEntry();
+      results.add(toRow(window.getKey(), window.getValue()));
+    }
+    return results;
+  }
+
+  /**
+   * @return number of rows dropped because all their windows had already been emitted
+   */
+  public synchronized long getLateCount() {
+    return lateCount;
+  }
+
+  /**
+   * @return number of windows waiting for the watermark to pass them
+   */
+  public synchronized int getOpenWindowCount() {
+    return openWindows.size();
+  }
+
+  private Row toRow(long start, AggregateStatsState state) {
+    Row row = new Row(WINDOW_START_COLUMN, start);
+    row.add(WINDOW_END_COLUMN, start + windowMillis);
+    row.add(COUNT_COLUMN, state.getRowCount());
+    Row totals = state.toRow(totalSizeColumn, totalTimeColumn, null);
+    for (int i = 0; i < totals.width(); i++) {
+      row.add(totals.getColumn(i), totals.getValue(i));
+    }
+    row.add(totalSizeColumn + "_per_sec", (Double) totals.getValue(totalSizeColumn) / (windowMillis / 1000.0));
+    return row;
+  }
+
+  private long timestampMillis(Object value, int index) throws DirectiveExecutionException {
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    } else if (value instanceof Date) {
+      return ((Date) value).getTime();
+    } else if (value instanceof Instant) {
+      return ((Instant) value).toEpochMilli();
+    } else if (value instanceof ZonedDateTime) {
+      return ((ZonedDateTime) value).toInstant().toEpochMilli();
+    } else if (value != null) {
+      String text = value.toString().trim();
+      try {
+        return text.chars().allMatch(Character::isDigit) && !text.isEmpty()
+          ? Long.parseLong(text) : Instant.parse(text).toEpochMilli();
+      } catch (NumberFormatException | DateTimeParseException e) {
+        // Reported below
+      }
+    }
+    throw new DirectiveExecutionException(
+      String.format("Invalid timestamp in row %d of column '%s': %s", index + 1, timestampColumn, value));
+  }
+
+  private static long durationMillis(String name, Token token) throws DirectiveParseException {
+    Object value = token instanceof TimeDuration ? token : token.value();
+    long millis;
+    try {
+      millis = DirectiveArguments.timeDuration(token).toMillis();
+    } catch (IllegalArgumentException e) {
+      throw new DirectiveParseException(NAME, String.format("Invalid %s '%s': %s", name, value, e.getMessage()));
+    }
+    if (millis <= 0) {
+      throw new DirectiveParseException(NAME, String.format("The %s '%s' must be positive.", name, value));
+    }
+    return millis;
+  }
+}
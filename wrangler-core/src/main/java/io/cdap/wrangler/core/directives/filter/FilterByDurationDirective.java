@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.directives.filter;
+
+import io.cdap.cdap.api.annotation.Description;
+import io.cdap.cdap.api.annotation.Name;
+import io.cdap.cdap.api.annotation.Plugin;
+import io.cdap.wrangler.api.Directive;
+import io.cdap.wrangler.api.parser.Token;
+import io.cdap.wrangler.api.parser.TokenType;
+import io.cdap.wrangler.api.parser.UnitThreshold;
+import io.cdap.wrangler.core.directives.DirectiveArguments;
+
+/**
+ * Directive keeping the rows whose time duration compares to a threshold, e.g.
+ * {@code filter-by-duration :response_time gt 500ms}. Durations are compared in nanoseconds.
+ */
+@Plugin(type = Directive.TYPE)
+@Name("filter-by-duration")
+@Description("Keeps the rows whose time duration is less than, greater than or equal to a threshold.")
+public class FilterByDurationDirective extends UnitFilterDirective {
+  public static final String NAME = "filter-by-duration";
+
+  public FilterByDurationDirective() {
+    super(NAME, TokenType.TIME_DURATION);
+  }
+
+  @Override
+  protected long thresholdValue(Token token) {
+    return DirectiveArguments.timeDuration(token).getNanos();
+  }
+
+  @Override
+  protected UnitThreshold createThreshold(UnitThreshold.Comparison comparison, long threshold) {
+    return UnitThreshold.nanos(comparison, threshold);
+  }
+}
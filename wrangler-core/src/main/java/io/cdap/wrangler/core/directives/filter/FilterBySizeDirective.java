@@ -0,0 +1,52 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.directives.filter;
+
+import io.cdap.cdap.api.annotation.Description;
+import io.cdap.cdap.api.annotation.Name;
+import io.cdap.cdap.api.annotation.Plugin;
+import io.cdap.wrangler.api.Directive;
+import io.cdap.wrangler.api.parser.Token;
+import io.cdap.wrangler.api.parser.TokenType;
+import io.cdap.wrangler.api.parser.UnitThreshold;
+import io.cdap.wrangler.core.directives.DirectiveArguments;
+
+/**
+ * Directive keeping the rows whose byte size compares to a threshold, e.g.
+ * {@code filter-by-size :data_size ge 1MB}.
+ */
+@Plugin(type = Directive.TYPE)
+@Name("filter-by-size")
+@Description("Keeps the rows whose byte size is less than, greater than or equal to a threshold.")
+public class FilterBySizeDirective extends UnitFilterDirective {
+  public static final String NAME = "filter-by-size";
+
+  public FilterBySizeDirective() {
+    super(NAME, TokenType.BYTE_SIZE);
+  }
+
+  @Override
+  protected long thresholdValue(Token token) {
+    return DirectiveArguments.byteSize(token).getBytes();
+  }
+
+  @Override
+  protected UnitThreshold createThreshold(UnitThreshold.Comparison comparison, long threshold) {
+    return UnitThreshold.bytes(comparison, threshold);
+  }
+}
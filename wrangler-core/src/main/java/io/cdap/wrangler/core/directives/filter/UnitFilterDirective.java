@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.directives.filter;
+
+import io.cdap.wrangler.api.Arguments;
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.ErrorRowException;
+import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ParseStatus;
+import io.cdap.wrangler.api.parser.Token;
+import io.cdap.wrangler.api.parser.TokenType;
+import io.cdap.wrangler.api.parser.UnitThreshold;
+import io.cdap.wrangler.api.parser.UsageDefinition;
+import io.cdap.wrangler.core.columnar.ColumnPositions;
+import io.cdap.wrangler.core.directives.DirectiveArguments;
+import io.cdap.wrangler.core.directives.aggregates.AggregateStatsDirective.OnError;
+import io.cdap.wrangler.core.fusion.RowLocalDirective;
+import io.cdap.wrangler.core.metrics.DirectiveMetrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Base of the directives that keep the rows whose unit literal compares to a threshold.
+ *
+ * <p>The arguments are the column, a comparison ({@code lt}, {@code le}, {@code gt}, {@code ge},
+ * {@code eq} or {@code ne}) and the threshold literal, which is normalised once when the directive
+ * is initialized. Each cell is then checked by a {@link UnitThreshold}, which settles most cells
+ * from their digit count and unit without computing their value. Cells typed by
+ * {@code parse-as-bytes} or {@code parse-as-duration} are compared directly, and rows with a null
+ * cell are dropped.</p>
+ *
+ * <p>The optional error mode is that of {@code aggregate-stats}: {@code fail} (the default) aborts
+ * execution, {@code error} routes the row to the error collector, and {@code skip} and
+ * {@code count} drop it, counted by {@link #getInvalidCount()}. Batch metrics are published
+ * through {@link DirectiveMetrics}. Rows are filtered one at a time, so consecutive filters can be
+ * fused by {@link io.cdap.wrangler.core.fusion.DirectiveFuser}.</p>
+ */
+public abstract class UnitFilterDirective implements RowLocalDirective {
+  private final String name;
+  private final TokenType thresholdType;
+  private String column;
+  private UnitThreshold threshold;
+  private OnError onError;
+  private LongAdder invalidCount;
+  private DirectiveMetrics metrics;
+
+  protected UnitFilterDirective(String name, TokenType thresholdType) {
+    this.name = name;
+    this.thresholdType = thresholdType;
+  }
+
+  /**
+   * Normalises the threshold argument into bytes or nanoseconds.
+   *
+   * @throws IllegalArgumentException if the argument is not a valid literal
+   */
+  protected abstract long thresholdValue(Token token);
+
+  /**
+   * @return the threshold cells are compared with
+   */
+  protected abstract UnitThreshold createThreshold(UnitThreshold.Comparison comparison, long threshold);
+
+  @Override
+  public UsageDefinition define() {
+    UsageDefinition.Builder builder = UsageDefinition.builder(name);
+    builder.define("column", TokenType.COLUMN);
+    builder.define("comparison", TokenType.IDENTIFIER);
+    builder.define("threshold", thresholdType);
+    builder.define("onError", TokenType.IDENTIFIER, true);
+    return builder.build();
+  }
+
+  @Override
+  public void initialize(Arguments args) throws DirectiveParseException {
+    this.column = DirectiveArguments.text(args, "column");
+    String operator = DirectiveArguments.text(args, "comparison");
+    UnitThreshold.Comparison comparison;
+    try {
+      comparison = UnitThreshold.Comparison.valueOf(operator.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new DirectiveParseException(
+        name, String.format("Invalid comparison '%s'. Expected one of lt, le, gt, ge, eq or ne.", operator));
+    }
+    Token token = args.value("threshold");
+    try {
+      this.threshold = createThreshold(comparison, thresholdValue(token));
+    } catch (IllegalArgumentException e) {
+      throw new DirectiveParseException(name, String.format("Invalid threshold '%s': %s", token, e.getMessage()));
+    }
+    this.onError = OnError.parse(name, args, "onError");
+    this.invalidCount = new LongAdder();
+    this.metrics = new DirectiveMetrics(name);
+  }
+
+  @Override
+  public Pass begin(ExecutorContext context) {
+    return new FilterPass(metrics.start(context));
+  }
+
+  /**
+   * @return number of invalid cells seen since {@link #initialize(Arguments)}
+   */
+  public long getInvalidCount() {
+    return invalidCount.sum();
+  }
+
+  private final class FilterPass implements Pass {
+    private final ColumnPositions positions = new ColumnPositions(column);
+    private final long start;
+    private int rows;
+    private int invalid;
+
+    FilterPass(long start) {
+      this.start = start;
+    }
+
+    @Override
+    public int apply(Row row) throws DirectiveExecutionException {
+      rows++;
+      int position = positions.resolve(row).position(0);
+      Object value = position < 0 ? null : row.getValue(position);
+      long result;
+      if (value == null) {
+        result = UnitThreshold.NO_MATCH;
+      } else if (value instanceof Long || value instanceof Integer) {
+        long number = ((Number) value).longValue();
+        result = number < 0 ? ParseStatus.NEGATIVE
+          : threshold.matches(number) ? UnitThreshold.MATCH : UnitThreshold.NO_MATCH;
+      } else {
+        CharSequence text = value instanceof CharSequence ? (CharSequence) value : value.toString();
+        result = threshold.test(text, 0, text.length());
+      }
+
+      if (result == UnitThreshold.MATCH) {
+        return KEEP;
+      }
+      if (result == UnitThreshold.NO_MATCH) {
+        return DROP;
+      }
+      if (onError == OnError.FAIL) {
+        throw new DirectiveExecutionException(
+          String.format("Invalid value in row %d of column '%s': %s: %s",
+                        rows, column, ParseStatus.describe(result), value));
+      }
+      invalidCount.increment();
+      invalid++;
+      return onError == OnError.ERROR ? ERROR : DROP;
+    }
+
+    @Override
+    public void end(ExecutorContext context) throws ErrorRowException {
+      metrics.finish(context, start, rows, invalid);
+      if (onError == OnError.ERROR && invalid > 0) {
+        throw new ErrorRowException(name, String.format("Invalid value in column '%s'", column), 1);
+      }
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.parser;
+
+import io.cdap.cdap.api.annotation.Description;
+import io.cdap.cdap.api.annotation.Name;
+import io.cdap.cdap.api.annotation.Plugin;
+import io.cdap.wrangler.api.Directive;
+import io.cdap.wrangler.api.parser.TimeDuration;
+
+/**
+ * Directive that converts a column of durations such as {@code 1h30m} into {@link Long}
+ * nanoseconds.
+ *
+ * <p>Downstream directives such as {@code aggregate-stats} read the typed cells without parsing
+ * them again.</p>
+ */
+@Plugin(type = Directive.TYPE)
+@Name("parse-as-duration")
+@Description("Converts a column of time duration literals into a long column of nanoseconds.")
+public class ParseAsDurationDirective extends UnitColumnDirective {
+  public static final String NAME = "parse-as-duration";
+
+  public ParseAsDurationDirective() {
+    super(NAME);
+  }
+
+  @Override
+  protected long parse(CharSequence value) {
+    return TimeDuration.tryParseNanos(value, 0, value.length());
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.parser;
+
+import io.cdap.wrangler.api.Arguments;
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.ErrorRowException;
+import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ParseStatus;
+import io.cdap.wrangler.api.parser.TokenType;
+import io.cdap.wrangler.api.parser.UsageDefinition;
+import io.cdap.wrangler.core.columnar.ColumnPositions;
+import io.cdap.wrangler.core.directives.DirectiveArguments;
+import io.cdap.wrangler.core.directives.aggregates.AggregateStatsDirective.OnError;
+import io.cdap.wrangler.core.fusion.RowLocalDirective;
+import io.cdap.wrangler.core.metrics.DirectiveMetrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Base of the directives that convert a column of unit literals, in place, into {@link Long} cells.
+ *
+ * <p>Cells that already hold a {@link Long} or {@link Integer} are left as they are, so running the
+ * directive twice is harmless, and null cells stay null. The optional trailing argument takes the
+ * same modes as {@code aggregate-stats}: {@code fail} (the default) aborts execution, {@code skip}
+ * drops the row, {@code count} sets the invalid cell to null and passes the row through, and
+ * {@code error} routes the row to the error collector. {@link #getInvalidCount()} counts the
+ * invalid cells, and batch metrics are published through {@link DirectiveMetrics}. Cells are
+ * converted one row at a time, so the directive can be fused with its neighbours by
+ * {@link io.cdap.wrangler.core.fusion.DirectiveFuser}.</p>
+ */
+public abstract class UnitColumnDirective implements RowLocalDirective {
+  private final String name;
+  private String column;
+  private OnError onError;
+  private LongAdder invalidCount;
+  private DirectiveMetrics metrics;
+
+  protected UnitColumnDirective(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Parses one cell without throwing.
+   *
+   * @return the value, or a negative {@link ParseStatus} code
+   */
+  protected abstract long parse(CharSequence value);
+
+  @Override
+  public UsageDefinition define() {
+    UsageDefinition.Builder builder = UsageDefinition.builder(name);
+    builder.define("column", TokenType.COLUMN);
+    builder.define("onError", TokenType.IDENTIFIER, true);
+    return builder.build();
+  }
+
+  @Override
+  public void initialize(Arguments args) throws DirectiveParseException {
+    this.column = DirectiveArguments.text(args, "column");
+    this.onError = OnError.parse(name, args, "onError");
+    this.invalidCount = new LongAdder();
+    this.metrics = new DirectiveMetrics(name);
+  }
+
+  @Override
+  public Pass begin(ExecutorContext context) {
+    return new ColumnPass(metrics.start(context));
+  }
+
+  /**
+   * @return number of invalid cells seen since {@link #initialize(Arguments)}
+   */
+  public long getInvalidCount() {
+    return invalidCount.sum();
+  }
+
+  private final class ColumnPass implements Pass {
+    private final ColumnPositions positions = new ColumnPositions(column);
+    private final long start;
+    private int rows;
+    private int invalid;
+
+    ColumnPass(long start) {
+      this.start = start;
+    }
+
+    @Override
+    public int apply(Row row) throws DirectiveExecutionException {
+      rows++;
+      int position = positions.resolve(row).position(0);
+      Object value = position < 0 ? null : row.getValue(position);
+      if (value == null || value instanceof Long || value instanceof Integer) {
+        return KEEP;
+      }
+
+      CharSequence text = value instanceof CharSequence ? (CharSequence) value : value.toString();
+      long parsed = parse(text);
+      if (parsed >= 0) {
+        row.setValue(position, parsed);
+        return KEEP;
+      }
+
+      if (onError == OnError.FAIL) {
+        throw new DirectiveExecutionException(
+          String.format("Invalid value in row %d of column '%s': %s: %s",
+                        rows, column, ParseStatus.describe(parsed), value));
+      }
+      invalidCount.increment();
+      invalid++;
+      if (onError == OnError.COUNT) {
+        row.setValue(position, null);
+        return KEEP;
+      }
+      return onError == OnError.ERROR ? ERROR : DROP;
+    }
+
+    @Override
+    public void end(ExecutorContext context) throws ErrorRowException {
+      metrics.finish(context, start, rows, invalid);
+      if (onError == OnError.ERROR && invalid > 0) {
+        throw new ErrorRowException(name, String.format("Invalid value in column '%s'", column), 1);
+      }
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.fusion;
+
+import io.cdap.wrangler.api.Directive;
+import io.cdap.wrangler.core.columnar.ColumnarDirective;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites the directives of a recipe so that consecutive row-local directives run as one
+ * {@link FusedDirective}.
+ *
+ * <p>Each run of {@link RowLocalDirective}s is fused together with the {@link ColumnarDirective}
+ * that follows it, if any, such as {@code parse-as-bytes}, then {@code filter-by-duration}, then
+ * {@code aggregate-stats}. A single row-local directive that no columnar directive follows is left
+ * as it is, as are all other directives.</p>
+ */
+public final class DirectiveFuser {
+
+  private DirectiveFuser() {
+  }
+
+  /**
+   * @param directives initialized directives, in recipe order
+   * @return the directives to execute instead, in the same order
+   */
+  public static List<Directive> fuse(List<Directive> directives) {
+    List<Directive> fused = new ArrayList<>(directives.size());
+    List<RowLocalDirective> run = new ArrayList<>();
+    for (Directive directive : directives) {
+      if (directive instanceof RowLocalDirective) {
+        run.add((RowLocalDirective) directive);
+      } else if (directive instanceof ColumnarDirective && !run.isEmpty()) {
+        fused.add(new FusedDirective(run, (ColumnarDirective) directive));
+        run.clear();
+      } else {
+        flush(run, fused);
+        fused.add(directive);
+      }
+    }
+    flush(run, fused);
+    return fused;
+  }
+
+  private static void flush(List<RowLocalDirective> run, List<Directive> fused) {
+    if (run.size() == 1) {
+      fused.add(run.get(0));
+    } else if (run.size() > 1) {
+      fused.add(new FusedDirective(run, null));
+    }
+    run.clear();
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.fusion;
+
+import io.cdap.wrangler.api.Arguments;
+import io.cdap.wrangler.api.Directive;
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.ErrorRowException;
+import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.UsageDefinition;
+import io.cdap.wrangler.core.columnar.ColumnBatch;
+import io.cdap.wrangler.core.columnar.ColumnarDirective;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Consecutive {@link RowLocalDirective}s, optionally followed by a {@link ColumnarDirective}, run
+ * as one loop over each batch.
+ *
+ * <p>Each row goes through the stages in order until one drops it, so no stage builds a list of
+ * its own, and the rows that pass every stage are transposed for the columnar directive in the
+ * same loop through a {@link ColumnBatch.Builder}. Output and errors are those of running the
+ * directives one after another. Once a stage fails on a row, or drops a row as an error row, the
+ * remaining rows only go through the stages that would have run before the error was raised, so an
+ * earlier stage failing further down the batch still takes precedence, and the columnar directive
+ * does not run. The only difference is that later stages may already have handled, and counted,
+ * the rows before the failing one.</p>
+ */
+public final class FusedDirective implements Directive {
+  public static final String NAME = "fused";
+  private final RowLocalDirective[] stages;
+  private final ColumnarDirective sink;
+
+  /**
+   * @param stages initialized row-local directives, in recipe order
+   * @param sink initialized columnar directive fed by the stages, or null
+   */
+  public FusedDirective(List<RowLocalDirective> stages, ColumnarDirective sink) {
+    if (stages.isEmpty()) {
+      throw new IllegalArgumentException("A fused directive needs at least one row-local directive");
+    }
+    this.stages = stages.toArray(new RowLocalDirective[0]);
+    this.sink = sink;
+  }
+
+  @Override
+  public UsageDefinition define() {
+    return UsageDefinition.builder(NAME).build();
+  }
+
+  @Override
+  public void initialize(Arguments args) {
+    // The fused directives are initialized before they are fused
+  }
+
+  @Override
+  public List<Row> execute(List<Row> rows, ExecutorContext context)
+    throws DirectiveExecutionException, ErrorRowException {
+    int count = stages.length;
+    RowLocalDirective.Pass[] passes = new RowLocalDirective.Pass[count];
+    for (int s = 0; s < count; s++) {
+      passes[s] = stages[s].begin(context);
+    }
+    ColumnBatch.Builder batch = sink == null ? null : new ColumnBatch.Builder(rows.size(), sink.inputColumns());
+    // Without a sink, rows are only copied out once the first row has to be dropped
+    List<Row> output = null;
+    // Earliest stage that raises an error at the end of the batch, and the stages rows still go through
+    int stopped = count;
+    int limit = count;
+    DirectiveExecutionException failure = null;
+
+    for (int i = 0; i < rows.size(); i++) {
+      Row row = rows.get(i);
+      boolean kept = true;
+      for (int s = 0; s < limit && kept; s++) {
+        int outcome;
+        try {
+          outcome = passes[s].apply(row);
+        } catch (DirectiveExecutionException e) {
+          // On its own, the stage would have stopped here and the later stages never run
+          failure = e;
+          stopped = s;
+          limit = s;
+          break;
+        }
+        if (outcome == RowLocalDirective.ERROR && s < stopped) {
+          // The stage finishes its batch before raising the error, but the later stages never run
+          failure = null;
+          stopped = s;
+          limit = s + 1;
+        }
+        kept = outcome == RowLocalDirective.KEEP;
+      }
+
+      if (stopped < count) {
+        continue;
+      }
+      if (batch != null) {
+        if (kept) {
+          batch.add(row);
+        }
+      } else if (kept) {
+        if (output != null) {
+          output.add(row);
+        }
+      } else if (output == null) {
+        output = new ArrayList<>(rows.subList(0, i));
+      }
+    }
+
+    for (int s = 0; s < count; s++) {
+      if (s == stopped && failure != null) {
+        throw failure;
+      }
+      passes[s].end(context);
+    }
+    if (batch != null) {
+      return sink.execute(batch.build(), context);
+    }
+    return output == null ? rows : output;
+  }
+
+  /**
+   * @return number of row-local directives fused
+   */
+  public int stageCount() {
+    return stages.length;
+  }
+
+  /**
+   * @return the columnar directive fed by the stages, or null
+   */
+  public ColumnarDirective sink() {
+    return sink;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.fusion;
+
+import io.cdap.wrangler.api.Directive;
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.ErrorRowException;
+import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.Row;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A directive that handles each row of a batch on its own, in order, so that consecutive ones can
+ * run in a single loop over the batch.
+ *
+ * <p>The state of a batch lives in the {@link Pass} returned by {@link #begin(ExecutorContext)}:
+ * each row is given to {@link Pass#apply(Row)} in order, and {@link Pass#end(ExecutorContext)}
+ * finishes the batch. The row-based {@link #execute(List, ExecutorContext)} runs that loop for the
+ * directive on its own, so fused and unfused execution share one implementation.</p>
+ */
+public interface RowLocalDirective extends Directive {
+  /** The row is passed on. */
+  int KEEP = 0;
+  /** The row is dropped. */
+  int DROP = 1;
+  /** The row is dropped, and the batch ends with an {@link ErrorRowException}. */
+  int ERROR = 2;
+
+  /**
+   * Starts a batch on the calling thread.
+   */
+  Pass begin(ExecutorContext context);
+
+  @Override
+  default List<Row> execute(List<Row> rows, ExecutorContext context)
+    throws DirectiveExecutionException, ErrorRowException {
+    Pass pass = begin(context);
+    // Rows are only copied out once the first row has to be dropped
+    List<Row> output = null;
+    for (int i = 0; i < rows.size(); i++) {
+      Row row = rows.get(i);
+      if (pass.apply(row) == KEEP) {
+        if (output != null) {
+          output.add(row);
+        }
+      } else if (output == null) {
+        output = new ArrayList<>(rows.subList(0, i));
+      }
+    }
+    pass.end(context);
+    return output == null ? rows : output;
+  }
+
+  /**
+   * The state of a directive over one batch. Not thread-safe.
+   */
+  interface Pass {
+
+    /**
+     * Handles the next row of the batch, possibly changing it in place.
+     *
+     * @return {@link #KEEP}, {@link #DROP} or {@link #ERROR}
+     * @throws DirectiveExecutionException if the row is invalid and the directive fails on invalid rows
+     */
+    int apply(Row row) throws DirectiveExecutionException;
+
+    /**
+     * Ends the batch and publishes its metrics.
+     *
+     * @throws ErrorRowException if a row of the batch was dropped with {@link #ERROR}
+     */
+    void end(ExecutorContext context) throws ErrorRowException;
+  }
+}
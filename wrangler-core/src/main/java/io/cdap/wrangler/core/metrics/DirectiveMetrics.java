@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.metrics;
+
+import io.cdap.cdap.etl.api.StageMetrics;
+import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.parser.ParseCache;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Publishes per-batch metrics of a directive to the {@link StageMetrics} of the executor context.
+ *
+ * <p>Metrics are named after the directive: {@code <directive>.rows} and {@code <directive>.invalid}
+ * count the input rows and the rows with invalid values, and about one batch in {@code sampleInterval}
+ * is timed and reported in the {@code <directive>.batch.nanos} and {@code <directive>.rows.per.sec}
+ * gauges. Parse caches report their cumulative hits and misses on sampled batches, as
+ * {@code <directive>.<cache>.cache.hits} and {@code <directive>.<cache>.cache.misses}.</p>
+ *
+ * <p>All work is per batch, never per row. When the context has no metrics, as in tests and
+ * previews, every method returns after one null check without reading the clock, so directives
+ * can call them unconditionally. Instances are thread-safe.</p>
+ */
+public final class DirectiveMetrics {
+  public static final int DEFAULT_SAMPLE_INTERVAL = 64;
+  /** Returned by {@link #start(ExecutorContext)} for a batch that is not timed. */
+  public static final long NOT_TIMED = Long.MIN_VALUE;
+
+  private final String directive;
+  private final String rowsMetric;
+  private final String invalidMetric;
+  private final String nanosMetric;
+  private final String rateMetric;
+  private final int sampleInterval;
+
+  public DirectiveMetrics(String directive) {
+    this(directive, DEFAULT_SAMPLE_INTERVAL);
+  }
+
+  /**
+   * @param directive name the metrics are prefixed with
+   * @param sampleInterval time about one batch in this many; 1 times every batch, 0 none
+   */
+  public DirectiveMetrics(String directive, int sampleInterval) {
+    if (sampleInterval < 0) {
+      throw new IllegalArgumentException("Sample interval must not be negative, got " + sampleInterval);
+    }
+    this.directive = directive;
+    this.rowsMetric = directive + ".rows";
+    this.invalidMetric = directive + ".invalid";
+    this.nanosMetric = directive + ".batch.nanos";
+    this.rateMetric = directive + ".rows.per.sec";
+    this.sampleInterval = sampleInterval;
+  }
+
+  /**
+   * Called before a batch is processed.
+   *
+   * @return the start time if this batch is timed, or {@link #NOT_TIMED}
+   */
+  public long start(ExecutorContext context) {
+    if (sampleInterval == 0 || context == null || context.getMetrics() == null) {
+      return NOT_TIMED;
+    }
+    if (sampleInterval > 1 && ThreadLocalRandom.current().nextInt(sampleInterval) != 0) {
+      return NOT_TIMED;
+    }
+    return System.nanoTime();
+  }
+
+  /**
+   * Called after a batch is processed.
+   *
+   * @param start value returned by {@link #start(ExecutorContext)} for the batch
+   * @param rows number of input rows in the batch
+   * @param invalid number of rows of the batch with an invalid value
+   */
+  public void finish(ExecutorContext context, long start, int rows, long invalid) {
+    StageMetrics metrics = context == null ? null : context.getMetrics();
+    if (metrics == null) {
+      return;
+    }
+    if (rows > 0) {
+      metrics.count(rowsMetric, rows);
+    }
+    if (invalid > 0) {
+      metrics.count(invalidMetric, (int) Math.min(invalid, Integer.MAX_VALUE));
+    }
+    if (start != NOT_TIMED) {
+      long nanos = Math.max(1, System.nanoTime() - start);
+      metrics.gauge(nanosMetric, nanos);
+      metrics.gauge(rateMetric, (long) (rows * 1_000_000_000.0 / nanos));
+    }
+  }
+
+  /**
+   * Reports the counters of a parse cache on timed batches.
+   *
+   * @param start value returned by {@link #start(ExecutorContext)} for the batch
+   * @param name name of the cache within the directive, such as the column it parses
+   * @param cache the cache, or a plain parser which is ignored
+   */
+  public void cache(ExecutorContext context, long start, String name, Object cache) {
+    if (start == NOT_TIMED || !(cache instanceof ParseCache)) {
+      return;
+    }
+    StageMetrics metrics = context.getMetrics();
+    if (metrics != null) {
+      String prefix = directive + "." + name + ".cache.";
+      metrics.gauge(prefix + "hits", ((ParseCache) cache).hits());
+      metrics.gauge(prefix + "misses", ((ParseCache) cache).misses());
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.source;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A read-only view of a range of bytes as characters, one character per byte as in ISO-8859-1.
+ *
+ * <p>Slices let {@link MappedLogSource} hand fields to the unit parsers, which read a
+ * {@link CharSequence} in place, without decoding them into a {@link String}. That is exact for
+ * the ASCII text of unit literals. {@link #toString()} copies the bytes out with the same
+ * one-byte-per-character decoding. A slice keeps its buffer reachable, so a mapped buffer is
+ * only released once the slices over it are no longer referenced.</p>
+ */
+public final class ByteSlice implements CharSequence {
+  private final ByteBuffer buffer;
+  private final int offset;
+  private final int length;
+
+  /**
+   * @param buffer bytes to view; read with absolute gets, so its position and limit do not matter
+   * @param offset index of the first byte in the buffer
+   * @param length number of bytes
+   */
+  public ByteSlice(ByteBuffer buffer, int offset, int length) {
+    if (offset < 0 || length < 0 || offset > buffer.capacity() - length) {
+      throw new IndexOutOfBoundsException(
+        String.format("Range [%d, %d) is outside a buffer of %d bytes", offset, offset + length, buffer.capacity()));
+    }
+    this.buffer = buffer;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length) {
+      throw new IndexOutOfBoundsException(String.format("Index %d of a slice of length %d", index, length));
+    }
+    return (char) (buffer.get(offset + index) & 0xFF);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > length || start > end) {
+      throw new IndexOutOfBoundsException(
+        String.format("Range [%d, %d) of a slice of length %d", start, end, length));
+    }
+    return new ByteSlice(buffer, offset + start, end - start);
+  }
+
+  @Override
+  public String toString() {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = buffer.get(offset + i);
+    }
+    return new String(bytes, StandardCharsets.ISO_8859_1);
+  }
+}
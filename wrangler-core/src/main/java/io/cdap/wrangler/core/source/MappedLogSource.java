@@ -0,0 +1,234 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.source;
+
+import io.cdap.wrangler.api.Directive;
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.ErrorRowException;
+import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.Row;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a delimited text file, such as an access log, as batches of rows without decoding it.
+ *
+ * <p>The file is memory-mapped one window at a time. Lines are split on a single-byte delimiter
+ * directly in the mapped bytes, and each named field becomes a {@link ByteSlice} over those bytes,
+ * so the unit parsers read a {@code 12KB} or {@code 340ms} field in place. Each window starts at
+ * the first line not yet read, so no line is split across windows. Heap use depends on the batch
+ * size, not on the file size, and the page cache decides how much of the file stays resident.</p>
+ *
+ * <p>Lines end with {@code \n} or {@code \r\n}, and blank lines are skipped. Fields are not
+ * quoted, so the delimiter cannot occur inside a field. Every row has all the named columns, in
+ * the order given, and a field missing from a short line is null. A line longer than the window
+ * fails with an {@link IOException}. Instances are not thread-safe.</p>
+ */
+public final class MappedLogSource implements Closeable {
+  public static final int DEFAULT_BATCH_SIZE = 8192;
+  public static final int DEFAULT_WINDOW_BYTES = 64 << 20;
+
+  private final Path file;
+  private final FileChannel channel;
+  private final long fileSize;
+  private final byte delimiter;
+  private final String[] columns;
+  private final int batchSize;
+  private final int windowBytes;
+  private MappedByteBuffer window;
+  private long windowStart;
+  // Index in the window of the first byte not yet read
+  private int position;
+  private long lines;
+  private long errorBatches;
+
+  /**
+   * Opens a file with the default batch and window sizes.
+   *
+   * @see #MappedLogSource(Path, char, List, int, int)
+   */
+  public MappedLogSource(Path file, char delimiter, List<String> columns) throws IOException {
+    this(file, delimiter, columns, DEFAULT_BATCH_SIZE, DEFAULT_WINDOW_BYTES);
+  }
+
+  /**
+   * @param delimiter field separator, an ASCII character such as a space or a tab
+   * @param columns name of each field by its position in a line, or null for a field that is not read
+   * @param batchSize maximum number of rows in a batch
+   * @param windowBytes number of bytes mapped at a time, which bounds the length of a line
+   */
+  public MappedLogSource(Path file, char delimiter, List<String> columns, int batchSize, int windowBytes)
+    throws IOException {
+    if (delimiter > 0x7F || delimiter == '\n' || delimiter == '\r') {
+      throw new IllegalArgumentException(String.format("Invalid delimiter '%s'", delimiter));
+    }
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size must be positive, got " + batchSize);
+    }
+    if (windowBytes < 1) {
+      throw new IllegalArgumentException("Window size must be positive, got " + windowBytes);
+    }
+    this.file = file;
+    this.delimiter = (byte) delimiter;
+    this.columns = columns.toArray(new String[0]);
+    this.batchSize = batchSize;
+    this.windowBytes = windowBytes;
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      this.fileSize = channel.size();
+      map(0);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return whether bytes are left to read; the next batch may still be empty if only blank lines are
+   */
+  public boolean hasNext() {
+    return windowStart + position < fileSize;
+  }
+
+  /**
+   * @return the next rows, at most the batch size, or an empty list at the end of the file
+   * @throws IOException if the file cannot be read or a line does not fit in the window
+   */
+  public List<Row> nextBatch() throws IOException {
+    List<Row> rows = new ArrayList<>();
+    while (rows.size() < batchSize) {
+      int end = nextLineEnd();
+      if (end < 0) {
+        break;
+      }
+      int start = position;
+      position = Math.min(end + 1, window.limit());
+      lines++;
+      int last = end > start && window.get(end - 1) == '\r' ? end - 1 : end;
+      if (last > start) {
+        rows.add(toRow(start, last));
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Streams the rest of the file through a directive, one batch at a time. The output of every
+   * batch but the last is dropped, so the directive is typically an aggregate.
+   *
+   * <p>In {@code error} mode a directive rejects a batch with an invalid row by throwing an
+   * {@link ErrorRowException}, after its valid rows have been taken into account. Such a batch is
+   * counted by {@link #errorBatchCount()} and streaming goes on, since there is no error collector
+   * to route the rows to.</p>
+   *
+   * @param context context of every batch but the last
+   * @param lastContext context of the last batch, whose {@code isLast()} is true
+   * @return the output of the last batch
+   */
+  public List<Row> streamTo(Directive directive, ExecutorContext context, ExecutorContext lastContext)
+    throws IOException, DirectiveExecutionException, ErrorRowException {
+    while (true) {
+      List<Row> batch = nextBatch();
+      if (!hasNext()) {
+        return directive.execute(batch, lastContext);
+      }
+      try {
+        directive.execute(batch, context);
+      } catch (ErrorRowException e) {
+        errorBatches++;
+      }
+    }
+  }
+
+  /**
+   * @return number of lines read so far, blank ones included
+   */
+  public long lineCount() {
+    return lines;
+  }
+
+  /**
+   * @return number of batches rejected with an {@link ErrorRowException} by {@link #streamTo}
+   */
+  public long errorBatchCount() {
+    return errorBatches;
+  }
+
+  @Override
+  public void close() throws IOException {
+    window = null;
+    channel.close();
+  }
+
+  /**
+   * @return index in the window of the end of the next line, or -1 at the end of the file
+   */
+  private int nextLineEnd() throws IOException {
+    while (true) {
+      int limit = window.limit();
+      for (int i = position; i < limit; i++) {
+        if (window.get(i) == '\n') {
+          return i;
+        }
+      }
+      if (windowStart + limit == fileSize) {
+        // The last line need not end with a newline
+        return position < limit ? limit : -1;
+      }
+      if (position == 0) {
+        throw new IOException(String.format("Line at offset %d of %s is longer than %d bytes",
+                                            windowStart, file, windowBytes));
+      }
+      map(windowStart + position);
+    }
+  }
+
+  private void map(long start) throws IOException {
+    window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(windowBytes, fileSize - start));
+    windowStart = start;
+    position = 0;
+  }
+
+  private Row toRow(int start, int end) {
+    Row row = new Row();
+    int field = 0;
+    int fieldStart = start;
+    for (int i = start; i <= end && field < columns.length; i++) {
+      if (i == end || window.get(i) == delimiter) {
+        if (columns[field] != null) {
+          row.add(columns[field], new ByteSlice(window, fieldStart, i - fieldStart));
+        }
+        field++;
+        fieldStart = i + 1;
+      }
+    }
+    for (; field < columns.length; field++) {
+      if (columns[field] != null) {
+        row.add(columns[field], null);
+      }
+    }
+    return row;
+  }
+}
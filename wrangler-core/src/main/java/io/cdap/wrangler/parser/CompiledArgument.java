@@ -0,0 +1,111 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.parser;
+
+import io.cdap.wrangler.api.parser.ByteSize;
+import io.cdap.wrangler.api.parser.TimeDuration;
+import io.cdap.wrangler.api.parser.TokenType;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Objects;
+
+/**
+ * One typed argument of a compiled directive.
+ *
+ * <p>The value is derived from the literal text alone: the text itself for identifiers, the
+ * name without its {@code :} for a column, a list of names for a column list written as
+ * {@code a,b}, the unquoted text for strings, a {@link Long} or {@link Double} for numbers, and a {@link ByteSize}
+ * or {@link TimeDuration} token for unit literals. Those tokens are folded when the recipe is
+ * compiled and carry exact byte and nanosecond counts, so directives never re-parse constant
+ * sizes or durations. Deriving values from the text lets a persisted recipe be restored without
+ * going through the grammar again.</p>
+ */
+public final class CompiledArgument {
+  private final TokenType type;
+  private final String text;
+  private final Object value;
+
+  private CompiledArgument(TokenType type, String text, Object value) {
+    this.type = type;
+    this.text = text;
+    this.value = value;
+  }
+
+  /**
+   * @param type one of {@code IDENTIFIER}, {@code COLUMN}, {@code COLUMN_NAME_LIST}, {@code TEXT},
+   *   {@code NUMERIC}, {@code BYTE_SIZE} or {@code TIME_DURATION}
+   * @param text the literal, without quotes for {@code TEXT} and without {@code :} for columns
+   * @throws IllegalArgumentException if the literal is not valid for the type
+   */
+  public static CompiledArgument of(TokenType type, String text) {
+    switch (type) {
+      case IDENTIFIER:
+      case COLUMN:
+      case TEXT:
+        return new CompiledArgument(type, text, text);
+      case COLUMN_NAME_LIST:
+        return new CompiledArgument(type, text, Collections.unmodifiableList(Arrays.asList(text.split(",", -1))));
+      case NUMERIC:
+        return new CompiledArgument(
+          type, text, text.indexOf('.') < 0 ? (Object) Long.valueOf(text) : (Object) Double.valueOf(text));
+      case BYTE_SIZE:
+        return new CompiledArgument(type, text, ByteSize.parse(text));
+      case TIME_DURATION:
+        return new CompiledArgument(type, text, TimeDuration.parse(text));
+      default:
+        throw new IllegalArgumentException("Unsupported argument type " + type);
+    }
+  }
+
+  public TokenType type() {
+    return type;
+  }
+
+  /**
+   * @return the literal as written, without quotes for {@code TEXT} and without {@code :} for columns
+   */
+  public String text() {
+    return text;
+  }
+
+  public Object value() {
+    return value;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof CompiledArgument)) {
+      return false;
+    }
+    CompiledArgument that = (CompiledArgument) o;
+    return type == that.type && text.equals(that.text);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(type, text);
+  }
+
+  @Override
+  public String toString() {
+    return type + "(" + text + ")";
+  }
+}
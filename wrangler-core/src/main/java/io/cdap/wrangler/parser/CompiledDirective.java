@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.parser;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A directive name with its typed arguments, as compiled from one recipe line.
+ */
+public final class CompiledDirective {
+  private final int lineNumber;
+  private final String name;
+  private final List<CompiledArgument> arguments;
+
+  public CompiledDirective(int lineNumber, String name, List<CompiledArgument> arguments) {
+    this.lineNumber = lineNumber;
+    this.name = name;
+    this.arguments = Collections.unmodifiableList(arguments);
+  }
+
+  /**
+   * @return one-based line of the recipe the directive was compiled from
+   */
+  public int getLineNumber() {
+    return lineNumber;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public List<CompiledArgument> getArguments() {
+    return arguments;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof CompiledDirective)) {
+      return false;
+    }
+    CompiledDirective that = (CompiledDirective) o;
+    return lineNumber == that.lineNumber && name.equals(that.name) && arguments.equals(that.arguments);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(lineNumber, name, arguments);
+  }
+
+  @Override
+  public String toString() {
+    return name + " " + arguments;
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.parser;
+
+import io.cdap.wrangler.api.parser.TokenType;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The directives of a recipe after lexing and parsing, in recipe order.
+ *
+ * <p>A compiled recipe can be written to and read back from a compact binary form, which stores
+ * each argument as its type and literal text; reading it does not touch the grammar.</p>
+ */
+public final class CompiledRecipe {
+  /** Bumped whenever the binary form or the grammar changes what a recipe compiles to. */
+  static final int FORMAT_VERSION = 3;
+  private static final int MAGIC = 0x57524350;
+
+  private final List<CompiledDirective> directives;
+
+  public CompiledRecipe(List<CompiledDirective> directives) {
+    this.directives = Collections.unmodifiableList(directives);
+  }
+
+  public List<CompiledDirective> getDirectives() {
+    return directives;
+  }
+
+  /**
+   * Writes the binary form of this recipe.
+   */
+  public void writeTo(DataOutput out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(FORMAT_VERSION);
+    out.writeInt(directives.size());
+    for (CompiledDirective directive : directives) {
+      out.writeInt(directive.getLineNumber());
+      out.writeUTF(directive.getName());
+      out.writeInt(directive.getArguments().size());
+      for (CompiledArgument argument : directive.getArguments()) {
+        out.writeUTF(argument.type().name());
+        out.writeUTF(argument.text());
+      }
+    }
+  }
+
+  /**
+   * Reads a recipe written by {@link #writeTo(DataOutput)}.
+   *
+   * @throws IOException if the input is truncated, corrupt or from another format version
+   */
+  public static CompiledRecipe readFrom(DataInput in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a compiled recipe");
+    }
+    int version = in.readInt();
+    if (version != FORMAT_VERSION) {
+      throw new IOException(String.format("Compiled recipe format %d is not supported, expected %d",
+                                          version, FORMAT_VERSION));
+    }
+    int count = in.readInt();
+    List<CompiledDirective> directives = new ArrayList<>(Math.min(count, 1024));
+    for (int d = 0; d < count; d++) {
+      int lineNumber = in.readInt();
+      String name = in.readUTF();
+      int argumentCount = in.readInt();
+      List<CompiledArgument> arguments = new ArrayList<>(Math.min(argumentCount, 64));
+      for (int a = 0; a < argumentCount; a++) {
+        String type = in.readUTF();
+        String text = in.readUTF();
+        try {
+          arguments.add(CompiledArgument.of(TokenType.valueOf(type), text));
+        } catch (IllegalArgumentException e) {
+          throw new IOException(String.format("Invalid %s argument '%s' in compiled recipe", type, text), e);
+        }
+      }
+      directives.add(new CompiledDirective(lineNumber, name, arguments));
+    }
+    return new CompiledRecipe(directives);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return this == o || (o instanceof CompiledRecipe && directives.equals(((CompiledRecipe) o).directives));
+  }
+
+  @Override
+  public int hashCode() {
+    return directives.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return directives.toString();
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.parser;
+
+import io.cdap.wrangler.api.DirectiveParseException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of compiled recipes keyed by the SHA-256 hash of the recipe text.
+ *
+ * <p>Recipes are kept in a bounded in-memory LRU map. If a directory is given, every compiled
+ * recipe is also written there as {@code <hash>.recipe}, so a later process starting the same recipe
+ * only reads that file instead of parsing. Files from another format version or that cannot be read
+ * are ignored and replaced. Writing is best-effort: a failed write leaves the recipe cached in
+ * memory only.</p>
+ *
+ * <p>Instances are thread-safe. Two threads missing on the same recipe may both compile it.</p>
+ */
+public final class RecipeCache {
+  private static final String SUFFIX = ".recipe";
+
+  private final RecipeCompiler compiler;
+  private final Path directory;
+  private final Map<String, CompiledRecipe> recipes;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder diskHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * @param compiler compiler for recipes that are not cached
+   * @param maxEntries upper bound on the number of recipes kept in memory
+   * @param directory directory for the persisted form, or null to keep recipes in memory only
+   */
+  public RecipeCache(RecipeCompiler compiler, int maxEntries, Path directory) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("Cache size must be positive, got " + maxEntries);
+    }
+    this.compiler = compiler;
+    this.directory = directory;
+    this.recipes = new LinkedHashMap<String, CompiledRecipe>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CompiledRecipe> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  /**
+   * Returns the compiled form of a recipe, compiling it only if neither memory nor disk has it.
+   *
+   * @throws DirectiveParseException if the recipe has to be compiled and is invalid
+   */
+  public CompiledRecipe get(String recipe) throws DirectiveParseException {
+    String key = hash(recipe);
+    synchronized (recipes) {
+      CompiledRecipe cached = recipes.get(key);
+      if (cached != null) {
+        hits.increment();
+        return cached;
+      }
+    }
+
+    CompiledRecipe compiled = directory == null ? null : read(key);
+    if (compiled != null) {
+      diskHits.increment();
+    } else {
+      misses.increment();
+      compiled = compiler.compile(recipe);
+      if (directory != null) {
+        write(key, compiled);
+      }
+    }
+    synchronized (recipes) {
+      recipes.put(key, compiled);
+    }
+    return compiled;
+  }
+
+  /**
+   * @return lookups answered from memory
+   */
+  public long hits() {
+    return hits.sum();
+  }
+
+  /**
+   * @return lookups answered from the persisted form
+   */
+  public long diskHits() {
+    return diskHits.sum();
+  }
+
+  /**
+   * @return lookups that compiled the recipe
+   */
+  public long misses() {
+    return misses.sum();
+  }
+
+  /**
+   * @return hex SHA-256 of the recipe text, prefixed with the format version
+   */
+  static String hash(String recipe) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256
+      throw new IllegalStateException(e);
+    }
+    byte[] bytes = digest.digest(recipe.getBytes(StandardCharsets.UTF_8));
+    StringBuilder hex = new StringBuilder(4 + bytes.length * 2).append('v').append(CompiledRecipe.FORMAT_VERSION)
+      .append('-');
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  private CompiledRecipe read(String key) {
+    try (InputStream in = Files.newInputStream(directory.resolve(key + SUFFIX))) {
+      return CompiledRecipe.readFrom(new DataInputStream(new BufferedInputStream(in)));
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      // Unreadable or stale; it is recompiled and overwritten
+      return null;
+    }
+  }
+
+  private void write(String key, CompiledRecipe compiled) {
+    try {
+      Files.createDirectories(directory);
+      Path temp = Files.createTempFile(directory, key, ".tmp");
+      try {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+          compiled.writeTo(new DataOutputStream(out));
+        }
+        Path target = directory.resolve(key + SUFFIX);
+        try {
+          Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+          Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+      } finally {
+        Files.deleteIfExists(temp);
+      }
+    } catch (IOException e) {
+      // Persisting is an optimization; the recipe stays cached in memory
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.parser;
+
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.parser.TokenType;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compiles recipe text into a {@link CompiledRecipe} with the {@code Directives.g4} grammar.
+ *
+ * <p>Each non-blank line is one directive; a trailing {@code ;} is ignored, and lines starting with
+ * {@code //} or {@code #} are comments. Directive names and identifiers may contain dashes, columns
+ * are written {@code :name}, and a comma separated list of columns such as {@code :tenant,:host}
+ * is one argument; lists of text or numbers are not supported.</p>
+ *
+ * <p>Every line is first parsed with SLL prediction and a bail-out error strategy, which is enough
+ * for almost all input and much cheaper. Only if that fails is the line parsed again with full LL
+ * prediction, which either succeeds or reports the syntax error.</p>
+ *
+ * <p>Instances are thread-safe.</p>
+ */
+public final class RecipeCompiler {
+  private static final BaseErrorListener THROWING_LISTENER = new BaseErrorListener() {
+    @Override
+    public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+                            int charPositionInLine, String msg, RecognitionException e) {
+      throw new SyntaxError(charPositionInLine, msg);
+    }
+  };
+
+  private final LongAdder llFallbacks = new LongAdder();
+
+  /**
+   * @throws DirectiveParseException if a line is not a valid directive
+   */
+  public CompiledRecipe compile(String recipe) throws DirectiveParseException {
+    List<CompiledDirective> directives = new ArrayList<>();
+    String[] lines = recipe.split("\n", -1);
+    for (int i = 0; i < lines.length; i++) {
+      String line = lines[i].trim();
+      if (line.endsWith(";")) {
+        line = line.substring(0, line.length() - 1).trim();
+      }
+      if (line.isEmpty() || line.startsWith("//") || line.startsWith("#")) {
+        continue;
+      }
+      try {
+        directives.add(toDirective(i + 1, parse(line)));
+      } catch (SyntaxError e) {
+        throw new DirectiveParseException(
+          String.format("Syntax error at line %d, column %d: %s", i + 1, e.column + 1, e.getMessage()));
+      } catch (IllegalArgumentException e) {
+        throw new DirectiveParseException(String.format("Invalid argument at line %d: %s", i + 1, e.getMessage()));
+      }
+    }
+    return new CompiledRecipe(directives);
+  }
+
+  /**
+   * @return number of lines that needed the full LL pass
+   */
+  public long getLlFallbacks() {
+    return llFallbacks.sum();
+  }
+
+  private DirectivesParser.DirectiveContext parse(String line) {
+    DirectivesLexer lexer = new DirectivesLexer(CharStreams.fromString(line));
+    lexer.removeErrorListeners();
+    lexer.addErrorListener(THROWING_LISTENER);
+    CommonTokenStream tokens = new CommonTokenStream(lexer);
+    DirectivesParser parser = new DirectivesParser(tokens);
+    parser.removeErrorListeners();
+    parser.setErrorHandler(new BailErrorStrategy());
+    parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+    try {
+      return parser.directive();
+    } catch (ParseCancellationException e) {
+      llFallbacks.increment();
+      tokens.seek(0);
+      parser.reset();
+      parser.addErrorListener(THROWING_LISTENER);
+      parser.setErrorHandler(new DefaultErrorStrategy());
+      parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+      return parser.directive();
+    }
+  }
+
+  private static CompiledDirective toDirective(int lineNumber, DirectivesParser.DirectiveContext context) {
+    List<CompiledArgument> arguments = new ArrayList<>();
+    if (context.args() != null) {
+      for (DirectivesParser.ValueContext value : context.args().value()) {
+        arguments.add(value.columns() != null ? toColumns(value.columns()) : toArgument(value.getStart()));
+      }
+    }
+    return new CompiledDirective(lineNumber, context.IDENTIFIER().getText(), arguments);
+  }
+
+  private static CompiledArgument toColumns(DirectivesParser.ColumnsContext columns) {
+    List<TerminalNode> names = columns.COLUMN();
+    if (names.size() == 1) {
+      return CompiledArgument.of(TokenType.COLUMN, names.get(0).getText().substring(1));
+    }
+    StringJoiner text = new StringJoiner(",");
+    for (TerminalNode name : names) {
+      text.add(name.getText().substring(1));
+    }
+    return CompiledArgument.of(TokenType.COLUMN_NAME_LIST, text.toString());
+  }
+
+  private static CompiledArgument toArgument(Token token) {
+    String text = token.getText();
+    switch (token.getType()) {
+      case DirectivesLexer.IDENTIFIER:
+        return CompiledArgument.of(TokenType.IDENTIFIER, text);
+      case DirectivesLexer.STRING:
+        return CompiledArgument.of(TokenType.TEXT, text.substring(1, text.length() - 1));
+      case DirectivesLexer.NUMBER:
+        return CompiledArgument.of(TokenType.NUMERIC, text);
+      case DirectivesLexer.BYTE_SIZE:
+        return CompiledArgument.of(TokenType.BYTE_SIZE, text);
+      case DirectivesLexer.TIME_DURATION:
+        return CompiledArgument.of(TokenType.TIME_DURATION, text);
+      default:
+        throw new IllegalArgumentException("Unexpected token '" + text + "'");
+    }
+  }
+
+  /**
+   * Unchecked carrier for a lexer or parser error, converted at the line boundary.
+   */
+  private static final class SyntaxError extends RuntimeException {
+    private final int column;
+
+    private SyntaxError(int column, String message) {
+      super(message);
+      this.column = column;
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.columnar;
+
+import io.cdap.wrangler.api.Row;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ColumnBatchTest {
+
+    @Test
+    public void testFromRows() {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("size", "1KB").add("time", "1s"));
+        rows.add(new Row("size", null).add("time", "2s"));
+        // A different layout and a missing column are resolved per row
+        rows.add(new Row("time", "3s").add("size", 42L));
+        rows.add(new Row("time", "4s"));
+
+        ColumnBatch batch = ColumnBatch.fromRows(rows, "size", "time");
+        assertEquals(4, batch.size());
+        assertSame(rows, batch.rows());
+
+        ColumnVector sizes = batch.column("size");
+        assertFalse(sizes.isLong());
+        assertTrue(sizes.hasNulls());
+        assertEquals("1KB", sizes.get(0));
+        assertTrue(sizes.isNull(1));
+        assertTrue(sizes.isLong(2));
+        assertEquals(42L, sizes.get(2));
+        assertTrue(sizes.isNull(3));
+
+        ColumnVector times = batch.column(1);
+        assertFalse(times.hasNulls());
+        assertArrayEquals(new CharSequence[] {"1s", "2s", "3s", "4s"}, times.texts());
+        assertNull(batch.column("other"));
+    }
+
+    @Test
+    public void testBuilder() {
+        ColumnBatch.Builder builder = new ColumnBatch.Builder(1, "size", "time");
+        Row first = new Row("size", 1024L).add("time", "1s");
+        builder.add(first);
+        for (int i = 0; i < 40; i++) {
+            builder.add(new Row("time", i + "s").add("size", (long) i));
+        }
+        ColumnBatch batch = builder.build();
+        assertEquals(41, batch.size());
+        assertSame(first, batch.rows().get(0));
+        assertTrue(batch.column("size").isLong());
+        assertEquals(1024L, batch.column("size").longs()[0]);
+        assertEquals(39L, batch.column("size").longs()[40]);
+        assertEquals("39s", batch.column("time").get(40));
+
+        assertEquals(0, new ColumnBatch.Builder(0, "size").build().size());
+    }
+
+    @Test
+    public void testTypedColumnBecomesLongVector() {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("bytes", 1024L));
+        rows.add(new Row("bytes", null));
+        rows.add(new Row("bytes", 7));
+        ColumnVector vector = ColumnBatch.fromRows(rows, "bytes").column(0);
+        assertTrue(vector.isLong());
+        assertArrayEquals(new long[] {1024L, 0L, 7L}, vector.longs());
+        assertTrue(vector.isNull(1));
+    }
+
+    @Test
+    public void testMixedColumnKeepsTypedCells() {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("bytes", "1KB"));
+        rows.add(new Row("bytes", 1048576L));
+        rows.add(new Row("bytes", null));
+        rows.add(new Row("bytes", 7));
+        ColumnVector vector = ColumnBatch.fromRows(rows, "bytes").column(0);
+        assertFalse(vector.isLong());
+        assertFalse(vector.isLong(0));
+        assertEquals("1KB", vector.get(0));
+        assertTrue(vector.isLong(1));
+        assertEquals(1048576L, vector.get(1));
+        assertTrue(vector.isNull(2));
+        assertNull(vector.get(2));
+        assertEquals(7L, vector.get(3));
+        assertNull(vector.texts()[1]);
+    }
+
+    @Test
+    public void testLongVectorNullBitmap() {
+        long[] values = new long[130];
+        long[] nulls = new long[ColumnVector.words(values.length)];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        nulls[129 >>> 6] |= 1L << 129;
+        ColumnVector vector = ColumnVector.ofLongs(values, nulls);
+        assertTrue(vector.isLong());
+        assertEquals(128L, vector.get(128));
+        assertNull(vector.get(129));
+        assertFalse(vector.isNull(64));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testShortNullBitmap() {
+        ColumnVector.ofLongs(new long[65], new long[1]);
+    }
+
+    @Test
+    public void testRowsFromVectors() {
+        ColumnBatch batch = ColumnBatch.of(
+            Arrays.asList("bytes", "name"),
+            ColumnVector.ofLongs(new long[] {7L, 0L}, new long[] {2L}),
+            ColumnVector.ofText(new CharSequence[] {"a", "b"}));
+        List<Row> rows = batch.rows();
+        assertEquals(2, rows.size());
+        assertEquals(7L, rows.get(0).getValue("bytes"));
+        assertNull(rows.get(1).getValue("bytes"));
+        assertEquals("b", rows.get(1).getValue("name"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchedVectors() {
+        ColumnBatch.of(Arrays.asList("a", "b"),
+                       ColumnVector.ofText(new CharSequence[1]), ColumnVector.ofText(new CharSequence[2]));
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.columnar;
+
+import io.cdap.wrangler.api.Row;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ColumnPositionsTest {
+
+    @Test
+    public void testSameLayoutIsResolvedOnce() {
+        ColumnPositions positions = new ColumnPositions("time", "size");
+        assertEquals(2, positions.size());
+        for (int i = 0; i < 100; i++) {
+            Row row = new Row("size", i).add("time", "1s");
+            positions.resolve(row);
+            assertEquals(1, positions.position(0));
+            assertEquals(0, positions.position(1));
+            assertEquals(i, positions.value(row, 1));
+        }
+        assertEquals(2, positions.searches());
+    }
+
+    @Test
+    public void testChangedLayoutIsResolvedAgain() {
+        ColumnPositions positions = new ColumnPositions("size", "time");
+        positions.resolve(new Row("size", "1KB").add("time", "1s"));
+        assertEquals(2, positions.searches());
+
+        // Only the column whose position moved is searched for
+        Row wider = new Row("size", "2KB").add("host", "a").add("time", "2s");
+        positions.resolve(wider);
+        assertEquals(3, positions.searches());
+        assertEquals("2KB", positions.value(wider, 0));
+        assertEquals("2s", positions.value(wider, 1));
+
+        Row narrower = new Row("time", "3s");
+        positions.resolve(narrower);
+        assertEquals(-1, positions.position(0));
+        assertEquals(0, positions.position(1));
+        assertNull(positions.value(narrower, 0));
+        assertEquals("3s", positions.value(narrower, 1));
+    }
+
+    @Test
+    public void testMissingColumnIsSearchedEveryRow() {
+        ColumnPositions positions = new ColumnPositions("size");
+        Row row = new Row("time", "1s");
+        positions.resolve(row);
+        positions.resolve(row);
+        assertEquals(-1, positions.position(0));
+        assertNull(positions.value(row, 0));
+        assertEquals(2, positions.searches());
+
+        Row added = new Row("time", "1s").add("size", "1KB");
+        assertEquals("1KB", positions.resolve(added).value(added, 0));
+    }
+}
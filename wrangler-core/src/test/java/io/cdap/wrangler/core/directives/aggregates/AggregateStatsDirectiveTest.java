@@ -16,14 +16,31 @@
 
 package io.cdap.wrangler.core.directives.aggregates;
 
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.ErrorRowException;
 import io.cdap.wrangler.api.Row;
 import io.cdap.wrangler.api.parser.ByteSize;
+import io.cdap.wrangler.api.parser.ColumnName;
+import io.cdap.wrangler.api.parser.Identifier;
+import io.cdap.wrangler.api.parser.Text;
 import io.cdap.wrangler.api.parser.TimeDuration;
+import io.cdap.wrangler.api.parser.Token;
+import io.cdap.wrangler.core.columnar.ColumnBatch;
+import io.cdap.wrangler.core.columnar.ColumnVector;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class AggregateStatsDirectiveTest {
 
@@ -58,7 +75,7 @@ public class AggregateStatsDirectiveTest {
         assertEquals(rows, result);
 
         // Test last partition
-        result = directive.execute(rows, TestUtils.createContext(true));
+        result = directive.execute(Collections.emptyList(), TestUtils.createContext(true));
         assertEquals(1, result.size());
         
         Row aggregateRow = result.get(0);
@@ -97,10 +114,10 @@ public class AggregateStatsDirectiveTest {
         assertEquals(1, result.size());
         
         Row aggregateRow = result.get(0);
-        // Expected: 1GB + 500MB + 1.5TB = 1,536,500 MB
-        assertEquals(1536500.0, aggregateRow.getValue("total_size_mb"));
-        // Expected: 1h + 30m + 1d = 90,000 seconds
-        assertEquals(90000.0, aggregateRow.getValue("total_time_sec"));
+        // Expected: 1GB + 500MB + 1.5TB = 1,024 + 500 + 1,572,864 = 1,574,388 MB
+        assertEquals(1574388.0, aggregateRow.getValue("total_size_mb"));
+        // Expected: 1h + 30m + 1d = 3,600 + 1,800 + 86,400 = 91,800 seconds
+        assertEquals(91800.0, aggregateRow.getValue("total_time_sec"));
     }
 
     @Test
@@ -133,7 +150,7 @@ public class AggregateStatsDirectiveTest {
         assertEquals(2.0, aggregateRow.getValue("total_time_sec"));
     }
 
-    @Test(expected = IllegalArgumentException.class)
+    @Test(expected = DirectiveExecutionException.class)
     public void testInvalidByteSize() throws Exception {
         AggregateStatsDirective directive = new AggregateStatsDirective();
         List<Row> rows = new ArrayList<>();
@@ -150,7 +167,7 @@ public class AggregateStatsDirectiveTest {
         directive.execute(rows, TestUtils.createContext(true));
     }
 
-    @Test(expected = IllegalArgumentException.class)
+    @Test(expected = DirectiveExecutionException.class)
     public void testInvalidTimeDuration() throws Exception {
         AggregateStatsDirective directive = new AggregateStatsDirective();
         List<Row> rows = new ArrayList<>();
@@ -166,4 +183,440 @@ public class AggregateStatsDirectiveTest {
         
         directive.execute(rows, TestUtils.createContext(true));
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void testSkipInvalidRows() throws Exception {
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        List<Row> rows = createDirtyRows();
+
+        directive.initialize(TestUtils.createArgs(
+            "size", "time", "total_size_mb", "total_time_sec", "skip"
+        ));
+
+        List<Row> result = directive.execute(rows, TestUtils.createContext(false));
+        assertEquals(2, result.size());
+        assertEquals("10MB", result.get(0).getValue("size"));
+        assertEquals("30MB", result.get(1).getValue("size"));
+
+        result = directive.execute(Collections.emptyList(), TestUtils.createContext(true));
+        Row aggregateRow = result.get(0);
+        assertEquals(40.0, aggregateRow.getValue("total_size_mb"));
+        assertEquals(3.0, aggregateRow.getValue("total_time_sec"));
+        assertEquals(3L, aggregateRow.getValue(AggregateStatsDirective.INVALID_COUNT_COLUMN));
+    }
+
+    @Test
+    public void testCountInvalidCells() throws Exception {
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        List<Row> rows = createDirtyRows();
+
+        directive.initialize(TestUtils.createArgs(
+            "size", "time", "total_size_mb", "total_time_sec", "count"
+        ));
+
+        List<Row> result = directive.execute(rows, TestUtils.createContext(false));
+        assertEquals(rows, result);
+
+        result = directive.execute(Collections.emptyList(), TestUtils.createContext(true));
+        Row aggregateRow = result.get(0);
+        // The valid cells of the dirty rows still contribute
+        assertEquals(40.0, aggregateRow.getValue("total_size_mb"));
+        assertEquals(7.0, aggregateRow.getValue("total_time_sec"));
+        assertEquals(3L, aggregateRow.getValue(AggregateStatsDirective.INVALID_COUNT_COLUMN));
+        assertEquals(3L, directive.getInvalidCount());
+    }
+
+    @Test
+    public void testRouteInvalidRowToErrorCollector() throws Exception {
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs(
+            "size", "time", "total_size_mb", "total_time_sec", "error"
+        ));
+
+        List<Row> rows = createDirtyRows();
+        int errors = 0;
+        for (Row row : rows) {
+            try {
+                assertEquals(1, directive.execute(Collections.singletonList(row), TestUtils.createContext(false)).size());
+            } catch (ErrorRowException e) {
+                errors++;
+            }
+        }
+        assertEquals(2, errors);
+
+        Row aggregateRow = directive.execute(Collections.emptyList(), TestUtils.createContext(true)).get(0);
+        assertEquals(40.0, aggregateRow.getValue("total_size_mb"));
+        assertEquals(3.0, aggregateRow.getValue("total_time_sec"));
+    }
+
+    @Test
+    public void testCountInvalidRowOfLastBatch() throws Exception {
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs(
+            "size", "time", "total_size_mb", "total_time_sec", "error"
+        ));
+        directive.execute(Collections.singletonList(new Row("size", "10MB").add("time", "1s")),
+                          TestUtils.createContext(false));
+
+        // The last batch yields the aggregate; its invalid row is left out and counted
+        List<Row> result = directive.execute(Collections.singletonList(new Row("size", "bad").add("time", "1s")),
+                                             TestUtils.createContext(true));
+        assertEquals(1, result.size());
+        assertEquals(10.0, result.get(0).getValue("total_size_mb"));
+        assertEquals(1.0, result.get(0).getValue("total_time_sec"));
+        assertEquals(1L, result.get(0).getValue(AggregateStatsDirective.INVALID_COUNT_COLUMN));
+    }
+
+    @Test(expected = DirectiveParseException.class)
+    public void testUnknownErrorMode() throws Exception {
+        new AggregateStatsDirective().initialize(TestUtils.createArgs(
+            "size", "time", "total_size_mb", "total_time_sec", "ignore"
+        ));
+    }
+
+    @Test
+    public void testParseCacheGivesSameTotals() throws Exception {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("byteSizeColumn", new ColumnName("size"));
+        tokens.put("timeDurationColumn", new ColumnName("time"));
+        tokens.put("totalSizeColumn", new Text("total_size_mb"));
+        tokens.put("totalTimeColumn", new Text("total_time_sec"));
+        tokens.put("onError", new Identifier("count"));
+        tokens.put("options", new Text("cache=16"));
+
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs(tokens));
+        for (int i = 0; i < 100; i++) {
+            directive.execute(createDirtyRows(), TestUtils.createContext(false));
+        }
+
+        Row aggregateRow = directive.execute(Collections.emptyList(), TestUtils.createContext(true)).get(0);
+        assertEquals(4000.0, aggregateRow.getValue("total_size_mb"));
+        assertEquals(700.0, aggregateRow.getValue("total_time_sec"));
+        assertEquals(300L, aggregateRow.getValue(AggregateStatsDirective.INVALID_COUNT_COLUMN));
+    }
+
+    @Test
+    public void testSharedInstanceAcrossThreads() throws Exception {
+        final int threads = 8;
+        final int batches = 500;
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs(
+            "size", "time", "total_size_mb", "total_time_sec", "count"
+        ));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int b = 0; b < batches; b++) {
+                    directive.execute(createDirtyRows(), TestUtils.createContext(false));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        Row aggregateRow = directive.execute(Collections.emptyList(), TestUtils.createContext(true)).get(0);
+        long batchesRun = (long) threads * batches;
+        assertEquals(40.0 * batchesRun, aggregateRow.getValue("total_size_mb"));
+        assertEquals(7.0 * batchesRun, aggregateRow.getValue("total_time_sec"));
+        assertEquals(3L * batchesRun, aggregateRow.getValue(AggregateStatsDirective.INVALID_COUNT_COLUMN));
+        assertEquals(4L * batchesRun, directive.getState().getRowCount());
+    }
+
+    @Test
+    public void testDurationPercentiles() throws Exception {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("byteSizeColumn", new ColumnName("size"));
+        tokens.put("timeDurationColumn", new ColumnName("time"));
+        tokens.put("totalSizeColumn", new Text("total_size_mb"));
+        tokens.put("totalTimeColumn", new Text("total_time_sec"));
+        tokens.put("options", new Text("percentiles=p50, p99, max"));
+
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs(tokens));
+        List<Row> rows = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            rows.add(new Row("size", "1KB").add("time", i + "s"));
+        }
+        directive.execute(rows, TestUtils.createContext(false));
+
+        Row aggregateRow = directive.execute(Collections.emptyList(), TestUtils.createContext(true)).get(0);
+        assertEquals(5050.0, aggregateRow.getValue("total_time_sec"));
+        assertEquals(50.0, (Double) aggregateRow.getValue("total_time_sec_p50"), 50.0 / 256);
+        assertEquals(99.0, (Double) aggregateRow.getValue("total_time_sec_p99"), 99.0 / 256);
+        assertEquals(100.0, aggregateRow.getValue("total_time_sec_max"));
+    }
+
+    @Test(expected = DirectiveParseException.class)
+    public void testInvalidPercentile() throws Exception {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("byteSizeColumn", new ColumnName("size"));
+        tokens.put("timeDurationColumn", new ColumnName("time"));
+        tokens.put("totalSizeColumn", new Text("total_size_mb"));
+        tokens.put("totalTimeColumn", new Text("total_time_sec"));
+        tokens.put("options", new Text("percentiles=p50,p101"));
+        new AggregateStatsDirective().initialize(TestUtils.createArgs(tokens));
+    }
+
+    @Test
+    public void testDistinctCount() throws Exception {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("byteSizeColumn", new ColumnName("size"));
+        tokens.put("timeDurationColumn", new ColumnName("time"));
+        tokens.put("totalSizeColumn", new Text("total_size_mb"));
+        tokens.put("totalTimeColumn", new Text("total_time_sec"));
+        tokens.put("onError", new Identifier("skip"));
+        tokens.put("options", new Text("distinct=client; precision=14"));
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs(tokens));
+
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            rows.add(new Row("size", "1KB").add("time", "1ms").add("client", "client-" + (i % 5_000)));
+        }
+        // Skipped rows and null clients do not count
+        rows.add(new Row("size", "bad").add("time", "1ms").add("client", "skipped"));
+        rows.add(new Row("size", "1KB").add("time", "1ms").add("client", null));
+        directive.execute(rows, TestUtils.createContext(false));
+        Row row = directive.execute(Collections.emptyList(), TestUtils.createContext(true)).get(0);
+        assertEquals(5_000.0, ((Number) row.getValue("client_distinct")).doubleValue(), 5_000 * 0.03);
+    }
+
+    @Test
+    public void testTopRowsAlongsideTotals() throws Exception {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("byteSizeColumn", new ColumnName("size"));
+        tokens.put("timeDurationColumn", new ColumnName("time"));
+        tokens.put("totalSizeColumn", new Text("total_size_mb"));
+        tokens.put("totalTimeColumn", new Text("total_time_sec"));
+        tokens.put("onError", new Identifier("skip"));
+        tokens.put("options", new Text("top=2; top-by=size"));
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs(tokens));
+
+        directive.execute(Arrays.asList(
+            new Row("id", 1).add("size", "1MB").add("time", "1s"),
+            new Row("id", 2).add("size", "3MB").add("time", "1s"),
+            // Skipped rows and null sizes are not ranked
+            new Row("id", 3).add("size", "9MB").add("time", "soon"),
+            new Row("id", 4).add("size", null).add("time", "1s")), TestUtils.createContext(false));
+        directive.execute(Arrays.asList(
+            new Row("id", 5).add("size", 2L * 1024 * 1024).add("time", "1s"),
+            new Row("id", 6).add("size", "3MB").add("time", "1s")), TestUtils.createContext(false));
+        List<Row> result = directive.execute(Collections.emptyList(), TestUtils.createContext(true));
+
+        assertEquals(3, result.size());
+        assertEquals(9.0, result.get(0).getValue("total_size_mb"));
+        assertEquals(5.0, result.get(0).getValue("total_time_sec"));
+        // Largest first, and the earlier row wins a tie
+        assertEquals(2, result.get(1).getValue("id"));
+        assertEquals(6, result.get(2).getValue("id"));
+    }
+
+    @Test
+    public void testFailedBatchLeavesSketchesUnchanged() throws Exception {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("byteSizeColumn", new ColumnName("size"));
+        tokens.put("timeDurationColumn", new ColumnName("time"));
+        tokens.put("totalSizeColumn", new Text("total_size_mb"));
+        tokens.put("totalTimeColumn", new Text("total_time_sec"));
+        tokens.put("options", new Text("percentiles=p50,max; distinct=client; top=1"));
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs(tokens));
+
+        directive.execute(Arrays.asList(
+            new Row("size", "1KB").add("time", "1s").add("client", "a"),
+            new Row("size", "1KB").add("time", "1s").add("client", "b")), TestUtils.createContext(false));
+        try {
+            // The valid rows before the invalid one must not reach the histogram, sketch or top rows
+            directive.execute(Arrays.asList(
+                new Row("size", "1KB").add("time", "1h").add("client", "c"),
+                new Row("size", "1KB").add("time", "1h").add("client", "d"),
+                new Row("size", "lots").add("time", "1s").add("client", "e")), TestUtils.createContext(false));
+            fail("Expected the invalid row to fail the batch");
+        } catch (DirectiveExecutionException e) {
+            // expected
+        }
+        List<Row> result = directive.execute(Collections.emptyList(), TestUtils.createContext(true));
+        Row row = result.get(0);
+        assertEquals(2.0, row.getValue("total_time_sec"));
+        assertEquals(1.0, ((Number) row.getValue("total_time_sec_max")).doubleValue(), 0.01);
+        assertEquals(2L, row.getValue("client_distinct"));
+        assertEquals("a", result.get(1).getValue("client"));
+    }
+
+    @Test(expected = DirectiveParseException.class)
+    public void testInvalidDistinctPrecision() throws Exception {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("byteSizeColumn", new ColumnName("size"));
+        tokens.put("timeDurationColumn", new ColumnName("time"));
+        tokens.put("totalSizeColumn", new Text("total_size_mb"));
+        tokens.put("totalTimeColumn", new Text("total_time_sec"));
+        tokens.put("options", new Text("distinct=client; precision=30"));
+        new AggregateStatsDirective().initialize(TestUtils.createArgs(tokens));
+    }
+
+    @Test
+    public void testInvalidOptions() {
+        String[] specs = {"cache", "cache=-1", "cache=lots", "size=4", "cache=1; cache=2", "output=draft",
+                          "precision=14", "distinct=", "top=-1", "top-by=size", "top=3; top-by=rows",
+                          "top=3; output=partial"};
+        for (String spec : specs) {
+            Map<String, Token> tokens = new HashMap<>();
+            tokens.put("byteSizeColumn", new ColumnName("size"));
+            tokens.put("timeDurationColumn", new ColumnName("time"));
+            tokens.put("totalSizeColumn", new Text("total_size_mb"));
+            tokens.put("totalTimeColumn", new Text("total_time_sec"));
+            tokens.put("options", new Text(spec));
+            try {
+                new AggregateStatsDirective().initialize(TestUtils.createArgs(tokens));
+                fail("Expected options '" + spec + "' to be rejected");
+            } catch (DirectiveParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testColumnarBatch() throws Exception {
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs("size", "time", "total_size_mb", "total_time_sec"));
+
+        // Typed long cells are taken as bytes and nanoseconds without parsing
+        ColumnVector sizes = ColumnVector.ofLongs(new long[] {1024L * 1024L, 0, 3L * 1024L * 1024L}, new long[] {2L});
+        ColumnVector times = ColumnVector.ofText(new CharSequence[] {"1s", "500ms", null});
+        ColumnBatch batch = ColumnBatch.of(Arrays.asList("size", "time"), sizes, times);
+        List<Row> result = directive.execute(batch, TestUtils.createContext(false));
+        assertEquals(3, result.size());
+        assertNull(result.get(1).getValue("size"));
+
+        directive.execute(createDirtyRows().subList(0, 1), TestUtils.createContext(false));
+        Row aggregateRow = directive.execute(Collections.emptyList(), TestUtils.createContext(true)).get(0);
+        assertEquals(14.0, aggregateRow.getValue("total_size_mb"));
+        assertEquals(2.5, aggregateRow.getValue("total_time_sec"));
+    }
+
+    @Test
+    public void testMixedColumnMatchesRowPath() throws Exception {
+        // Typed cells next to text ones, as left by parse-as-bytes on some rows only
+        Object[] sizes = {"1MB", 1048576L, 2 * 1048576, "512KB", null};
+        Object[] times = {1_000_000_000L, "500ms", "1s", 250_000_000, "0s"};
+        List<Row> rows = new ArrayList<>();
+        long bytes = 0;
+        long nanos = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            rows.add(new Row("size", sizes[i]).add("time", times[i]));
+            bytes += UnitCells.bytes(sizes[i]);
+            nanos += UnitCells.nanos(times[i]);
+        }
+
+        ColumnBatch batch = ColumnBatch.fromRows(rows, "size", "time");
+        assertArrayEquals(new long[] {1048576L, 1048576L, 2097152L, 524288L, 0L},
+                          UnitCells.values(batch.column("size"), ByteSize::tryParseBytes));
+
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs("size", "time", "total_size_mb", "total_time_sec"));
+        directive.execute(rows, TestUtils.createContext(false));
+        Row aggregateRow = directive.execute(Collections.emptyList(), TestUtils.createContext(true)).get(0);
+        assertEquals(bytes / (1024.0 * 1024.0), aggregateRow.getValue("total_size_mb"));
+        assertEquals(nanos / 1e9, aggregateRow.getValue("total_time_sec"));
+        assertEquals(4.5, aggregateRow.getValue("total_size_mb"));
+    }
+
+    @Test(expected = DirectiveExecutionException.class)
+    public void testNegativeLongCellFails() throws Exception {
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs("size", "time", "total_size_mb", "total_time_sec"));
+        ColumnBatch batch = ColumnBatch.of(
+            Arrays.asList("size", "time"),
+            ColumnVector.ofLongs(new long[] {-1L}, new long[1]), ColumnVector.ofLongs(new long[] {1L}, new long[1]));
+        directive.execute(batch, TestUtils.createContext(false));
+    }
+
+    @Test
+    public void testParallelMatchesSequential() throws Exception {
+        List<Row> sequentialRows = createLargeRows(50_000);
+        List<Row> parallelRows = createLargeRows(50_000);
+        AggregateStatsDirective sequential = new AggregateStatsDirective();
+        sequential.initialize(TestUtils.createArgs(parallelTokens("skip", 0)));
+        AggregateStatsDirective parallel = new AggregateStatsDirective();
+        parallel.initialize(TestUtils.createArgs(parallelTokens("skip", 10_000)));
+
+        List<Row> sequentialKept = sequential.execute(sequentialRows, TestUtils.createContext(false));
+        List<Row> parallelKept = parallel.execute(parallelRows, TestUtils.createContext(false));
+        assertEquals(sequentialKept.size(), parallelKept.size());
+        for (int i = 0; i < sequentialKept.size(); i++) {
+            assertEquals(sequentialKept.get(i).getValue("id"), parallelKept.get(i).getValue("id"));
+        }
+
+        List<Row> expectedRows = sequential.execute(Collections.emptyList(), TestUtils.createContext(true));
+        List<Row> actualRows = parallel.execute(Collections.emptyList(), TestUtils.createContext(true));
+        assertEquals(6, actualRows.size());
+        for (int i = 1; i < expectedRows.size(); i++) {
+            assertEquals(expectedRows.get(i).getValue("id"), actualRows.get(i).getValue("id"));
+        }
+        Row expected = expectedRows.get(0);
+        Row actual = actualRows.get(0);
+        for (String column : new String[] {"total_size_mb", "total_time_sec", "invalid_count",
+                                           "total_time_sec_p50", "total_time_sec_p99", "client_distinct"}) {
+            assertEquals(column, expected.getValue(column), actual.getValue(column));
+        }
+        assertEquals(sequential.getState().getRowCount(), parallel.getState().getRowCount());
+    }
+
+    @Test
+    public void testParallelFailReportsFirstInvalidRow() throws Exception {
+        List<Row> rows = createLargeRows(50_000);
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs(parallelTokens("fail", 1_000)));
+        try {
+            directive.execute(rows, TestUtils.createContext(false));
+            fail("Expected the invalid row to fail the batch");
+        } catch (DirectiveExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("row 97:"));
+        }
+        assertEquals(0L, directive.getState().getRowCount());
+    }
+
+    @Test(expected = DirectiveParseException.class)
+    public void testNegativeParallelBatchSize() throws Exception {
+        new AggregateStatsDirective().initialize(TestUtils.createArgs(parallelTokens("skip", -1)));
+    }
+
+    private static Map<String, Token> parallelTokens(String onError, int parallelBatchSize) {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("byteSizeColumn", new ColumnName("size"));
+        tokens.put("timeDurationColumn", new ColumnName("time"));
+        tokens.put("totalSizeColumn", new Text("total_size_mb"));
+        tokens.put("totalTimeColumn", new Text("total_time_sec"));
+        tokens.put("onError", new Identifier(onError));
+        tokens.put("options", new Text("percentiles=p50,p99; distinct=client; top=5; parallel=" + parallelBatchSize));
+        return tokens;
+    }
+
+    private static List<Row> createLargeRows(int count) {
+        List<Row> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String size = i % 97 == 96 ? "lots" : (i % 13) + "." + (i % 10) + "MB";
+            rows.add(new Row("id", i).add("size", size).add("time", (i % 1000) + "ms").add("client", "c" + (i % 600)));
+        }
+        return rows;
+    }
+
+    private static List<Row> createDirtyRows() {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("size", "10MB").add("time", "1s"));
+        rows.add(new Row("size", "garbage").add("time", "4s"));
+        rows.add(new Row("size", "30MB").add("time", "2s"));
+        rows.add(new Row("size", "-5MB").add("time", "x"));
+        return rows;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class BoundedTopKTest {
+
+    @Test
+    public void testMatchesFullSort() {
+        Random random = new Random(42);
+        long[] keys = new long[10_000];
+        BoundedTopK<Integer> heap = new BoundedTopK<>(100);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextInt(1_000_000);
+            heap.offer(keys[i], i);
+        }
+        List<Integer> top = heap.sorted();
+        assertEquals(100, top.size());
+
+        long[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        for (int r = 0; r < top.size(); r++) {
+            assertEquals(sorted[sorted.length - 1 - r], keys[top.get(r)]);
+        }
+    }
+
+    @Test
+    public void testGrowsUpToK() {
+        BoundedTopK<Integer> heap = new BoundedTopK<>(BoundedTopK.MAX_K);
+        for (int i = 0; i < 1000; i++) {
+            heap.offer(i, i);
+        }
+        assertEquals(1000, heap.size());
+        assertEquals(Integer.valueOf(999), heap.sorted().get(0));
+
+        BoundedTopK<Integer> small = new BoundedTopK<>(20);
+        for (int i = 0; i < 100; i++) {
+            small.offer(i, i);
+        }
+        assertEquals(20, small.size());
+        assertEquals(Integer.valueOf(80), small.sorted().get(19));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testKAboveLimit() {
+        new BoundedTopK<>(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testCombineKeepsLargest() {
+        BoundedTopK<String> left = new BoundedTopK<>(3);
+        BoundedTopK<String> right = new BoundedTopK<>(3);
+        left.offer(5, "a");
+        left.offer(1, "b");
+        right.offer(9, "c");
+        right.offer(5, "d");
+        right.offer(2, "e");
+        BoundedTopK<String> merged = new BoundedTopK<>(3);
+        merged.combine(left);
+        merged.combine(right);
+        assertEquals(new ArrayList<>(Arrays.asList("c", "a", "d")), merged.sorted());
+        // Sorting leaves the heap intact
+        assertEquals(3, merged.size());
+        assertEquals(merged.sorted(), merged.sorted());
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ColumnStatsTest {
+
+    @Test
+    public void testWelfordIsStableForLargeOffsets() {
+        // The naive sum of squares loses every digit of the variance at this magnitude
+        ColumnStats stats = new ColumnStats(1);
+        long base = 1_000_000_000_000L;
+        for (long v : new long[] {4, 7, 13, 16}) {
+            stats.add(0, base + v);
+        }
+        assertEquals(4L, stats.count(0));
+        assertEquals(30.0, stats.variance(0), 1e-6);
+    }
+
+    @Test
+    public void testCombineMatchesSinglePass() {
+        ColumnStats whole = new ColumnStats(2);
+        ColumnStats left = new ColumnStats(2);
+        ColumnStats right = new ColumnStats(2);
+        for (int i = 0; i < 1000; i++) {
+            long value = (i * 7919L) % 1013;
+            whole.add(i % 2, value);
+            (i < 300 ? left : right).add(i % 2, value);
+        }
+        right.addInvalid(1);
+        left.combine(right);
+        for (int c = 0; c < 2; c++) {
+            assertEquals(whole.count(c), left.count(c));
+            assertEquals(whole.sum(c), left.sum(c));
+            assertEquals(whole.min(c), left.min(c));
+            assertEquals(whole.max(c), left.max(c));
+            assertEquals(whole.mean(c), left.mean(c), 1e-9);
+            assertEquals(whole.variance(c), left.variance(c), 1e-6);
+        }
+        assertEquals(1L, left.invalidCount(1));
+    }
+
+    @Test
+    public void testCombineIntoEmpty() {
+        ColumnStats empty = new ColumnStats(1);
+        ColumnStats other = new ColumnStats(1);
+        other.add(0, 5);
+        other.add(0, 9);
+        empty.combine(other);
+        assertEquals(5L, empty.min(0));
+        assertEquals(7.0, empty.mean(0), 0);
+        assertEquals(8.0, empty.variance(0), 0);
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ColumnName;
+import io.cdap.wrangler.api.parser.ColumnNameList;
+import io.cdap.wrangler.api.parser.Identifier;
+import io.cdap.wrangler.api.parser.Text;
+import io.cdap.wrangler.api.parser.Token;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class GroupedAggregateStatsDirectiveTest {
+
+    @Test
+    public void testGroupsByTwoKeys() throws Exception {
+        GroupedAggregateStatsDirective directive = createDirective("tenant", "host");
+        List<Row> rows = new ArrayList<>();
+        rows.add(row("a", "h1", "10MB", "1s"));
+        rows.add(row("b", "h1", "1MB", "3s"));
+        rows.add(row("a", "h1", "30MB", "2s"));
+        rows.add(row("a", "h2", "5MB", "0.5s"));
+        rows.add(row("a", null, "1MB", "1s"));
+
+        assertEquals(rows, directive.execute(rows, TestUtils.createContext(false)));
+        List<Row> result = directive.execute(Collections.emptyList(), TestUtils.createContext(true));
+        assertEquals(4, result.size());
+
+        Row first = result.get(0);
+        assertEquals("a", first.getValue("tenant"));
+        assertEquals("h1", first.getValue("host"));
+        assertEquals(2L, first.getValue(GroupedAggregateStatsDirective.COUNT_COLUMN));
+        assertEquals(40.0, first.getValue("total_size_mb"));
+        assertEquals(10.0, first.getValue("total_size_mb_min"));
+        assertEquals(30.0, first.getValue("total_size_mb_max"));
+        assertEquals(3.0, first.getValue("total_time_sec"));
+        assertEquals(1.0, first.getValue("total_time_sec_min"));
+        assertEquals(2.0, first.getValue("total_time_sec_max"));
+
+        assertEquals("b", result.get(1).getValue("tenant"));
+        assertEquals("h2", result.get(2).getValue("host"));
+        assertNull(result.get(3).getValue("host"));
+        assertEquals(1L, result.get(3).getValue(GroupedAggregateStatsDirective.COUNT_COLUMN));
+    }
+
+    @Test
+    public void testNullAndInvalidCellsAreSkippedPerColumn() throws Exception {
+        Map<String, Token> tokens = createTokens("tenant");
+        tokens.put("onError", new Identifier("count"));
+        GroupedAggregateStatsDirective directive = new GroupedAggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs(tokens));
+        List<Row> rows = new ArrayList<>();
+        rows.add(row("a", "h1", "10MB", "2s"));
+        rows.add(row("a", "h1", null, "1s"));
+        rows.add(row("a", "h1", "4MB", "lots"));
+        rows.add(row("b", "h1", null, "3s"));
+        directive.execute(rows, TestUtils.createContext(false));
+        List<Row> result = directive.execute(Collections.emptyList(), TestUtils.createContext(true));
+
+        Row a = result.get(0);
+        assertEquals(3L, a.getValue(GroupedAggregateStatsDirective.COUNT_COLUMN));
+        assertEquals(2L, a.getValue("total_size_mb_count"));
+        assertEquals(14.0, a.getValue("total_size_mb"));
+        assertEquals(4.0, a.getValue("total_size_mb_min"));
+        assertEquals(10.0, a.getValue("total_size_mb_max"));
+        assertEquals(2L, a.getValue("total_time_sec_count"));
+        assertEquals(1.0, a.getValue("total_time_sec_min"));
+        assertEquals(1L, directive.getInvalidCount());
+
+        Row b = result.get(1);
+        assertEquals(1L, b.getValue(GroupedAggregateStatsDirective.COUNT_COLUMN));
+        assertEquals(0L, b.getValue("total_size_mb_count"));
+        assertEquals(0.0, b.getValue("total_size_mb"));
+        assertNull(b.getValue("total_size_mb_min"));
+        assertNull(b.getValue("total_size_mb_max"));
+        assertEquals(3.0, b.getValue("total_time_sec_max"));
+    }
+
+    @Test
+    public void testErrorModeCountsInvalidRowOfLastBatch() throws Exception {
+        Map<String, Token> tokens = createTokens("tenant");
+        tokens.put("onError", new Identifier("error"));
+        GroupedAggregateStatsDirective directive = new GroupedAggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs(tokens));
+        directive.execute(new ArrayList<>(Collections.singletonList(row("a", "h1", "1MB", "1s"))),
+                          TestUtils.createContext(false));
+        List<Row> result = directive.execute(
+            new ArrayList<>(Arrays.asList(row("a", "h1", "1MB", "never"), row("b", "h1", "2MB", "2s"))),
+            TestUtils.createContext(true));
+        assertEquals(2, result.size());
+        assertEquals(1L, result.get(0).getValue(GroupedAggregateStatsDirective.COUNT_COLUMN));
+        assertEquals(1L, result.get(1).getValue(GroupedAggregateStatsDirective.COUNT_COLUMN));
+        assertEquals(1L, directive.getInvalidCount());
+    }
+
+    @Test
+    public void testManyGroupsAcrossBatches() throws Exception {
+        GroupedAggregateStatsDirective directive = createDirective("id");
+        for (int batch = 0; batch < 3; batch++) {
+            List<Row> rows = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++) {
+                rows.add(new Row("id", "req-" + i).add("size", (i % 7 + 1) + "KB").add("time", "1s"));
+            }
+            directive.execute(rows, TestUtils.createContext(false));
+        }
+
+        List<Row> result = directive.execute(Collections.emptyList(), TestUtils.createContext(true));
+        assertEquals(10_000, result.size());
+        for (int i = 0; i < result.size(); i++) {
+            Row group = result.get(i);
+            assertEquals("req-" + i, group.getValue("id"));
+            assertEquals(3L, group.getValue(GroupedAggregateStatsDirective.COUNT_COLUMN));
+            assertEquals(3 * (i % 7 + 1) / 1024.0, (Double) group.getValue("total_size_mb"), 1e-9);
+        }
+    }
+
+    @Test
+    public void testCombineTables() {
+        String[] keys = {"k"};
+        GroupStatsTable left = new GroupStatsTable(1);
+        GroupStatsTable right = new GroupStatsTable(1);
+        left.add(left.group(new Row("k", "x"), keys), 10, 100);
+        right.add(right.group(new Row("k", "y"), keys), 1, 1);
+        right.add(right.group(new Row("k", "x"), keys), 5, 500);
+        right.add(right.group(new Row("k", "x"), keys), -1, 50);
+
+        left.combine(right);
+        assertEquals(2, left.size());
+        int x = left.group(new Row("k", "x"), keys);
+        assertEquals(3L, left.count(x));
+        assertEquals(2L, left.bytesCount(x));
+        assertEquals(15L, left.bytesSum(x));
+        assertEquals(5L, left.bytesMin(x));
+        assertEquals(3L, left.nanosCount(x));
+        assertEquals(50L, left.nanosMin(x));
+        assertEquals(500L, left.nanosMax(x));
+    }
+
+    @Test
+    public void testMemoryBudgetSpillsToDisk() throws Exception {
+        Map<String, Token> tokens = createTokens("id");
+        tokens.put("options", new Text("budget=1MB"));
+        GroupedAggregateStatsDirective directive = new GroupedAggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs(tokens));
+        for (int batch = 0; batch < 2; batch++) {
+            List<Row> rows = new ArrayList<>();
+            for (int i = 0; i < 50_000; i++) {
+                rows.add(new Row("id", "req-" + i).add("size", "1KB").add("time", (batch + 1) + "s"));
+            }
+            directive.execute(rows, TestUtils.createContext(false));
+        }
+
+        List<Row> result = directive.execute(Collections.emptyList(), TestUtils.createContext(true));
+        assertEquals(50_000, result.size());
+        Set<Object> ids = new HashSet<>();
+        for (Row group : result) {
+            ids.add(group.getValue("id"));
+            assertEquals(2L, group.getValue(GroupedAggregateStatsDirective.COUNT_COLUMN));
+            assertEquals(2 / 1024.0, (Double) group.getValue("total_size_mb"), 1e-12);
+            assertEquals(3.0, group.getValue("total_time_sec"));
+            assertEquals(1.0, group.getValue("total_time_sec_min"));
+            assertEquals(2.0, group.getValue("total_time_sec_max"));
+        }
+        assertEquals(50_000, ids.size());
+    }
+
+    @Test
+    public void testInvalidOptions() {
+        String[] specs = {"budget=1KB", "budget=lots", "budget", "memory=1GB", "budget=1MB; budget=2MB"};
+        for (String spec : specs) {
+            Map<String, Token> tokens = createTokens("id");
+            tokens.put("options", new Text(spec));
+            try {
+                new GroupedAggregateStatsDirective().initialize(TestUtils.createArgs(tokens));
+                fail("Expected options '" + spec + "' to be rejected");
+            } catch (DirectiveParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = DirectiveExecutionException.class)
+    public void testInvalidValueFails() throws Exception {
+        GroupedAggregateStatsDirective directive = createDirective("tenant", "host");
+        directive.execute(Collections.singletonList(row("a", "h1", "lots", "1s")), TestUtils.createContext(false));
+    }
+
+    private static Row row(String tenant, String host, String size, String time) {
+        return new Row("tenant", tenant).add("host", host).add("size", size).add("time", time);
+    }
+
+    private static GroupedAggregateStatsDirective createDirective(String... keys) throws Exception {
+        GroupedAggregateStatsDirective directive = new GroupedAggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs(createTokens(keys)));
+        return directive;
+    }
+
+    private static Map<String, Token> createTokens(String... keys) {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("keyColumns", new ColumnNameList(Arrays.asList(keys)));
+        tokens.put("byteSizeColumn", new ColumnName("size"));
+        tokens.put("timeDurationColumn", new ColumnName("time"));
+        tokens.put("totalSizeColumn", new Text("total_size_mb"));
+        tokens.put("totalTimeColumn", new Text("total_time_sec"));
+        return tokens;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class HyperLogLogTest {
+
+    @Test
+    public void testSmallCardinalitiesAreNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog();
+        assertEquals(0L, sketch.estimate());
+        for (int i = 0; i < 100; i++) {
+            sketch.add("host-" + (i % 10));
+        }
+        assertEquals(10L, sketch.estimate());
+    }
+
+    @Test
+    public void testLargeCardinalityWithinError() {
+        for (int precision : new int[] {10, 12, 14}) {
+            HyperLogLog sketch = new HyperLogLog(precision);
+            int distinct = 1_000_000;
+            for (int i = 0; i < distinct; i++) {
+                sketch.add(i);
+            }
+            double error = 1.04 / Math.sqrt(1 << precision);
+            // Four standard errors keep the test deterministic in practice for a fixed hash
+            assertEquals(distinct, sketch.estimate(), distinct * error * 4);
+        }
+    }
+
+    @Test
+    public void testNumbersHashLikeTheirText() {
+        HyperLogLog numbers = new HyperLogLog(4);
+        HyperLogLog texts = new HyperLogLog(4);
+        for (long value : new long[] {0, 7, -42, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            numbers.add(value);
+            texts.add(Long.toString(value));
+        }
+        assertArrayEquals(texts.toBytes(), numbers.toBytes());
+    }
+
+    @Test
+    public void testCombineEqualsSingleSketch() {
+        HyperLogLog whole = new HyperLogLog();
+        HyperLogLog left = new HyperLogLog();
+        HyperLogLog right = new HyperLogLog();
+        for (int i = 0; i < 50_000; i++) {
+            String value = "client-" + i;
+            whole.add(value);
+            (i % 3 == 0 ? left : right).add(value);
+        }
+        left.combine(HyperLogLog.fromBytes(right.toBytes()));
+        assertArrayEquals(whole.toBytes(), left.toBytes());
+        assertEquals(whole.estimate(), left.estimate());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCombineRejectsOtherPrecision() {
+        new HyperLogLog(10).combine(new HyperLogLog(11));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsTruncatedEncoding() {
+        HyperLogLog.fromBytes(new byte[] {12, 0, 0});
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class LogHistogramTest {
+
+    @Test
+    public void testQuantilesWithinErrorBound() {
+        Random random = new Random(42);
+        long[] values = new long[100_000];
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 0; i < values.length; i++) {
+            // Log-normal-ish latencies from microseconds to tens of seconds
+            values[i] = (long) Math.exp(7 + random.nextGaussian() * 3) + 1;
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        double bound = Math.pow(2, -(LogHistogram.DEFAULT_PRECISION + 1));
+        for (double q : new double[] {0.01, 0.5, 0.9, 0.95, 0.99, 0.999}) {
+            long exact = values[(int) Math.ceil(q * values.length) - 1];
+            long estimate = histogram.quantile(q);
+            assertTrue("q=" + q + " exact=" + exact + " estimate=" + estimate,
+                       Math.abs(estimate - exact) <= bound * exact);
+        }
+        assertEquals(values[0], histogram.quantile(0));
+        assertEquals(values[values.length - 1], histogram.quantile(1));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LogHistogram histogram = new LogHistogram();
+        for (long v = 0; v < 100; v++) {
+            histogram.record(v);
+        }
+        assertEquals(49L, histogram.quantile(0.5));
+        assertEquals(98L, histogram.quantile(0.99));
+    }
+
+    @Test
+    public void testCombineMatchesSingleHistogram() {
+        Random random = new Random(7);
+        LogHistogram all = new LogHistogram();
+        LogHistogram left = new LogHistogram();
+        LogHistogram right = new LogHistogram();
+        for (int i = 0; i < 10_000; i++) {
+            long value = Math.abs(random.nextLong() >>> random.nextInt(60));
+            all.record(value);
+            (i % 3 == 0 ? left : right).record(value);
+        }
+        LogHistogram merged = LogHistogram.fromBytes(left.toBytes()).combine(LogHistogram.fromBytes(right.toBytes()));
+        assertEquals(all.getCount(), merged.getCount());
+        for (double q : new double[] {0, 0.25, 0.5, 0.75, 0.99, 1}) {
+            assertEquals(all.quantile(q), merged.quantile(q));
+        }
+    }
+
+    @Test
+    public void testEmptyHistogram() {
+        LogHistogram histogram = new LogHistogram();
+        assertEquals(0L, histogram.quantile(0.99));
+        assertEquals(0L, histogram.getMax());
+        assertEquals(0L, LogHistogram.fromBytes(histogram.toBytes()).getCount());
+    }
+
+    @Test
+    public void testLargestValue() {
+        LogHistogram histogram = new LogHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(Long.MAX_VALUE / 3);
+        assertEquals(Long.MAX_VALUE, histogram.quantile(1));
+        long estimate = histogram.quantile(0.5);
+        assertTrue(Math.abs(estimate - Long.MAX_VALUE / 3) <= (Long.MAX_VALUE / 3) / 256);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCombineDifferentPrecision() {
+        new LogHistogram(5).combine(new LogHistogram(7));
+    }
+}
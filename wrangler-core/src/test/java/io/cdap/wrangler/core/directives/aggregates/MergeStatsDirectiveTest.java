@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ColumnName;
+import io.cdap.wrangler.api.parser.Text;
+import io.cdap.wrangler.api.parser.Token;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MergeStatsDirectiveTest {
+
+    @Test
+    public void testMergePartitionPartials() throws Exception {
+        List<Row> partials = new ArrayList<>();
+        partials.addAll(aggregatePartition("10MB", "1s", "20MB", "2s"));
+        partials.addAll(aggregatePartition("30MB", "0.5s"));
+        partials.addAll(aggregatePartition());
+        assertEquals(3, partials.size());
+
+        MergeStatsDirective merge = new MergeStatsDirective();
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("partialColumn", new ColumnName(AggregateStatsDirective.PARTIAL_COLUMN));
+        tokens.put("totalSizeColumn", new Text("total_size_mb"));
+        tokens.put("totalTimeColumn", new Text("total_time_sec"));
+        tokens.put("percentiles", new Text("min,max"));
+        tokens.put("distinctColumn", new ColumnName("host"));
+        merge.initialize(TestUtils.createArgs(tokens));
+
+        assertTrue(merge.execute(partials.subList(0, 2), TestUtils.createContext(false)).isEmpty());
+        List<Row> result = merge.execute(partials.subList(2, 3), TestUtils.createContext(true));
+        assertEquals(1, result.size());
+        assertEquals(60.0, result.get(0).getValue("total_size_mb"));
+        assertEquals(3.5, result.get(0).getValue("total_time_sec"));
+        assertEquals(0.5, result.get(0).getValue("total_time_sec_min"));
+        assertEquals(2.0, result.get(0).getValue("total_time_sec_max"));
+        assertEquals(3L, merge.getState().getRowCount());
+        // Hosts h0 and h2 in the first partition and h0 again in the second
+        assertEquals(2L, result.get(0).getValue("host_distinct"));
+    }
+
+    @Test
+    public void testStateRoundTripAndCombine() {
+        AggregateStatsState left = new AggregateStatsState();
+        left.add(1024, 1_000);
+        left.addInvalid(2);
+        AggregateStatsState right = new AggregateStatsState();
+        right.add(2048, 500);
+        right.add(1, 1);
+
+        AggregateStatsState decoded = AggregateStatsState.fromBytes(left.toBytes());
+        assertEquals(AggregateStatsState.ENCODED_SIZE, left.toBytes().length);
+        decoded.combine(right);
+        assertEquals(3073L, decoded.getTotalBytes());
+        assertEquals(1_501L, decoded.getTotalNanos());
+        assertEquals(3L, decoded.getRowCount());
+        assertEquals(2L, decoded.getInvalidCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStateRejectsTruncatedEncoding() {
+        AggregateStatsState.fromBytes(new byte[3]);
+    }
+
+    private static List<Row> aggregatePartition(String... sizesAndTimes) throws Exception {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("byteSizeColumn", new ColumnName("size"));
+        tokens.put("timeDurationColumn", new ColumnName("time"));
+        tokens.put("totalSizeColumn", new Text("total_size_mb"));
+        tokens.put("totalTimeColumn", new Text("total_time_sec"));
+        tokens.put("options", new Text("output=partial; percentiles=p50; distinct=host"));
+
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs(tokens));
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < sizesAndTimes.length; i += 2) {
+            rows.add(new Row("size", sizesAndTimes[i]).add("time", sizesAndTimes[i + 1]).add("host", "h" + i));
+        }
+        directive.execute(rows, TestUtils.createContext(false));
+        return directive.execute(Collections.emptyList(), TestUtils.createContext(true));
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.Identifier;
+import io.cdap.wrangler.api.parser.Text;
+import io.cdap.wrangler.api.parser.Token;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class MultiColumnAggregateStatsDirectiveTest {
+
+    private static final String SPEC = "size:MB:count,sum,min,max; time:ms:mean,stddev";
+
+    @Test
+    public void testWideLayout() throws Exception {
+        MultiColumnAggregateStatsDirective directive = create(SPEC, null, null);
+        List<Row> rows = createRows();
+        assertSame(rows, directive.execute(rows, TestUtils.createContext(false)));
+
+        List<Row> result = directive.execute(Collections.emptyList(), TestUtils.createContext(true));
+        assertEquals(1, result.size());
+        Row row = result.get(0);
+        assertEquals(6, row.width());
+        assertEquals(3L, row.getValue("size_count"));
+        assertEquals(7.0, row.getValue("size_sum"));
+        assertEquals(1.0, row.getValue("size_min"));
+        assertEquals(4.0, row.getValue("size_max"));
+        // Durations 100, 200, 300 and 400 ms; the null size does not stop the time from counting
+        assertEquals(250.0, (Double) row.getValue("time_mean"), 1e-9);
+        assertEquals(Math.sqrt(50_000.0 / 3), (Double) row.getValue("time_stddev"), 1e-9);
+    }
+
+    @Test
+    public void testTallLayout() throws Exception {
+        MultiColumnAggregateStatsDirective directive = create(SPEC, "tall", null);
+        List<Row> rows = createRows();
+        rows.addAll(createRows());
+        List<Row> result = directive.execute(rows, TestUtils.createContext(true));
+        assertEquals(2, result.size());
+        assertEquals("size", result.get(0).getValue("column"));
+        assertEquals("MB", result.get(0).getValue("unit"));
+        assertEquals(6L, result.get(0).getValue("count"));
+        assertEquals(14.0, result.get(0).getValue("sum"));
+        assertEquals("time", result.get(1).getValue("column"));
+        assertEquals(250.0, (Double) result.get(1).getValue("mean"), 1e-9);
+        assertNull(result.get(1).getValue("sum"));
+    }
+
+    @Test
+    public void testEmptyStatisticsAreNull() throws Exception {
+        MultiColumnAggregateStatsDirective directive = create("size:KB:count,sum,mean,stddev", null, null);
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("size", "2KB"));
+        Row row = directive.execute(rows, TestUtils.createContext(true)).get(0);
+        assertEquals(1L, row.getValue("size_count"));
+        assertEquals(2.0, row.getValue("size_mean"));
+        assertNull(row.getValue("size_stddev"));
+    }
+
+    @Test
+    public void testCountInvalidCells() throws Exception {
+        MultiColumnAggregateStatsDirective directive = create(SPEC, null, "count");
+        List<Row> rows = createRows();
+        rows.add(new Row("size", "lots").add("time", "1s"));
+        List<Row> result = directive.execute(rows, TestUtils.createContext(false));
+        assertEquals(5, result.size());
+        Row row = directive.execute(Collections.emptyList(), TestUtils.createContext(true)).get(0);
+        assertEquals(3L, row.getValue("size_count"));
+        assertEquals(1L, row.getValue("size_invalid_count"));
+        assertEquals(0L, row.getValue("time_invalid_count"));
+        assertEquals(400.0, (Double) row.getValue("time_mean"), 1e-9);
+    }
+
+    @Test
+    public void testSkipInvalidRows() throws Exception {
+        MultiColumnAggregateStatsDirective directive = create(SPEC, null, "skip");
+        List<Row> rows = createRows();
+        rows.add(1, new Row("size", "1MB").add("time", "-1s"));
+        List<Row> result = directive.execute(rows, TestUtils.createContext(false));
+        assertEquals(4, result.size());
+        Row row = directive.execute(Collections.emptyList(), TestUtils.createContext(true)).get(0);
+        assertEquals(3L, row.getValue("size_count"));
+        assertEquals(250.0, (Double) row.getValue("time_mean"), 1e-9);
+    }
+
+    @Test
+    public void testErrorModeCountsInvalidRowOfLastBatch() throws Exception {
+        MultiColumnAggregateStatsDirective directive = create(SPEC, null, "error");
+        List<Row> rows = createRows();
+        rows.add(new Row("size", "1MB").add("time", "soon"));
+        List<Row> result = directive.execute(rows, TestUtils.createContext(true));
+        assertEquals(1, result.size());
+        assertEquals(3L, result.get(0).getValue("size_count"));
+        assertEquals(1L, result.get(0).getValue("time_invalid_count"));
+    }
+
+    @Test(expected = DirectiveExecutionException.class)
+    public void testFailOnInvalid() throws Exception {
+        List<Row> rows = createRows();
+        rows.add(new Row("size", "1MB").add("time", "soon"));
+        create(SPEC, null, null).execute(rows, TestUtils.createContext(false));
+    }
+
+    @Test
+    public void testInvalidSpecs() {
+        String[] specs = {"size:MB", "size:XB:sum", "size:MB:median", ":MB:sum", "size:MB:sum;time:KB:avg"};
+        for (String spec : specs) {
+            try {
+                create(spec, null, null);
+                fail("Expected spec '" + spec + "' to be rejected");
+            } catch (DirectiveParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = DirectiveParseException.class)
+    public void testInvalidLayout() throws Exception {
+        create(SPEC, "diagonal", null);
+    }
+
+    private static MultiColumnAggregateStatsDirective create(String spec, String layout, String onError)
+        throws DirectiveParseException {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("columns", new Text(spec));
+        if (layout != null) {
+            tokens.put("options", new Text("layout=" + layout));
+        }
+        if (onError != null) {
+            tokens.put("onError", new Identifier(onError));
+        }
+        MultiColumnAggregateStatsDirective directive = new MultiColumnAggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs(tokens));
+        return directive;
+    }
+
+    private static List<Row> createRows() {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("size", "1MB").add("time", "100ms"));
+        rows.add(new Row("size", "2MB").add("time", "0.2s"));
+        rows.add(new Row("size", null).add("time", "300ms"));
+        rows.add(new Row("size", "4096KB").add("time", "400ms"));
+        return rows;
+    }
+}
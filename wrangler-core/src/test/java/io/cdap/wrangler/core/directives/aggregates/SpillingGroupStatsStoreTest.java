@@ -0,0 +1,215 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import io.cdap.wrangler.api.Row;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+public class SpillingGroupStatsStoreTest {
+    private static final String[] KEYS = {"tenant", "host"};
+
+    @Test
+    public void testSpillsAndMergesRuns() throws Exception {
+        Path directory = Files.createTempDirectory("spill-test");
+        Map<String, long[]> expected = new HashMap<>();
+        try (SpillingGroupStatsStore store = new SpillingGroupStatsStore(2, 4096, directory)) {
+            for (int i = 0; i < 5_000; i++) {
+                String tenant = "t" + (i * 7919 % 997);
+                String host = i % 3 == 0 ? null : "h" + (i % 2);
+                // Every fifth size is missing, which leaves the size statistics alone
+                long bytes = i % 5 == 4 ? -1 : i % 101;
+                long nanos = i * 1000L;
+                store.add(new Row("tenant", tenant).add("host", host), KEYS, bytes, nanos);
+
+                long[] stats = expected.computeIfAbsent(
+                    tenant + "/" + host, k -> new long[SpillingGroupStatsStore.STATS]);
+                stats[SpillingGroupStatsStore.COUNT]++;
+                if (bytes >= 0) {
+                    boolean first = stats[SpillingGroupStatsStore.BYTES_COUNT]++ == 0;
+                    stats[SpillingGroupStatsStore.BYTES_SUM] += bytes;
+                    stats[SpillingGroupStatsStore.BYTES_MIN] = first ? bytes
+                        : Math.min(stats[SpillingGroupStatsStore.BYTES_MIN], bytes);
+                    stats[SpillingGroupStatsStore.BYTES_MAX] = first ? bytes
+                        : Math.max(stats[SpillingGroupStatsStore.BYTES_MAX], bytes);
+                }
+                boolean first = stats[SpillingGroupStatsStore.NANOS_COUNT]++ == 0;
+                stats[SpillingGroupStatsStore.NANOS_SUM] += nanos;
+                stats[SpillingGroupStatsStore.NANOS_MIN] = first ? nanos
+                    : Math.min(stats[SpillingGroupStatsStore.NANOS_MIN], nanos);
+                stats[SpillingGroupStatsStore.NANOS_MAX] = first ? nanos
+                    : Math.max(stats[SpillingGroupStatsStore.NANOS_MAX], nanos);
+            }
+            assertTrue(store.spillCount() > 1);
+
+            List<Row> rows = store.finish((key, stats) -> new Row("key", key[0] + "/" + key[1])
+                .add("stats", stats));
+            assertEquals(expected.size(), rows.size());
+            List<String> seen = new ArrayList<>();
+            for (Row row : rows) {
+                String key = (String) row.getValue("key");
+                seen.add(key);
+                assertArrayEquals(key, expected.get(key), (long[]) row.getValue("stats"));
+            }
+            assertEquals(expected.size(), seen.stream().distinct().count());
+            assertEquals(seen.get(1), rows.get(1).getValue("key"));
+            // The merge leaves only the file the groups are read from, which close deletes
+            assertFileCount(directory, 1);
+            assertEquals(0, store.spillCount());
+        }
+        assertFileCount(directory, 0);
+    }
+
+    @Test
+    public void testMergesInBoundedPasses() throws Exception {
+        Path directory = Files.createTempDirectory("spill-test");
+        try (SpillingGroupStatsStore store = new SpillingGroupStatsStore(1, 4096, directory, 3)) {
+            for (int i = 0; i < 3_000; i++) {
+                store.add(new Row("k", "key" + (i % 500)), new String[]{"k"}, i, 1);
+            }
+            assertTrue(store.spillCount() > 9);
+            List<Row> rows = store.finish((key, stats) -> new Row("k", key[0]).add("count", stats[0]));
+            assertEquals(500, rows.size());
+            for (Row row : rows) {
+                assertEquals(6L, row.getValue("count"));
+            }
+            assertFileCount(directory, 1);
+        }
+        assertFileCount(directory, 0);
+    }
+
+    @Test
+    public void testReadsMergedGroupsLazily() throws Exception {
+        Path directory = Files.createTempDirectory("spill-test");
+        int groups = 50_000;
+        int[] built = new int[1];
+        try (SpillingGroupStatsStore store = new SpillingGroupStatsStore(1, 4096, directory)) {
+            // Far more groups than the 4KB budget holds
+            for (int i = 0; i < groups; i++) {
+                store.add(new Row("k", "key" + i), new String[]{"k"}, i, 1);
+            }
+            assertTrue(store.spillCount() > 100);
+            List<Row> rows = store.finish((key, stats) -> {
+                built[0]++;
+                return new Row("k", key[0]).add("bytes", stats[SpillingGroupStatsStore.BYTES_SUM]);
+            });
+            assertEquals(groups, rows.size());
+            assertEquals(0, built[0]);
+
+            // Rows are built one at a time as they are read, and none are kept by the list
+            long total = 0;
+            for (int i = 0; i < rows.size(); i++) {
+                total += (Long) rows.get(i).getValue("bytes");
+                assertEquals(i + 1, built[0]);
+            }
+            assertEquals((long) groups * (groups - 1) / 2, total);
+            assertEquals(rows.get(0).getValue("k"), rows.iterator().next().getValue("k"));
+        }
+        assertFileCount(directory, 0);
+    }
+
+    @Test
+    public void testAllocatesBudgetOnFirstAdd() throws Exception {
+        Path directory = Files.createTempDirectory("spill-test");
+        List<SpillingGroupStatsStore> stores = new ArrayList<>();
+        try {
+            // Allocated up front, 64 budgets of 1GB would not fit in direct memory
+            for (int i = 0; i < 64; i++) {
+                stores.add(new SpillingGroupStatsStore(1, 1L << 30, directory));
+            }
+            assertEquals(Collections.emptyList(), stores.get(0).finish((key, stats) -> new Row()));
+        } finally {
+            stores.forEach(SpillingGroupStatsStore::close);
+        }
+    }
+
+    @Test
+    public void testAddsAfterFinish() throws Exception {
+        Path directory = Files.createTempDirectory("spill-test");
+        try (SpillingGroupStatsStore store = new SpillingGroupStatsStore(1, 4096, directory)) {
+            store.add(new Row("k", "a"), new String[]{"k"}, 1, 1);
+            assertEquals(1, store.finish((key, stats) -> new Row("k", key[0])).size());
+            store.add(new Row("k", "b"), new String[]{"k"}, 1, 1);
+            store.add(new Row("k", "c"), new String[]{"k"}, 1, 1);
+            List<Row> rows = store.finish((key, stats) -> new Row("k", key[0]));
+            assertEquals(Arrays.asList("b", "c"), Arrays.asList(rows.get(0).getValue("k"), rows.get(1).getValue("k")));
+            // The file of the first result is gone
+            assertFileCount(directory, 1);
+        }
+    }
+
+    @Test
+    public void testCloseDeletesUnmergedRuns() throws Exception {
+        Path directory = Files.createTempDirectory("spill-test");
+        SpillingGroupStatsStore store = new SpillingGroupStatsStore(1, 4096, directory);
+        for (int i = 0; i < 1_000; i++) {
+            store.add(new Row("k", "key" + i), new String[]{"k"}, 1, 1);
+        }
+        assertTrue(store.spillCount() > 0);
+        store.close();
+        assertFileCount(directory, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFanInTooSmall() throws Exception {
+        new SpillingGroupStatsStore(1, 4096, Files.createTempDirectory("spill-test"), 1);
+    }
+
+    private static void assertFileCount(Path directory, long expected) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(expected, files.count());
+        }
+    }
+
+    @Test
+    public void testGroupsWithoutSpilling() throws Exception {
+        Path directory = Files.createTempDirectory("spill-test");
+        try (SpillingGroupStatsStore store = new SpillingGroupStatsStore(1, 1 << 20, directory)) {
+            for (String key : Arrays.asList("b", "é", "a", "b", "10")) {
+                store.add(new Row("k", key), new String[]{"k"}, 1, 1);
+            }
+            assertEquals(0, store.spillCount());
+            List<Object> keys = new ArrayList<>();
+            List<Object> counts = new ArrayList<>();
+            for (Row row : store.finish((key, stats) -> new Row("k", key[0]).add("count", stats[0]))) {
+                keys.add(row.getValue("k"));
+                counts.add(row.getValue("count"));
+            }
+            // Groups come back ordered by their length-prefixed UTF-8 encoding
+            assertEquals(Arrays.asList("a", "b", "10", "é"), keys);
+            assertEquals(Arrays.asList(1L, 2L, 1L, 1L), counts);
+        }
+    }
+
+    @Test
+    public void testEmptyStore() throws Exception {
+        Path directory = Files.createTempDirectory("spill-test");
+        try (SpillingGroupStatsStore store = new SpillingGroupStatsStore(1, 1 << 20, directory)) {
+            assertEquals(Collections.emptyList(), store.finish((key, stats) -> new Row()));
+        }
+    }
+}
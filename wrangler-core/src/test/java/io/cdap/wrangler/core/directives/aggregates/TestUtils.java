@@ -1,49 +1,64 @@
 package io.cdap.wrangler.core.directives.aggregates;
 
+import io.cdap.cdap.etl.api.StageMetrics;
 import io.cdap.wrangler.api.Arguments;
 import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.TransientStore;
 import io.cdap.wrangler.api.parser.ColumnName;
+import io.cdap.wrangler.api.parser.Identifier;
 import io.cdap.wrangler.api.parser.Text;
-import io.cdap.wrangler.api.parser.TokenType;
-import io.cdap.wrangler.api.parser.UsageDefinition;
+import io.cdap.wrangler.api.parser.Token;
 
+import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
 
 public class TestUtils {
     public static Arguments createArgs(String byteSizeColumn, String timeDurationColumn, 
                                      String totalSizeColumn, String totalTimeColumn) {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("byteSizeColumn", new ColumnName(byteSizeColumn));
+        tokens.put("timeDurationColumn", new ColumnName(timeDurationColumn));
+        tokens.put("totalSizeColumn", new Text(totalSizeColumn));
+        tokens.put("totalTimeColumn", new Text(totalTimeColumn));
+        return createArgs(tokens);
+    }
+
+    public static Arguments createArgs(String byteSizeColumn, String timeDurationColumn,
+                                     String totalSizeColumn, String totalTimeColumn, String onError) {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("byteSizeColumn", new ColumnName(byteSizeColumn));
+        tokens.put("timeDurationColumn", new ColumnName(timeDurationColumn));
+        tokens.put("totalSizeColumn", new Text(totalSizeColumn));
+        tokens.put("totalTimeColumn", new Text(totalTimeColumn));
+        tokens.put("onError", new Identifier(onError));
+        return createArgs(tokens);
+    }
+
+    public static Arguments createArgs(Map<String, Token> tokens) {
         return new Arguments() {
             @Override
             public int size() {
-                return 4;
+                return tokens.size();
             }
 
             @Override
             public boolean contains(String name) {
-                return name.equals("byteSizeColumn") || name.equals("timeDurationColumn") ||
-                       name.equals("totalSizeColumn") || name.equals("totalTimeColumn");
+                return tokens.containsKey(name);
             }
 
             @Override
             public <T> T value(String name) {
-                switch (name) {
-                    case "byteSizeColumn":
-                        return (T) new ColumnName(byteSizeColumn);
-                    case "timeDurationColumn":
-                        return (T) new ColumnName(timeDurationColumn);
-                    case "totalSizeColumn":
-                        return (T) new Text(totalSizeColumn);
-                    case "totalTimeColumn":
-                        return (T) new Text(totalTimeColumn);
-                    default:
-                        return null;
-                }
+                return (T) tokens.get(name);
             }
         };
     }
 
     public static ExecutorContext createContext(boolean isLast) {
+        return createContext(isLast, null);
+    }
+
+    public static ExecutorContext createContext(boolean isLast, StageMetrics metrics) {
         return new ExecutorContext() {
             @Override
             public String getNamespace() {
@@ -57,7 +72,7 @@ public class TestUtils {
 
             @Override
             public StageMetrics getMetrics() {
-                return null;
+                return metrics;
             }
 
             @Override
@@ -0,0 +1,155 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ColumnName;
+import io.cdap.wrangler.api.parser.Identifier;
+import io.cdap.wrangler.api.parser.Numeric;
+import io.cdap.wrangler.api.parser.Token;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TopKDirectiveTest {
+
+    @Test
+    public void testLargestPayloadsAcrossBatches() throws Exception {
+        TopKDirective directive = create("size", 3, "bytes", null);
+        List<Row> first = new ArrayList<>();
+        first.add(new Row("id", 1).add("size", "10KB"));
+        first.add(new Row("id", 2).add("size", "1MB"));
+        first.add(new Row("id", 3).add("size", null));
+        assertTrue(directive.execute(first, TestUtils.createContext(false)).isEmpty());
+
+        List<Row> second = new ArrayList<>();
+        second.add(new Row("id", 4).add("size", "512B"));
+        second.add(new Row("id", 5).add("size", 2048L));
+        second.add(new Row("id", 6).add("size", "1.5MB"));
+        List<Row> result = directive.execute(second, TestUtils.createContext(true));
+        assertEquals(3, result.size());
+        assertEquals(6, result.get(0).getValue("id"));
+        assertEquals(2, result.get(1).getValue("id"));
+        assertEquals(1, result.get(2).getValue("id"));
+    }
+
+    @Test
+    public void testSlowestRequestsKeepArrivalOrderOnTies() throws Exception {
+        TopKDirective directive = create("time", 2, "duration", null);
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("id", 1).add("time", "1s"));
+        rows.add(new Row("id", 2).add("time", "1000ms"));
+        rows.add(new Row("id", 3).add("time", "1s"));
+        rows.add(new Row("id", 4).add("time", "250ms"));
+        List<Row> result = directive.execute(rows, TestUtils.createContext(true));
+        assertEquals(2, result.size());
+        assertEquals(1, result.get(0).getValue("id"));
+        assertEquals(2, result.get(1).getValue("id"));
+    }
+
+    @Test
+    public void testFewerRowsThanK() throws Exception {
+        TopKDirective directive = create("time", 10, "duration", null);
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("time", "1m"));
+        assertEquals(1, directive.execute(rows, TestUtils.createContext(true)).size());
+        assertTrue(create("time", 10, "duration", null)
+                       .execute(Collections.emptyList(), TestUtils.createContext(true)).isEmpty());
+    }
+
+    @Test
+    public void testSkipInvalid() throws Exception {
+        TopKDirective directive = create("size", 5, "bytes", "skip");
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("size", "1h"));
+        rows.add(new Row("size", "1KB"));
+        assertEquals(1, directive.execute(rows, TestUtils.createContext(true)).size());
+        assertEquals(1, directive.getInvalidCount());
+    }
+
+    @Test(expected = DirectiveExecutionException.class)
+    public void testFailOnInvalid() throws Exception {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("size", "-1KB"));
+        create("size", 5, "bytes", null).execute(rows, TestUtils.createContext(false));
+    }
+
+    @Test
+    public void testErrorModeCountsInvalidRowOfLastBatch() throws Exception {
+        TopKDirective directive = create("size", 5, "bytes", "error");
+        List<Row> rows = new ArrayList<>(Arrays.asList(new Row("size", "1KB"), new Row("size", "huge")));
+        List<Row> result = directive.execute(rows, TestUtils.createContext(true));
+        assertEquals(1, result.size());
+        assertEquals("1KB", result.get(0).getValue("size"));
+        assertEquals(1L, directive.getInvalidCount());
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        Object[][] cases = {{0L, "bytes"}, {-3L, "bytes"}, {5L, "rows"}, {BoundedTopK.MAX_K + 1L, "bytes"}};
+        for (Object[] args : cases) {
+            try {
+                create("size", (Long) args[0], (String) args[1], null);
+                fail("Expected " + args[0] + " " + args[1] + " to be rejected");
+            } catch (DirectiveParseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testOversizedKReportsBound() {
+        try {
+            create("size", Integer.MAX_VALUE, "bytes", null);
+            fail("Expected k above the limit to be rejected");
+        } catch (DirectiveParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("between 1 and " + BoundedTopK.MAX_K));
+        }
+    }
+
+    @Test
+    public void testLargestSupportedK() throws Exception {
+        List<Row> rows = new ArrayList<>(Arrays.asList(new Row("size", "1KB"), new Row("size", "2KB")));
+        List<Row> result = create("size", BoundedTopK.MAX_K, "bytes", null)
+            .execute(rows, TestUtils.createContext(true));
+        assertEquals("2KB", result.get(0).getValue("size"));
+        assertEquals(2, result.size());
+    }
+
+    private static TopKDirective create(String column, long k, String kind, String onError)
+        throws DirectiveParseException {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("column", new ColumnName(column));
+        tokens.put("k", new Numeric(k));
+        tokens.put("kind", new Identifier(kind));
+        if (onError != null) {
+            tokens.put("onError", new Identifier(onError));
+        }
+        TopKDirective directive = new TopKDirective();
+        directive.initialize(TestUtils.createArgs(tokens));
+        return directive;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.core.directives.aggregates;
+
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ColumnName;
+import io.cdap.wrangler.api.parser.Text;
+import io.cdap.wrangler.api.parser.TimeDuration;
+import io.cdap.wrangler.api.parser.Token;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class WindowedAggregateStatsDirectiveTest {
+
+    @Test
+    public void testTumblingWindowsEmitWhenWatermarkPasses() throws Exception {
+        WindowedAggregateStatsDirective directive = createDirective("1m", null);
+
+        List<Row> first = directive.execute(Arrays.asList(
+            row(0L, "30MB", "1s"),
+            row(59_999L, "30MB", "2s"),
+            row(60_000L, "6MB", "0.5s")), TestUtils.createContext(false));
+        assertEquals(1, first.size());
+        Row window = first.get(0);
+        assertEquals(0L, window.getValue(WindowedAggregateStatsDirective.WINDOW_START_COLUMN));
+        assertEquals(60_000L, window.getValue(WindowedAggregateStatsDirective.WINDOW_END_COLUMN));
+        assertEquals(2L, window.getValue(WindowedAggregateStatsDirective.COUNT_COLUMN));
+        assertEquals(60.0, window.getValue("total_size_mb"));
+        assertEquals(3.0, window.getValue("total_time_sec"));
+        assertEquals(1.0, window.getValue("total_size_mb_per_sec"));
+        assertEquals(1, directive.getOpenWindowCount());
+
+        List<Row> last = directive.execute(Collections.emptyList(), TestUtils.createContext(true));
+        assertEquals(1, last.size());
+        assertEquals(60_000L, last.get(0).getValue(WindowedAggregateStatsDirective.WINDOW_START_COLUMN));
+        assertEquals(0.5, last.get(0).getValue("total_time_sec"));
+        assertEquals(0, directive.getOpenWindowCount());
+    }
+
+    @Test
+    public void testSlidingWindowsOverlap() throws Exception {
+        WindowedAggregateStatsDirective directive = createDirective("1m", "30s");
+        List<Row> windows = new ArrayList<>(directive.execute(
+            Arrays.asList(row(45_000L, "1MB", "1s"), row(70_000L, "2MB", "1s")), TestUtils.createContext(false)));
+        assertEquals(1, windows.size());
+        windows.addAll(directive.execute(Collections.emptyList(), TestUtils.createContext(true)));
+
+        // 45s belongs to [0s, 60s) and [30s, 90s); 70s to [30s, 90s) and [60s, 120s)
+        List<Long> starts = new ArrayList<>();
+        List<Long> counts = new ArrayList<>();
+        for (Row window : windows) {
+            starts.add((Long) window.getValue(WindowedAggregateStatsDirective.WINDOW_START_COLUMN));
+            counts.add((Long) window.getValue(WindowedAggregateStatsDirective.COUNT_COLUMN));
+        }
+        assertEquals(Arrays.asList(0L, 30_000L, 60_000L), starts);
+        assertEquals(Arrays.asList(1L, 2L, 1L), counts);
+    }
+
+    @Test
+    public void testLateRowsAreDropped() throws Exception {
+        WindowedAggregateStatsDirective directive = createDirective("10s", null);
+        List<Row> emitted = directive.execute(Arrays.asList(
+            row(1_000L, "1MB", "1s"),
+            row(25_000L, "1MB", "1s"),
+            row(2_000L, "1MB", "1s")), TestUtils.createContext(false));
+        assertEquals(1, emitted.size());
+        assertEquals(1L, emitted.get(0).getValue(WindowedAggregateStatsDirective.COUNT_COLUMN));
+        assertEquals(1L, directive.getLateCount());
+    }
+
+    @Test
+    public void testTimestampTypes() throws Exception {
+        WindowedAggregateStatsDirective directive = createDirective("1s", null);
+        directive.execute(Arrays.asList(
+            new Row("ts", Instant.ofEpochMilli(100)).add("size", "1KB").add("time", "1s"),
+            new Row("ts", "1970-01-01T00:00:00.200Z").add("size", "1KB").add("time", "1s"),
+            new Row("ts", "300").add("size", "1KB").add("time", "1s")), TestUtils.createContext(false));
+        List<Row> windows = directive.execute(Collections.emptyList(), TestUtils.createContext(true));
+        assertEquals(1, windows.size());
+        assertEquals(3L, windows.get(0).getValue(WindowedAggregateStatsDirective.COUNT_COLUMN));
+    }
+
+    @Test(expected = DirectiveExecutionException.class)
+    public void testInvalidTimestamp() throws Exception {
+        createDirective("1m", null).execute(Collections.singletonList(row("yesterday", "1MB", "1s")),
+                                            TestUtils.createContext(false));
+    }
+
+    @Test(expected = DirectiveParseException.class)
+    public void testSlideLongerThanWindow() throws Exception {
+        createDirective("10s", "1m");
+    }
+
+    private static Row row(Object timestamp, String size, String time) {
+        return new Row("ts", timestamp).add("size", size).add("time", time);
+    }
+
+    private static WindowedAggregateStatsDirective createDirective(String window, String slide) throws Exception {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("timestampColumn", new ColumnName("ts"));
+        tokens.put("byteSizeColumn", new ColumnName("size"));
+        tokens.put("timeDurationColumn", new ColumnName("time"));
+        tokens.put("totalSizeColumn", new Text("total_size_mb"));
+        tokens.put("totalTimeColumn", new Text("total_time_sec"));
+        tokens.put("windowSize", TimeDuration.parse(window));
+        if (slide != null) {
+            tokens.put("options", new Text("slide=" + slide));
+        }
+        WindowedAggregateStatsDirective directive = new WindowedAggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs(tokens));
+        return directive;
+    }
+}
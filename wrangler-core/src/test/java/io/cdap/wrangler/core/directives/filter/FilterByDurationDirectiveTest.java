@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.directives.filter;
+
+import io.cdap.wrangler.api.ErrorRowException;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ColumnName;
+import io.cdap.wrangler.api.parser.Identifier;
+import io.cdap.wrangler.api.parser.TimeDuration;
+import io.cdap.wrangler.api.parser.Token;
+import io.cdap.wrangler.core.directives.aggregates.TestUtils;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FilterByDurationDirectiveTest {
+
+    @Test
+    public void testKeepsSlowRows() throws Exception {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("time", "120ms"));
+        rows.add(new Row("time", "1h30m"));
+        rows.add(new Row("time", "501ms"));
+        rows.add(new Row("time", "500ms"));
+        rows.add(new Row("time", null));
+        List<Row> result = create("gt", null).execute(rows, TestUtils.createContext(false));
+        assertEquals(2, result.size());
+        assertEquals("1h30m", result.get(0).getValue("time"));
+        assertEquals("501ms", result.get(1).getValue("time"));
+    }
+
+    @Test
+    public void testTypedCells() throws Exception {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("time", 400_000_000L));
+        rows.add(new Row("time", 600_000_000L));
+        List<Row> result = create("le", null).execute(rows, TestUtils.createContext(false));
+        assertEquals(1, result.size());
+        assertEquals(400_000_000L, result.get(0).getValue("time"));
+    }
+
+    @Test(expected = ErrorRowException.class)
+    public void testErrorMode() throws Exception {
+        create("gt", "error").execute(
+            Collections.singletonList(new Row("time", "soon")), TestUtils.createContext(false));
+    }
+
+    private static FilterByDurationDirective create(String comparison, String onError) throws Exception {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("column", new ColumnName("time"));
+        tokens.put("comparison", new Identifier(comparison));
+        tokens.put("threshold", TimeDuration.parse("500ms"));
+        if (onError != null) {
+            tokens.put("onError", new Identifier(onError));
+        }
+        FilterByDurationDirective directive = new FilterByDurationDirective();
+        directive.initialize(TestUtils.createArgs(tokens));
+        return directive;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.directives.filter;
+
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ByteSize;
+import io.cdap.wrangler.api.parser.ColumnName;
+import io.cdap.wrangler.api.parser.Identifier;
+import io.cdap.wrangler.api.parser.Text;
+import io.cdap.wrangler.api.parser.Token;
+import io.cdap.wrangler.core.directives.aggregates.TestUtils;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FilterBySizeDirectiveTest {
+
+    @Test
+    public void testKeepsMatchingRows() throws Exception {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("size", "512KB"));
+        rows.add(new Row("size", "1MB"));
+        rows.add(new Row("size", "3GB"));
+        rows.add(new Row("size", 2L << 20));
+        rows.add(new Row("other", "x"));
+        List<Row> result = create("ge", ByteSize.parse("1MB"), null).execute(rows, TestUtils.createContext(false));
+        assertEquals(3, result.size());
+        assertEquals("1MB", result.get(0).getValue("size"));
+        assertEquals("3GB", result.get(1).getValue("size"));
+        assertEquals(2L << 20, result.get(2).getValue("size"));
+    }
+
+    @Test
+    public void testAllRowsKeptReturnsInput() throws Exception {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("size", "10MB"));
+        rows.add(new Row("size", "20MB"));
+        FilterBySizeDirective directive = create("lt", new Text("1GB"), null);
+        assertSame(rows, directive.execute(rows, TestUtils.createContext(false)));
+    }
+
+    @Test(expected = DirectiveExecutionException.class)
+    public void testFailOnInvalid() throws Exception {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("size", "ten megabytes"));
+        create("gt", ByteSize.parse("1MB"), null).execute(rows, TestUtils.createContext(false));
+    }
+
+    @Test
+    public void testSkipInvalid() throws Exception {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("size", "2MB"));
+        rows.add(new Row("size", "oops"));
+        rows.add(new Row("size", "-3MB"));
+        FilterBySizeDirective directive = create("gt", ByteSize.parse("1MB"), "skip");
+        List<Row> result = directive.execute(rows, TestUtils.createContext(false));
+        assertEquals(1, result.size());
+        assertEquals(2L, directive.getInvalidCount());
+    }
+
+    @Test(expected = DirectiveParseException.class)
+    public void testInvalidComparison() throws Exception {
+        create("bigger", ByteSize.parse("1MB"), null);
+    }
+
+    private static FilterBySizeDirective create(String comparison, Token threshold, String onError)
+        throws Exception {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("column", new ColumnName("size"));
+        tokens.put("comparison", new Identifier(comparison));
+        tokens.put("threshold", threshold);
+        if (onError != null) {
+            tokens.put("onError", new Identifier(onError));
+        }
+        FilterBySizeDirective directive = new FilterBySizeDirective();
+        directive.initialize(TestUtils.createArgs(tokens));
+        return directive;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.directives.parser;
+
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.ErrorRowException;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ColumnName;
+import io.cdap.wrangler.api.parser.ColumnNameList;
+import io.cdap.wrangler.api.parser.Identifier;
+import io.cdap.wrangler.api.parser.Text;
+import io.cdap.wrangler.api.parser.Token;
+import io.cdap.wrangler.core.directives.aggregates.AggregateStatsDirective;
+import io.cdap.wrangler.core.directives.aggregates.GroupedAggregateStatsDirective;
+import io.cdap.wrangler.core.directives.aggregates.TestUtils;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ParseAsBytesDirectiveTest {
+
+    @Test
+    public void testConvertsInPlace() throws Exception {
+        ParseAsBytesDirective directive = create(null);
+        List<Row> rows = createRows();
+        List<Row> result = directive.execute(rows, TestUtils.createContext(false));
+        assertSame(rows, result);
+        assertEquals(10L * 1024 * 1024, result.get(0).getValue("size"));
+        assertEquals(1536L, result.get(1).getValue("size"));
+        assertNull(result.get(2).getValue("size"));
+        assertEquals("1s", result.get(0).getValue("time"));
+
+        // Typed cells are left alone, so converting twice changes nothing
+        directive.execute(rows, TestUtils.createContext(false));
+        assertEquals(1536L, result.get(1).getValue("size"));
+    }
+
+    @Test(expected = DirectiveExecutionException.class)
+    public void testFailOnInvalid() throws Exception {
+        List<Row> rows = createRows();
+        rows.add(new Row("size", "lots").add("time", "1s"));
+        create(null).execute(rows, TestUtils.createContext(false));
+    }
+
+    @Test
+    public void testSkipAndCountInvalid() throws Exception {
+        List<Row> rows = createRows();
+        rows.add(1, new Row("size", "-1KB").add("time", "1s"));
+        ParseAsBytesDirective skip = create("skip");
+        assertEquals(3, skip.execute(new ArrayList<>(rows), TestUtils.createContext(false)).size());
+        assertEquals(1, skip.getInvalidCount());
+
+        rows.set(1, new Row("size", "-1KB").add("time", "1s"));
+        ParseAsBytesDirective count = create("count");
+        List<Row> result = count.execute(rows, TestUtils.createContext(false));
+        assertEquals(4, result.size());
+        assertNull(result.get(1).getValue("size"));
+        assertEquals(1, count.getInvalidCount());
+    }
+
+    @Test(expected = ErrorRowException.class)
+    public void testRouteInvalidRowToErrorCollector() throws Exception {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("size", "1XB"));
+        create("error").execute(rows, TestUtils.createContext(false));
+    }
+
+    @Test(expected = DirectiveParseException.class)
+    public void testUnknownErrorMode() throws Exception {
+        create("ignore");
+    }
+
+    @Test
+    public void testAggregatesConsumeTypedColumns() throws Exception {
+        List<Row> rows = createRows();
+        create(null).execute(rows, TestUtils.createContext(false));
+        ParseAsDurationDirective durations = new ParseAsDurationDirective();
+        durations.initialize(TestUtils.createArgs(
+            Collections.<String, Token>singletonMap("column", new ColumnName("time"))));
+        durations.execute(rows, TestUtils.createContext(false));
+        assertEquals(1_000_000_000L, rows.get(0).getValue("time"));
+
+        AggregateStatsDirective aggregate = new AggregateStatsDirective();
+        aggregate.initialize(TestUtils.createArgs("size", "time", "total_size_mb", "total_time_sec"));
+        aggregate.execute(rows, TestUtils.createContext(false));
+        Row totals = aggregate.execute(Collections.emptyList(), TestUtils.createContext(true)).get(0);
+        assertEquals(10.0 + 1536.0 / (1024 * 1024), (Double) totals.getValue("total_size_mb"), 1e-12);
+        assertEquals(3.5, totals.getValue("total_time_sec"));
+
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("keyColumns", new ColumnNameList(Collections.singletonList("host")));
+        tokens.put("byteSizeColumn", new ColumnName("size"));
+        tokens.put("timeDurationColumn", new ColumnName("time"));
+        tokens.put("totalSizeColumn", new Text("total_size_mb"));
+        tokens.put("totalTimeColumn", new Text("total_time_sec"));
+        GroupedAggregateStatsDirective grouped = new GroupedAggregateStatsDirective();
+        grouped.initialize(TestUtils.createArgs(tokens));
+        List<Row> groups = grouped.execute(rows, TestUtils.createContext(true));
+        assertEquals(1, groups.size());
+        assertEquals(3.5, groups.get(0).getValue("total_time_sec"));
+    }
+
+    private static ParseAsBytesDirective create(String onError) throws DirectiveParseException {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("column", new ColumnName("size"));
+        if (onError != null) {
+            tokens.put("onError", new Identifier(onError));
+        }
+        ParseAsBytesDirective directive = new ParseAsBytesDirective();
+        directive.initialize(TestUtils.createArgs(tokens));
+        return directive;
+    }
+
+    private static List<Row> createRows() {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("size", "10MB").add("time", "1s").add("host", "a"));
+        rows.add(new Row("size", "1.5KB").add("time", "2s").add("host", "a"));
+        rows.add(new Row("size", null).add("time", "500ms").add("host", "a"));
+        return rows;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.directives.parser;
+
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ColumnName;
+import io.cdap.wrangler.api.parser.Token;
+import io.cdap.wrangler.core.directives.aggregates.TestUtils;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ParseAsDurationDirectiveTest {
+
+    @Test
+    public void testConvertsToNanos() throws Exception {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("time", "1h30m"));
+        rows.add(new Row("time", "250us"));
+        rows.add(new Row("other", "x"));
+        rows.add(new Row("time", 42L));
+        create().execute(rows, TestUtils.createContext(false));
+        assertEquals(5_400_000_000_000L, rows.get(0).getValue("time"));
+        assertEquals(250_000L, rows.get(1).getValue("time"));
+        assertNull(rows.get(2).getValue("time"));
+        assertEquals(42L, rows.get(3).getValue("time"));
+    }
+
+    @Test(expected = DirectiveExecutionException.class)
+    public void testFailOnInvalid() throws Exception {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("time", "1 fortnight"));
+        create().execute(rows, TestUtils.createContext(false));
+    }
+
+    private static ParseAsDurationDirective create() throws Exception {
+        ParseAsDurationDirective directive = new ParseAsDurationDirective();
+        directive.initialize(TestUtils.createArgs(
+            Collections.<String, Token>singletonMap("column", new ColumnName("time"))));
+        return directive;
+    }
+}
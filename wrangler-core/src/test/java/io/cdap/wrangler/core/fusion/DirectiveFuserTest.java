@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.fusion;
+
+import io.cdap.wrangler.api.Directive;
+import io.cdap.wrangler.api.parser.ColumnName;
+import io.cdap.wrangler.api.parser.Token;
+import io.cdap.wrangler.core.directives.aggregates.AggregateStatsDirective;
+import io.cdap.wrangler.core.directives.aggregates.TestUtils;
+import io.cdap.wrangler.core.directives.aggregates.TopKDirective;
+import io.cdap.wrangler.core.directives.parser.ParseAsBytesDirective;
+import io.cdap.wrangler.core.directives.parser.ParseAsDurationDirective;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class DirectiveFuserTest {
+
+    @Test
+    public void testFusesRunsOfRowLocalDirectives() throws Exception {
+        Directive bytes = parseAsBytes();
+        Directive durations = parseAsDuration();
+        Directive aggregate = new AggregateStatsDirective();
+        Directive topK = new TopKDirective();
+        Directive single = parseAsBytes();
+        Directive trailing = parseAsDuration();
+
+        List<Directive> fused = DirectiveFuser.fuse(
+            Arrays.asList(bytes, durations, aggregate, topK, single, topK, bytes, trailing));
+        assertEquals(5, fused.size());
+        FusedDirective first = (FusedDirective) fused.get(0);
+        assertEquals(2, first.stageCount());
+        assertSame(aggregate, first.sink());
+        assertSame(topK, fused.get(1));
+        // A single row-local directive without a columnar directive after it is left alone
+        assertSame(single, fused.get(2));
+        assertSame(topK, fused.get(3));
+        FusedDirective last = (FusedDirective) fused.get(4);
+        assertEquals(2, last.stageCount());
+        assertNull(last.sink());
+    }
+
+    @Test
+    public void testLeavesOtherDirectives() throws Exception {
+        Directive aggregate = new AggregateStatsDirective();
+        List<Directive> directives = Arrays.<Directive>asList(aggregate, new TopKDirective());
+        assertEquals(directives, DirectiveFuser.fuse(directives));
+        assertTrue(DirectiveFuser.fuse(Collections.<Directive>emptyList()).isEmpty());
+
+        // A columnar directive after a single row-local directive is still worth fusing
+        List<Directive> fused = DirectiveFuser.fuse(Arrays.asList(parseAsBytes(), aggregate));
+        assertEquals(1, fused.size());
+        assertEquals(1, ((FusedDirective) fused.get(0)).stageCount());
+    }
+
+    private static Directive parseAsBytes() throws Exception {
+        ParseAsBytesDirective directive = new ParseAsBytesDirective();
+        directive.initialize(TestUtils.createArgs(
+            Collections.<String, Token>singletonMap("column", new ColumnName("size"))));
+        return directive;
+    }
+
+    private static Directive parseAsDuration() throws Exception {
+        ParseAsDurationDirective directive = new ParseAsDurationDirective();
+        directive.initialize(TestUtils.createArgs(
+            Collections.<String, Token>singletonMap("column", new ColumnName("time"))));
+        return directive;
+    }
+}
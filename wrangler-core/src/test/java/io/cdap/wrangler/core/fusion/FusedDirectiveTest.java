@@ -0,0 +1,230 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.fusion;
+
+import io.cdap.wrangler.api.Directive;
+import io.cdap.wrangler.api.DirectiveExecutionException;
+import io.cdap.wrangler.api.ErrorRowException;
+import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ByteSize;
+import io.cdap.wrangler.api.parser.ColumnName;
+import io.cdap.wrangler.api.parser.Identifier;
+import io.cdap.wrangler.api.parser.Token;
+import io.cdap.wrangler.api.parser.Text;
+import io.cdap.wrangler.core.columnar.ColumnarDirective;
+import io.cdap.wrangler.core.directives.aggregates.AggregateStatsDirective;
+import io.cdap.wrangler.core.directives.aggregates.TestUtils;
+import io.cdap.wrangler.core.directives.filter.FilterByDurationDirective;
+import io.cdap.wrangler.core.directives.filter.FilterBySizeDirective;
+import io.cdap.wrangler.core.directives.parser.ParseAsBytesDirective;
+import io.cdap.wrangler.core.directives.parser.ParseAsDurationDirective;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FusedDirectiveTest {
+
+    @Test
+    public void testMatchesUnfusedExecution() throws Exception {
+        List<Directive> unfused = createRecipe();
+        List<Row> rows = createRows();
+        for (Directive directive : unfused) {
+            rows = directive.execute(rows, TestUtils.createContext(false));
+        }
+        Row expected = totals(unfused.get(3));
+
+        List<Directive> recipe = createRecipe();
+        List<Directive> fused = DirectiveFuser.fuse(recipe);
+        assertEquals(1, fused.size());
+        List<Row> output = fused.get(0).execute(createRows(), TestUtils.createContext(false));
+        Row actual = totals(recipe.get(3));
+
+        assertEquals(3, output.size());
+        assertEquals(rows.size(), output.size());
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(rows.get(i).getValue("size"), output.get(i).getValue("size"));
+            assertEquals(rows.get(i).getValue("time"), output.get(i).getValue("time"));
+        }
+
+        assertEquals(expected.getValue("total_size_mb"), actual.getValue("total_size_mb"));
+        assertEquals(expected.getValue("total_time_sec"), actual.getValue("total_time_sec"));
+        assertEquals(1, ((ParseAsBytesDirective) recipe.get(0)).getInvalidCount());
+    }
+
+    @Test
+    public void testWithoutSink() throws Exception {
+        FusedDirective fused = new FusedDirective(
+            Arrays.asList(parseAsBytes(null), filterBySize("ge", "1KB", null)), null);
+        assertNull(fused.sink());
+        assertEquals(2, fused.stageCount());
+
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("size", "2KB"));
+        rows.add(new Row("size", 4096L));
+        // Rows are passed through as they are while none is dropped
+        assertSame(rows, fused.execute(rows, TestUtils.createContext(false)));
+        assertEquals(2048L, rows.get(0).getValue("size"));
+
+        rows.add(1, new Row("size", "10B"));
+        List<Row> result = fused.execute(rows, TestUtils.createContext(false));
+        assertEquals(Arrays.asList(rows.get(0), rows.get(2)), result);
+    }
+
+    @Test
+    public void testFailureMatchesUnfusedExecution() throws Exception {
+        // The filter fails on the first row, but on its own the parser fails first, on the third row
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("size", "1KB").add("time", "later"));
+        rows.add(new Row("size", "2KB").add("time", "1s"));
+        rows.add(new Row("size", "lots").add("time", "1s"));
+        String unfused = failure(Arrays.asList(parseAsBytes(null), filterByDuration(null)), copy(rows));
+        String fused = failure(DirectiveFuser.fuse(Arrays.asList(parseAsBytes(null), filterByDuration(null))),
+                               copy(rows));
+        assertTrue(unfused, unfused.contains("row 3 of column 'size'"));
+        assertEquals(unfused, fused);
+
+        // Rows dropped by earlier stages are not counted in the row number of a later stage
+        rows.set(2, new Row("size", "3KB").add("time", "later"));
+        rows.set(0, new Row("size", "1XB").add("time", "1s"));
+        unfused = failure(Arrays.asList(parseAsBytes("skip"), filterByDuration(null)), copy(rows));
+        fused = failure(DirectiveFuser.fuse(Arrays.asList(parseAsBytes("skip"), filterByDuration(null))), copy(rows));
+        assertTrue(unfused, unfused.contains("row 2 of column 'time'"));
+        assertEquals(unfused, fused);
+    }
+
+    @Test
+    public void testErrorRowStopsLaterDirectives() throws Exception {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("size", "1KB").add("time", "later"));
+        rows.add(new Row("size", "1XB").add("time", "1s"));
+        ParseAsBytesDirective parser = parseAsBytes("error");
+        AggregateStatsDirective aggregate = aggregate();
+        FusedDirective fused = new FusedDirective(Arrays.asList(parser, filterByDuration(null)), aggregate);
+        try {
+            fused.execute(rows, TestUtils.createContext(false));
+            fail("Expected the invalid size to be routed to the error collector");
+        } catch (ErrorRowException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("column 'size'"));
+        }
+        assertEquals(1, parser.getInvalidCount());
+        // The aggregate did not see the batch
+        assertEquals(0.0, totals(aggregate).getValue("total_size_mb"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoStages() {
+        new FusedDirective(Collections.<RowLocalDirective>emptyList(), null);
+    }
+
+    private static String failure(List<Directive> directives, List<Row> rows) throws Exception {
+        try {
+            for (Directive directive : directives) {
+                rows = directive.execute(rows, TestUtils.createContext(false));
+            }
+        } catch (DirectiveExecutionException e) {
+            return e.getMessage();
+        }
+        throw new AssertionError("Expected the directives to fail");
+    }
+
+    private static List<Row> copy(List<Row> rows) {
+        List<Row> copies = new ArrayList<>();
+        for (Row row : rows) {
+            copies.add(new Row("size", row.getValue("size")).add("time", row.getValue("time")));
+        }
+        return copies;
+    }
+
+    private static Row totals(Directive aggregate) throws Exception {
+        ExecutorContext last = TestUtils.createContext(true);
+        return aggregate.execute(Collections.<Row>emptyList(), last).get(0);
+    }
+
+    private static List<Directive> createRecipe() throws Exception {
+        List<Directive> recipe = new ArrayList<>();
+        recipe.add(parseAsBytes("count"));
+        recipe.add(parseAsDuration());
+        recipe.add(filterBySize("ge", "1KB", "skip"));
+        recipe.add(aggregate());
+        assertTrue(recipe.get(3) instanceof ColumnarDirective);
+        return recipe;
+    }
+
+    private static List<Row> createRows() {
+        List<Row> rows = new ArrayList<>();
+        rows.add(new Row("size", "10MB").add("time", "1s"));
+        rows.add(new Row("size", "512B").add("time", "2s"));
+        rows.add(new Row("size", "lots").add("time", "3s"));
+        rows.add(new Row("time", "4s").add("size", "2KB"));
+        rows.add(new Row("size", 1024L).add("time", 5_000_000_000L));
+        return rows;
+    }
+
+    private static ParseAsBytesDirective parseAsBytes(String onError) throws Exception {
+        ParseAsBytesDirective directive = new ParseAsBytesDirective();
+        directive.initialize(TestUtils.createArgs(tokens("size", onError)));
+        return directive;
+    }
+
+    private static ParseAsDurationDirective parseAsDuration() throws Exception {
+        ParseAsDurationDirective directive = new ParseAsDurationDirective();
+        directive.initialize(TestUtils.createArgs(tokens("time", null)));
+        return directive;
+    }
+
+    private static FilterBySizeDirective filterBySize(String comparison, String threshold, String onError)
+        throws Exception {
+        Map<String, Token> tokens = tokens("size", onError);
+        tokens.put("comparison", new Identifier(comparison));
+        tokens.put("threshold", ByteSize.parse(threshold));
+        FilterBySizeDirective directive = new FilterBySizeDirective();
+        directive.initialize(TestUtils.createArgs(tokens));
+        return directive;
+    }
+
+    private static FilterByDurationDirective filterByDuration(String onError) throws Exception {
+        Map<String, Token> tokens = tokens("time", onError);
+        tokens.put("comparison", new Identifier("lt"));
+        tokens.put("threshold", new Text("1h"));
+        FilterByDurationDirective directive = new FilterByDurationDirective();
+        directive.initialize(TestUtils.createArgs(tokens));
+        return directive;
+    }
+
+    private static AggregateStatsDirective aggregate() throws Exception {
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs("size", "time", "total_size_mb", "total_time_sec"));
+        return directive;
+    }
+
+    private static Map<String, Token> tokens(String column, String onError) {
+        Map<String, Token> tokens = new HashMap<>();
+        tokens.put("column", new ColumnName(column));
+        if (onError != null) {
+            tokens.put("onError", new Identifier(onError));
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.metrics;
+
+import io.cdap.cdap.etl.api.StageMetrics;
+import io.cdap.wrangler.api.ExecutorContext;
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ParseCache;
+import io.cdap.wrangler.core.directives.aggregates.AggregateStatsDirective;
+import io.cdap.wrangler.core.directives.aggregates.TestUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DirectiveMetricsTest {
+
+    private static class RecordingMetrics implements StageMetrics {
+        final Map<String, Long> counts = new HashMap<>();
+        final Map<String, Long> gauges = new HashMap<>();
+
+        @Override
+        public void count(String metricName, int delta) {
+            counts.merge(metricName, (long) delta, Long::sum);
+        }
+
+        @Override
+        public void gauge(String metricName, long value) {
+            gauges.put(metricName, value);
+        }
+
+        @Override
+        public void pipelineCount(String metricName, int delta) {
+            fail("Directive metrics are stage metrics");
+        }
+
+        @Override
+        public void pipelineGauge(String metricName, long value) {
+            fail("Directive metrics are stage metrics");
+        }
+    }
+
+    @Test
+    public void testNoMetricsIsNoOp() {
+        DirectiveMetrics metrics = new DirectiveMetrics("test", 1);
+        ExecutorContext context = TestUtils.createContext(false);
+        long start = metrics.start(context);
+        assertEquals(DirectiveMetrics.NOT_TIMED, start);
+        metrics.finish(context, start, 10, 2);
+        metrics.cache(context, start, "size", ParseCache.forBytes(16));
+    }
+
+    @Test
+    public void testEveryBatchTimed() {
+        RecordingMetrics recorded = new RecordingMetrics();
+        ExecutorContext context = TestUtils.createContext(false, recorded);
+        DirectiveMetrics metrics = new DirectiveMetrics("test", 1);
+        for (int i = 0; i < 3; i++) {
+            long start = metrics.start(context);
+            assertNotEquals(DirectiveMetrics.NOT_TIMED, start);
+            metrics.finish(context, start, 100, i);
+        }
+        assertEquals(Long.valueOf(300), recorded.counts.get("test.rows"));
+        assertEquals(Long.valueOf(3), recorded.counts.get("test.invalid"));
+        assertTrue(recorded.gauges.get("test.batch.nanos") > 0);
+        assertTrue(recorded.gauges.containsKey("test.rows.per.sec"));
+    }
+
+    @Test
+    public void testNoBatchTimed() {
+        RecordingMetrics recorded = new RecordingMetrics();
+        ExecutorContext context = TestUtils.createContext(false, recorded);
+        DirectiveMetrics metrics = new DirectiveMetrics("test", 0);
+        long start = metrics.start(context);
+        assertEquals(DirectiveMetrics.NOT_TIMED, start);
+        metrics.finish(context, start, 5, 0);
+        assertEquals(Long.valueOf(5), recorded.counts.get("test.rows"));
+        assertFalse(recorded.counts.containsKey("test.invalid"));
+        assertTrue(recorded.gauges.isEmpty());
+    }
+
+    @Test
+    public void testCacheCounters() {
+        RecordingMetrics recorded = new RecordingMetrics();
+        ExecutorContext context = TestUtils.createContext(false, recorded);
+        DirectiveMetrics metrics = new DirectiveMetrics("test", 1);
+        ParseCache cache = ParseCache.forBytes(16);
+        for (String value : new String[] {"1MB", "1MB", "2MB"}) {
+            cache.parse(value, 0, value.length());
+        }
+        metrics.cache(context, metrics.start(context), "size", cache);
+        assertEquals(Long.valueOf(1), recorded.gauges.get("test.size.cache.hits"));
+        assertEquals(Long.valueOf(2), recorded.gauges.get("test.size.cache.misses"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeSampleInterval() {
+        new DirectiveMetrics("test", -1);
+    }
+
+    @Test
+    public void testAggregateStatsPublishesMetrics() throws Exception {
+        RecordingMetrics recorded = new RecordingMetrics();
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs("size", "time", "total_size", "total_time", "count"));
+        List<Row> rows = new ArrayList<>();
+        for (String size : new String[] {"1MB", "oops", "3MB"}) {
+            Row row = new Row();
+            row.add("size", size);
+            row.add("time", "1s");
+            rows.add(row);
+        }
+        directive.execute(rows, TestUtils.createContext(false, recorded));
+        directive.execute(Collections.emptyList(), TestUtils.createContext(true, recorded));
+        assertEquals(Long.valueOf(3), recorded.counts.get("aggregate-stats.rows"));
+        assertEquals(Long.valueOf(1), recorded.counts.get("aggregate-stats.invalid"));
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package io.cdap.wrangler.core.source;
+
+import io.cdap.wrangler.api.Row;
+import io.cdap.wrangler.api.parser.ByteSize;
+import io.cdap.wrangler.api.parser.TimeDuration;
+import io.cdap.wrangler.core.directives.aggregates.AggregateStatsDirective;
+import io.cdap.wrangler.core.directives.aggregates.TestUtils;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+public class MappedLogSourceTest {
+
+    private static final List<String> COLUMNS = Arrays.asList("host", null, "size", "time");
+
+    @Test
+    public void testReadsDelimitedFields() throws Exception {
+        Path file = write("a GET 12KB 340ms\r\n\nb PUT 1MB 2s extra\nc GET 5B");
+        try (MappedLogSource source = new MappedLogSource(file, ' ', COLUMNS)) {
+            assertTrue(source.hasNext());
+            List<Row> rows = source.nextBatch();
+            assertEquals(3, rows.size());
+            assertEquals(4, source.lineCount());
+            assertFalse(source.hasNext());
+            assertTrue(source.nextBatch().isEmpty());
+
+            Row first = rows.get(0);
+            assertEquals(3, first.width());
+            assertEquals("host", first.getColumn(0));
+            assertEquals("a", first.getValue(0).toString());
+            CharSequence size = (CharSequence) first.getValue("size");
+            assertTrue(size instanceof ByteSlice);
+            assertEquals(12 * 1024L, ByteSize.parseBytes(size, 0, size.length()));
+            CharSequence time = (CharSequence) first.getValue("time");
+            assertEquals(340_000_000L, TimeDuration.parseNanos(time, 0, time.length()));
+
+            assertEquals("2s", rows.get(1).getValue("time").toString());
+            // A short line still has every column
+            assertEquals("5B", rows.get(2).getValue("size").toString());
+            assertNull(rows.get(2).getValue("time"));
+            assertEquals(3, rows.get(2).width());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testBatchesAcrossWindows() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("host").append(i).append('\t').append(i).append("KB\t").append(i).append("ms\n");
+        }
+        Path file = write(text.toString());
+        try (MappedLogSource source = new MappedLogSource(file, '\t', Arrays.asList("host", "size", "time"), 7, 40)) {
+            int count = 0;
+            while (source.hasNext()) {
+                List<Row> rows = source.nextBatch();
+                assertTrue(rows.size() <= 7);
+                for (Row row : rows) {
+                    assertEquals("host" + count, row.getValue("host").toString());
+                    assertEquals(count + "ms", row.getValue("time").toString());
+                    count++;
+                }
+            }
+            assertEquals(100, count);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testStreamsIntoAggregate() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("h GET 1KB 250ms\n");
+        }
+        Path file = write(text.toString());
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs("size", "time", "total_size_mb", "total_time_sec"));
+        try (MappedLogSource source = new MappedLogSource(file, ' ', COLUMNS, 64, 1024)) {
+            List<Row> result = source.streamTo(
+                directive, TestUtils.createContext(false), TestUtils.createContext(true));
+            assertEquals(1, result.size());
+            assertEquals(1000.0 / 1024, (Double) result.get(0).getValue("total_size_mb"), 1e-12);
+            assertEquals(250.0, (Double) result.get(0).getValue("total_time_sec"), 1e-9);
+            assertEquals(1000, source.lineCount());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testStreamsPastInvalidRowsInErrorMode() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append(i == 100 ? "h GET lots 250ms\n" : "h GET 1KB 250ms\n");
+        }
+        Path file = write(text.toString());
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs("size", "time", "total_size_mb", "total_time_sec", "error"));
+        try (MappedLogSource source = new MappedLogSource(file, ' ', COLUMNS, 64, 1024)) {
+            List<Row> result = source.streamTo(
+                directive, TestUtils.createContext(false), TestUtils.createContext(true));
+            assertEquals(1, result.size());
+            assertEquals(999.0 / 1024, (Double) result.get(0).getValue("total_size_mb"), 1e-12);
+            assertEquals(1L, result.get(0).getValue(AggregateStatsDirective.INVALID_COUNT_COLUMN));
+            assertEquals(1, source.errorBatchCount());
+            assertEquals(1000, source.lineCount());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testEmptyFileStillEndsTheAggregate() throws Exception {
+        Path file = write("");
+        AggregateStatsDirective directive = new AggregateStatsDirective();
+        directive.initialize(TestUtils.createArgs("size", "time", "total_size_mb", "total_time_sec"));
+        try (MappedLogSource source = new MappedLogSource(file, ' ', COLUMNS)) {
+            assertFalse(source.hasNext());
+            List<Row> result = source.streamTo(
+                directive, TestUtils.createContext(false), TestUtils.createContext(true));
+            assertEquals(0.0, result.get(0).getValue("total_size_mb"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testLineLongerThanWindow() throws Exception {
+        Path file = write("a GET 1KB 1s\nthis line does not fit in the window\n");
+        try (MappedLogSource source = new MappedLogSource(file, ' ', COLUMNS, 10, 16)) {
+            source.nextBatch();
+            fail("Expected the long line to be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("offset 13"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidDelimiter() throws Exception {
+        new MappedLogSource(Paths.get("unused"), '\n', COLUMNS);
+    }
+
+    @Test
+    public void testByteSlice() {
+        ByteBuffer buffer = ByteBuffer.wrap("size=10MB".getBytes(StandardCharsets.US_ASCII));
+        ByteSlice slice = new ByteSlice(buffer, 5, 4);
+        assertEquals(4, slice.length());
+        assertEquals('M', slice.charAt(2));
+        assertEquals("10MB", slice.toString());
+        assertEquals("MB", slice.subSequence(2, 4).toString());
+        assertEquals(10L << 20, ByteSize.parseBytes(slice, 0, slice.length()));
+        try {
+            slice.charAt(4);
+            fail("Expected an index past the slice to be rejected");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    private static Path write(String text) throws IOException {
+        Path file = Files.createTempFile("access", ".log");
+        Files.write(file, text.getBytes(StandardCharsets.US_ASCII));
+        return file;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.parser;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class RecipeCacheTest {
+    private static final String RECIPE =
+        "aggregate-stats :data_size :response_time total_size_mb total_time_sec fail 'cache=1024'\nparse-as-bytes :data_size\n";
+
+    @Test
+    public void testMemoryHit() throws Exception {
+        RecipeCache cache = new RecipeCache(new RecipeCompiler(), 4, null);
+        CompiledRecipe first = cache.get(RECIPE);
+        assertSame(first, cache.get(RECIPE));
+        assertEquals(1L, cache.misses());
+        assertEquals(1L, cache.hits());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        RecipeCache cache = new RecipeCache(new RecipeCompiler(), 2, null);
+        cache.get("drop a\n");
+        cache.get("drop b\n");
+        cache.get("drop a\n");
+        cache.get("drop c\n");
+        cache.get("drop a\n");
+        assertEquals(3L, cache.misses());
+        cache.get("drop b\n");
+        assertEquals(4L, cache.misses());
+    }
+
+    @Test
+    public void testPersistedRecipeSkipsParsing() throws Exception {
+        Path directory = Files.createTempDirectory("recipe-cache");
+        CompiledRecipe compiled = new RecipeCache(new RecipeCompiler(), 4, directory).get(RECIPE);
+
+        RecipeCompiler compiler = new RecipeCompiler();
+        RecipeCache restarted = new RecipeCache(compiler, 4, directory);
+        assertEquals(compiled, restarted.get(RECIPE));
+        assertEquals(1L, restarted.diskHits());
+        assertEquals(0L, restarted.misses());
+    }
+
+    @Test
+    public void testCorruptFileIsRecompiled() throws Exception {
+        Path directory = Files.createTempDirectory("recipe-cache");
+        Files.write(directory.resolve(RecipeCache.hash(RECIPE) + ".recipe"), new byte[]{1, 2, 3});
+        RecipeCache cache = new RecipeCache(new RecipeCompiler(), 4, directory);
+        assertEquals(new RecipeCompiler().compile(RECIPE), cache.get(RECIPE));
+        assertEquals(1L, cache.misses());
+
+
+        RecipeCache restarted = new RecipeCache(new RecipeCompiler(), 4, directory);
+        restarted.get(RECIPE);
+        assertEquals(1L, restarted.diskHits());
+    }
+
+    @Test
+    public void testHashDependsOnContent() {
+        assertEquals(RecipeCache.hash(RECIPE), RecipeCache.hash(RECIPE));
+        assertNotEquals(RecipeCache.hash(RECIPE), RecipeCache.hash(RECIPE + " "));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2024 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package io.cdap.wrangler.parser;
+
+import io.cdap.wrangler.api.DirectiveParseException;
+import io.cdap.wrangler.api.parser.ByteSize;
+import io.cdap.wrangler.api.parser.TimeDuration;
+import io.cdap.wrangler.api.parser.TokenType;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RecipeCompilerTest {
+
+    @Test
+    public void testCompilesTypedArguments() throws Exception {
+        CompiledRecipe recipe = new RecipeCompiler().compile(
+            "// totals\n"
+            + "aggregate-stats :data_size :response_time total_size_mb total_time_sec skip 'percentiles=p99';\n"
+            + "\n"
+            + "filter-by-size :data_size ge 1.5MB\n"
+            + "aggregate-stats-window :event_time :data_size :response_time total_size_mb total_time_sec 90s\n"
+            + "top-k :response_time 20 duration\n");
+        List<CompiledDirective> directives = recipe.getDirectives();
+        assertEquals(4, directives.size());
+
+        CompiledDirective first = directives.get(0);
+        assertEquals("aggregate-stats", first.getName());
+        assertEquals(2, first.getLineNumber());
+        List<CompiledArgument> args = first.getArguments();
+        assertEquals(6, args.size());
+        assertEquals(TokenType.COLUMN, args.get(0).type());
+        assertEquals("data_size", args.get(0).value());
+        assertEquals(TokenType.IDENTIFIER, args.get(2).type());
+        assertEquals("total_size_mb", args.get(2).value());
+        assertEquals(TokenType.IDENTIFIER, args.get(4).type());
+        assertEquals(TokenType.TEXT, args.get(5).type());
+        assertEquals("percentiles=p99", args.get(5).value());
+
+        CompiledDirective second = directives.get(1);
+        assertEquals("filter-by-size", second.getName());
+        assertEquals(4, second.getLineNumber());
+        assertEquals(TokenType.BYTE_SIZE, second.getArguments().get(2).type());
+        assertEquals(1572864L, ((ByteSize) second.getArguments().get(2).value()).getBytes());
+
+        CompiledArgument window = directives.get(2).getArguments().get(5);
+        assertEquals(TokenType.TIME_DURATION, window.type());
+        assertEquals(90_000L, ((TimeDuration) window.value()).toMillis());
+        assertEquals(20L, directives.get(3).getArguments().get(1).value());
+    }
+
+    @Test
+    public void testCompilesColumnList() throws Exception {
+        CompiledRecipe recipe = new RecipeCompiler().compile(
+            "aggregate-stats-by :tenant, :end-point :data_size :response_time total_size_mb total_time_sec\n");
+        List<CompiledArgument> args = recipe.getDirectives().get(0).getArguments();
+        assertEquals(5, args.size());
+        assertEquals(TokenType.COLUMN_NAME_LIST, args.get(0).type());
+        assertEquals("tenant,end-point", args.get(0).text());
+        assertEquals(Arrays.asList("tenant", "end-point"), args.get(0).value());
+        assertEquals(TokenType.COLUMN, args.get(1).type());
+    }
+
+    @Test
+    public void testGrammarAndParsersAgreeOnUnits() throws Exception {
+        CompiledRecipe recipe = new RecipeCompiler().compile("limits 512B 2PB 1kb 250ms 10ns 1h30m 2d 1M30S\n");
+        List<CompiledArgument> args = recipe.getDirectives().get(0).getArguments();
+        assertEquals(8, args.size());
+        assertEquals(512L, ((ByteSize) args.get(0).value()).getBytes());
+        assertEquals(2L << 50, ((ByteSize) args.get(1).value()).getBytes());
+        assertEquals(1024L, ((ByteSize) args.get(2).value()).getBytes());
+        assertEquals(250_000_000L, ((TimeDuration) args.get(3).value()).getNanos());
+        assertEquals(10L, ((TimeDuration) args.get(4).value()).getNanos());
+        assertEquals(TokenType.TIME_DURATION, args.get(5).type());
+        assertEquals(5_400_000_000_000L, ((TimeDuration) args.get(5).value()).getNanos());
+        assertEquals(172_800_000L, ((TimeDuration) args.get(6).value()).toMillis());
+        assertEquals(90_000L, ((TimeDuration) args.get(7).value()).toMillis());
+    }
+
+    @Test
+    public void testSyntaxErrorReportsLine() {
+        try {
+            new RecipeCompiler().compile("drop a\n'not a directive'\n");
+            fail("Expected a parse error");
+        } catch (DirectiveParseException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Syntax error at line 2"));
+        }
+    }
+
+    @Test
+    public void testValidRecipeNeedsNoLlPass() throws Exception {
+        RecipeCompiler compiler = new RecipeCompiler();
+        compiler.compile("set_column a 1KB 2h 'x'\ndrop b\n");
+        assertEquals(0L, compiler.getLlFallbacks());
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws Exception {
+        CompiledRecipe recipe = new RecipeCompiler().compile(
+            "aggregate-stats-by :tenant,:host :size :time total_size_mb total_time_sec fail 10GB\n"
+            + "aggregate-stats-window :event_time :size :time total_size_mb total_time_sec 1.5h\n");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        recipe.writeTo(new DataOutputStream(bytes));
+
+        CompiledRecipe restored = CompiledRecipe.readFrom(
+            new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(recipe, restored);
+        assertEquals(Arrays.asList("tenant", "host"), restored.getDirectives().get(0).getArguments().get(0).value());
+        assertEquals(5_400_000L,
+                     ((TimeDuration) restored.getDirectives().get(1).getArguments().get(5).value()).toMillis());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFormatVersion() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new CompiledRecipe(Collections.emptyList()).writeTo(new DataOutputStream(bytes));
+        byte[] data = bytes.toByteArray();
+        data[7]++;
+        CompiledRecipe.readFrom(new DataInputStream(new ByteArrayInputStream(data)));
+    }
+}